@@ -0,0 +1,62 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.SocksApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+final class BenchmarkApplication {
+    static final int COTTON_PARTS = 101;
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Запускает приложение без веб-сервера. По умолчанию — на отдельной базе в памяти; если среди свойств есть
+     * {@code spring.datasource.url} или профиль (например, {@code prod}), база задаётся ими.
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        if (Arrays.stream(properties).noneMatch(p -> p.startsWith("spring.datasource.url=") || p.startsWith("spring.profiles.active="))) {
+            args.add("--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        }
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(SocksApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Заполняет склад {@code skus} позициями: цвета {@code bench-0..}, по 101 значению хлопка на цвет.
+     */
+    static void seed(ConfigurableApplicationContext context, int skus) {
+        seed(context.getBean(JdbcTemplate.class), skus);
+    }
+
+    static void seed(JdbcTemplate jdbcTemplate, int skus) {
+        jdbcTemplate.update("INSERT INTO colors (name) SELECT CONCAT('bench-', X) FROM SYSTEM_RANGE(0, ?)",
+                (skus - 1) / COTTON_PARTS);
+        jdbcTemplate.update("INSERT INTO socks (id, color_id, cotton_part, quantity) "
+                + "SELECT NEXT VALUE FOR socks_seq, c.id, MOD(X - 1, " + COTTON_PARTS + "), 1000000 "
+                + "FROM SYSTEM_RANGE(1, ?) JOIN colors c ON c.name = CONCAT('bench-', (X - 1) / " + COTTON_PARTS + ")", skus);
+        jdbcTemplate.execute("ANALYZE TABLE socks");
+    }
+
+    static String color(int index) {
+        return "bench-" + index;
+    }
+
+    static int colors(int skus) {
+        return Math.max(1, skus / COTTON_PARTS);
+    }
+}
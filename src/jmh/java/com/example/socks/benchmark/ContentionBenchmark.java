@@ -0,0 +1,101 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.exception.ConflictException;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.StockIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Писатели на одну горячую позицию: приходы атомарным UPDATE и изменения через PUT с оптимистической блокировкой.
+ * После прогона проверяется, что ни одна запись не потеряна: версия строки выросла ровно на число успешных записей,
+ * а индекс остатков совпадает с базой. Число писателей в группе — {@code -tg приходы,изменения}.
+ * Запуск: {@code ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="ContentionBenchmark -tg 4,4"}
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentionBenchmark {
+    private static final String COLOR = "bench-hot";
+    private static final int COTTON_PART = 50;
+
+    private ConfigurableApplicationContext context;
+    private SockService sockService;
+    private SockRepository repository;
+    private long id;
+    private long initialVersion;
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        sockService = context.getBean(SockService.class);
+        repository = context.getBean(SockRepository.class);
+        sockService.income(new CreateSockRequest(COLOR, COTTON_PART, 1000));
+        Sock sock = repository.findByColorAndCottonPart(COLOR, COTTON_PART).orElseThrow();
+        id = sock.getId();
+        initialVersion = sock.getVersion();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        try {
+            Sock sock = repository.findById(id).orElseThrow();
+            List<String> mismatches = context.getBean(StockIndex.class).verify();
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            System.out.printf("%nЗаписей: %d, отклонено после повторов: %d, конфликтов: %.0f, версия: %d -> %d%n",
+                    writes.get(), rejected.get(), count(meterRegistry, "socks.write.conflicts"),
+                    initialVersion, sock.getVersion());
+            if (sock.getVersion() - initialVersion != writes.get() || !mismatches.isEmpty()) {
+                throw new IllegalStateException("Потеряны записи: версия " + sock.getVersion() + ", ожидалась "
+                        + (initialVersion + writes.get()) + ", расхождения индекса " + mismatches);
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    @Group("hotSku")
+    @GroupThreads(2)
+    public String income() {
+        String result = sockService.income(new CreateSockRequest(COLOR, COTTON_PART, 1));
+        writes.incrementAndGet();
+        return result;
+    }
+
+    @Benchmark
+    @Group("hotSku")
+    @GroupThreads(2)
+    public String update() {
+        // Случайное значение из большого диапазона практически всегда отличается от текущего:
+        // при совпадении Hibernate не выполнит UPDATE и версия не вырастет.
+        int quantity = 10_000_000 + ThreadLocalRandom.current().nextInt(1_000_000_000);
+        try {
+            String result = sockService.updateSock(id, new CreateSockRequest(COLOR, COTTON_PART, quantity));
+            writes.incrementAndGet();
+            return result;
+        } catch (ConflictException e) {
+            rejected.incrementAndGet();
+            return e.getMessage();
+        }
+    }
+
+    private static double count(MeterRegistry meterRegistry, String name) {
+        return Search.in(meterRegistry).name(name).counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+}
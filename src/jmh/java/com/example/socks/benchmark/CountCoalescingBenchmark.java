@@ -0,0 +1,58 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.service.SockService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обновление дашбордов: много потоков одновременно запрашивают количество по одним и тем же фильтрам в обход индекса
+ * остатков, с объединением одинаковых запросов и без него. Число фильтров — {@code -p filters}, потоков — {@code -t}.
+ * Запуск: {@code ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="CountCoalescingBenchmark -t 32"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class CountCoalescingBenchmark {
+
+    @Param({"false", "true"})
+    private boolean coalescing;
+
+    @Param({"1", "8"})
+    private int filters;
+
+    @Param({"100000"})
+    private int skus;
+
+    private ConfigurableApplicationContext context;
+    private SockService sockService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("socks.stock-index.enabled=false", "socks.query-cache.enabled=false",
+                "socks.count-coalescing.enabled=" + coalescing, "socks.seed.file=");
+        BenchmarkApplication.seed(context, skus);
+        sockService = context.getBean(SockService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        System.out.printf("%nЗапросов к базе: %.0f, присоединено к выполняемым: %.0f%n",
+                meterRegistry.counter("socks.count.queries", "result", "executed").count(),
+                meterRegistry.counter("socks.count.queries", "result", "coalesced").count());
+        context.close();
+    }
+
+    @Benchmark
+    public long getSockCountByFilter() {
+        return sockService.getSockCountByFilter(null, "moreThan", ThreadLocalRandom.current().nextInt(filters) * 10);
+    }
+}
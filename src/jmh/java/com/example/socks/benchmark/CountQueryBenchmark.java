@@ -0,0 +1,75 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.SockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение универсального запроса countSocksByFilter со специализированными запросами сервиса.
+ * Запуск: {@code ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="CountQueryBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountQueryBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int skus;
+
+    @Param({"all", "color", "colorEqual", "moreThan", "colorLessThan"})
+    private String filter;
+
+    private ConfigurableApplicationContext context;
+    private SockRepository repository;
+    private SockService sockService;
+    private int colors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("socks.stock-index.enabled=false");
+        BenchmarkApplication.seed(context, skus);
+        repository = context.getBean(SockRepository.class);
+        sockService = context.getBean(SockService.class);
+        colors = BenchmarkApplication.colors(skus);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long legacyCatchAllQuery() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String color = BenchmarkApplication.color(random.nextInt(colors));
+        int cottonPart = random.nextInt(BenchmarkApplication.COTTON_PARTS);
+        return switch (filter) {
+            case "all" -> repository.countSocksByFilter(null, null, null);
+            case "color" -> repository.countSocksByFilter(color, null, null);
+            case "colorEqual" -> repository.countSocksByFilter(color, "equal", cottonPart);
+            case "moreThan" -> repository.countSocksByFilter(null, "moreThan", cottonPart);
+            default -> repository.countSocksByFilter(color, "lessThan", cottonPart);
+        };
+    }
+
+    @Benchmark
+    public long specializedQuery() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String color = BenchmarkApplication.color(random.nextInt(colors));
+        int cottonPart = random.nextInt(BenchmarkApplication.COTTON_PARTS);
+        return switch (filter) {
+            case "all" -> sockService.getSockCountByFilter(null, null, null);
+            case "color" -> sockService.getSockCountByFilter(color, null, null);
+            case "colorEqual" -> sockService.getSockCountByFilter(color, "equal", cottonPart);
+            case "moreThan" -> sockService.getSockCountByFilter(null, "moreThan", cottonPart);
+            default -> sockService.getSockCountByFilter(color, "lessThan", cottonPart);
+        };
+    }
+}
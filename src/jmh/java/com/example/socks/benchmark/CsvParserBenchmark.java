@@ -0,0 +1,127 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.model.SockKey;
+import com.example.socks.service.impl.SockCsvParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор CSV: прежняя реализация на {@code String.split} против байтового {@link SockCsvParser}.
+ * Базу данных не затрагивает. Аллокации на строку видны с {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParserBenchmark {
+    @Param({"100000"})
+    public int rows;
+
+    private byte[] csv;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(SockCsvParser.class)).setLevel(ch.qos.logback.classic.Level.WARN);
+        Random random = new Random(7);
+        StringBuilder content = new StringBuilder("color,cottonPart,quantity\n");
+        for (int i = 0; i < rows; i++) {
+            content.append(i % 2 == 0 ? "красный-" : "blue-").append(random.nextInt(100)).append(',')
+                    .append(random.nextInt(101)).append(',').append(random.nextInt(1000)).append('\n');
+        }
+        csv = content.toString().getBytes(StandardCharsets.UTF_8);
+        file = Files.createTempFile("socks-bench", ".csv");
+        Files.write(file, csv);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Прежний разбор из SockCsvImporter: BufferedReader, split, trim и Integer.parseInt на каждую строку.
+     */
+    @Benchmark
+    public Map<SockKey, Integer> legacySplit() throws IOException {
+        Map<SockKey, Integer> chunk = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.UTF_8))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length != 3) {
+                    continue;
+                }
+                String color = parts[0].trim();
+                int cottonPart;
+                int quantity;
+                try {
+                    cottonPart = Integer.parseInt(parts[1].trim());
+                    quantity = Integer.parseInt(parts[2].trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (color.isEmpty() || cottonPart < 0 || cottonPart > 100 || quantity < 0) {
+                    continue;
+                }
+                chunk.merge(new SockKey(color, cottonPart), quantity, Math::addExact);
+            }
+        }
+        return chunk;
+    }
+
+    @Benchmark
+    public void lineParser(Blackhole blackhole) {
+        SockCsvParser.LineParser parser = new SockCsvParser.LineParser();
+        ByteBuffer buffer = ByteBuffer.wrap(csv);
+        int lineStart = 0;
+        boolean header = true;
+        for (int i = 0; i < csv.length; i++) {
+            if (csv[i] == '\n') {
+                if (!header) {
+                    blackhole.consume(parser.parseLine(buffer, lineStart, i));
+                }
+                header = false;
+                lineStart = i + 1;
+            }
+        }
+        parser.drain((color, cottonPart, quantity) -> blackhole.consume(quantity));
+    }
+
+    @Benchmark
+    public SockCsvParser.Result mappedFile() throws IOException {
+        return SockCsvParser.parse(file, 1);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.StockIndex;
+import com.example.socks.service.impl.StockLedger;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Приход, отгрузка и пакетные движения через JPA ({@code ledger=false}) и через реестр остатков в памяти
+ * с журналом и отложенной записью в базу ({@code ledger=true}).
+ * Запуск: {@code ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="LedgerBenchmark -t 8"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LedgerBenchmark {
+
+    @Param({"false", "true"})
+    private boolean ledger;
+
+    @Param({"10000"})
+    private int skus;
+
+    @Param({"10"})
+    private int movementsPerBatch;
+
+    private ConfigurableApplicationContext context;
+    private SockService sockService;
+    private int colors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "socks.ledger.enabled=" + ledger,
+                "socks.ledger.journal-dir=target/ledger-bench-" + UUID.randomUUID());
+        BenchmarkApplication.seed(context, skus);
+        context.getBean(StockIndex.class).rebuild();
+        context.getBean(StockLedger.class).load();
+        sockService = context.getBean(SockService.class);
+        colors = BenchmarkApplication.colors(skus);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String income() {
+        return sockService.income(randomRequest());
+    }
+
+    @Benchmark
+    public String outcome() {
+        return sockService.outcome(randomRequest());
+    }
+
+    @Benchmark
+    public MovementBatchResponse movements() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<StockMovementRequest> batch = new ArrayList<>(movementsPerBatch);
+        for (int i = 0; i < movementsPerBatch; i++) {
+            batch.add(new StockMovementRequest(BenchmarkApplication.color(random.nextInt(colors)),
+                    random.nextInt(BenchmarkApplication.COTTON_PARTS), random.nextBoolean() ? 1 : -1));
+        }
+        return sockService.applyMovements(batch);
+    }
+
+    private CreateSockRequest randomRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new CreateSockRequest(BenchmarkApplication.color(random.nextInt(colors)),
+                random.nextInt(BenchmarkApplication.COTTON_PARTS), 1);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.SocksApplication;
+import com.example.socks.reactive.ReactiveSocksApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный прогон HTTP API в трёх режимах: пул платформенных потоков Tomcat, виртуальные потоки
+ * с ограничителем допуска к базе и реактивный вариант ({@code reactive}: WebFlux на Netty и R2DBC).
+ * Смесь запросов: приход, отпуск, подсчёт и страница фильтра.
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Dbench.main=com.example.socks.benchmark.LoadTestHarness \
+ *     -Dbench.args="--clients=1000 --duration=30 --skus=10000 --modes=platform,reactive"
+ * </pre>
+ */
+public final class LoadTestHarness {
+    private static final int SAMPLES_PER_CLIENT = 100_000;
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "500"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "20"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int skus = Integer.parseInt(options.getOrDefault("skus", "10000"));
+        List<String> modes = Arrays.asList(options.getOrDefault("modes", "platform,virtual,reactive").split(","));
+        if (modes.contains("virtual") && Runtime.version().feature() < 21) {
+            System.out.println("Внимание: JDK " + Runtime.version().feature()
+                    + " не поддерживает виртуальные потоки, режим virtual будет работать на пуле платформенных потоков.");
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : modes) {
+            results.add(run(mode, clients, warmupSeconds, durationSeconds, skus));
+        }
+
+        StringBuilder json = new StringBuilder("[\n");
+        System.out.printf("%n%-10s %8s %12s %10s %10s %10s %8s%n", "mode", "clients", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "errors");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            System.out.printf(Locale.ROOT, "%-10s %8d %12.1f %10.2f %10.2f %10.2f %8d%n",
+                    r.mode, clients, r.throughput, r.p50, r.p99, r.p999, r.errors);
+            json.append(String.format(Locale.ROOT,
+                    "  {\"mode\": \"%s\", \"clients\": %d, \"throughput\": %.1f, \"p50\": %.3f, \"p99\": %.3f, \"p999\": %.3f, \"errors\": %d}%s%n",
+                    r.mode, clients, r.throughput, r.p50, r.p99, r.p999, r.errors, i + 1 < results.size() ? "," : ""));
+        }
+        json.append("]\n");
+        Path output = Path.of("target", "loadtest-result.json");
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, json);
+        System.out.println("Результаты сохранены в " + output);
+    }
+
+    private static Result run(String mode, int clients, int warmupSeconds, int durationSeconds, int skus) throws Exception {
+        try (ConfigurableApplicationContext context = start(mode, skus)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String base = "http://localhost:" + port + "/api/socks";
+            int colors = BenchmarkApplication.colors(skus);
+
+            drive(base, colors, clients, warmupSeconds, null);
+            long[][] samples = new long[clients][SAMPLES_PER_CLIENT];
+            int[] counts = new int[clients];
+            AtomicLong errors = new AtomicLong();
+            long started = System.nanoTime();
+            drive(base, colors, clients, durationSeconds, new Recorder(samples, counts, errors));
+            double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+            int total = Arrays.stream(counts).sum();
+            long[] all = new long[total];
+            int offset = 0;
+            for (int c = 0; c < clients; c++) {
+                System.arraycopy(samples[c], 0, all, offset, counts[c]);
+                offset += counts[c];
+            }
+            Arrays.sort(all);
+            return new Result(mode, total / elapsedSeconds,
+                    percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), errors.get());
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String mode, int skus) {
+        String database = "load-" + UUID.randomUUID();
+        if ("reactive".equals(mode)) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(ReactiveSocksApplication.class)
+                    .web(WebApplicationType.REACTIVE)
+                    .profiles("reactive")
+                    .run("--server.port=0", "--socks.reactive.database=" + database, "--logging.level.root=WARN");
+            // База в памяти общая для процесса: склад заполняется по JDBC, приложение читает его через R2DBC.
+            BenchmarkApplication.seed(new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + database, "sa", "pas")), skus);
+            return context;
+        }
+        boolean virtual = "virtual".equals(mode);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SocksApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--server.tomcat.threads.max=200",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--socks.db-admission.enabled=" + virtual);
+        BenchmarkApplication.seed(context, skus);
+        return context;
+    }
+
+    private static void drive(String base, int colors, int clients, int seconds, Recorder recorder) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(10)).build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            executor.execute(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = nextRequest(base, colors);
+                        long started = System.nanoTime();
+                        int status;
+                        try {
+                            status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException e) {
+                            status = -1;
+                        }
+                        if (recorder != null) {
+                            recorder.record(client, System.nanoTime() - started, status);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        executor.shutdownNow();
+    }
+
+    private static HttpRequest nextRequest(String base, int colors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String color = BenchmarkApplication.color(random.nextInt(colors));
+        int cottonPart = random.nextInt(BenchmarkApplication.COTTON_PARTS);
+        String body = "{\"color\":\"" + color + "\",\"cottonPart\":" + cottonPart + ",\"quantity\":1}";
+        return switch (random.nextInt(4)) {
+            case 0 -> post(base + "/income", body);
+            case 1 -> post(base + "/outcome", body);
+            case 2 -> HttpRequest.newBuilder(URI.create(base + "?color=" + color + "&comparison=moreThan&cottonPart=" + cottonPart)).GET().build();
+            default -> HttpRequest.newBuilder(URI.create(base + "/filter?minCottonPart=" + cottonPart + "&maxCottonPart=" + cottonPart + "&limit=50")).GET().build();
+        };
+    }
+
+    private static HttpRequest post(String uri, String body) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private record Recorder(long[][] samples, int[] counts, AtomicLong errors) {
+        void record(int client, long nanos, int status) {
+            if (status < 200 || status >= 300) {
+                errors.incrementAndGet();
+            }
+            if (counts[client] < samples[client].length) {
+                samples[client][counts[client]++] = nanos;
+            }
+        }
+    }
+
+    private record Result(String mode, double throughput, double p50, double p99, double p999, long errors) {
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.StockIndex;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Сравнение хранилищ: база в памяти (профиль по умолчанию), база в файле с настройками профиля {@code prod},
+ * она же с настройками H2 по умолчанию ({@code file-default}) и с отложенной записью на диск
+ * ({@code file-delayed}, {@code WRITE_DELAY 500}).
+ * <p>
+ * В каждом режиме склад заполняется {@code --skus} позициями, {@code --threads} потоков применяют пакеты
+ * по {@code --batch} движений ({@link SockService#applyMovements}), затем приложение останавливается и запускается
+ * снова. Восстановление для файла — старт на существующей базе с проверкой остатков, для памяти — старт
+ * и повторная загрузка склада. Результат сохраняется в {@code target/persistence-benchmark-result.json}.
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Dbench.main=com.example.socks.benchmark.PersistenceBenchmark \
+ *     -Dbench.args="--skus=100000 --threads=4 --duration=20"
+ * </pre>
+ */
+public final class PersistenceBenchmark {
+
+    private PersistenceBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int skus = Integer.parseInt(options.getOrDefault("skus", "100000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "10"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "20"));
+        List<String> modes = Arrays.asList(options.getOrDefault("modes", "mem,file,file-default,file-delayed").split(","));
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : modes) {
+            results.add(run(mode, skus, threads, batch, warmupSeconds, durationSeconds));
+        }
+
+        System.out.printf("%n%10s %12s %12s %12s %12s %12s %10s%n",
+                "mode", "batches/s", "movements/s", "shutdown ms", "recovery ms", "disk MB", "restored");
+        for (Result result : results) {
+            System.out.printf(Locale.ROOT, "%10s %12.0f %12.0f %12d %12d %12.1f %10s%n",
+                    result.mode, result.batchesPerSecond, result.batchesPerSecond * batch, result.shutdownMillis,
+                    result.recoveryMillis, result.diskBytes / 1048576.0, result.restored);
+        }
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            json.append(String.format(Locale.ROOT,
+                    "  {\"mode\": \"%s\", \"skus\": %d, \"threads\": %d, \"batch\": %d, \"batchesPerSecond\": %.1f, "
+                            + "\"movementsPerSecond\": %.1f, \"shutdownMillis\": %d, \"recoveryMillis\": %d, "
+                            + "\"diskBytes\": %d, \"restored\": %s}",
+                    result.mode, skus, threads, batch, result.batchesPerSecond, result.batchesPerSecond * batch,
+                    result.shutdownMillis, result.recoveryMillis, result.diskBytes, result.restored));
+            json.append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        json.append("]\n");
+        Path output = Path.of("target", "persistence-benchmark-result.json");
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, json);
+        System.out.println("Результаты сохранены в " + output);
+    }
+
+    private static Result run(String mode, int skus, int threads, int batch, int warmupSeconds, int durationSeconds)
+            throws Exception {
+        Path dir = Path.of("target", "persistence-bench", mode + "-" + UUID.randomUUID()).toAbsolutePath();
+        String[] properties = switch (mode) {
+            case "mem" -> new String[]{"socks.seed.file="};
+            case "file", "file-delayed" -> new String[]{"spring.profiles.active=prod", "socks.data-dir=" + dir, "socks.seed.file="};
+            case "file-default" -> new String[]{"spring.profiles.active=prod", "socks.seed.file=",
+                    "spring.datasource.url=jdbc:h2:file:" + dir + "/socks;DB_CLOSE_ON_EXIT=FALSE"};
+            default -> throw new IllegalArgumentException("Неизвестный режим " + mode);
+        };
+        System.out.printf("%nРежим %s: заполнение %d позиций%n", mode, skus);
+        ConfigurableApplicationContext context = BenchmarkApplication.start(properties);
+        if (mode.equals("file-delayed")) {
+            context.getBean(JdbcTemplate.class).execute("SET WRITE_DELAY 500");
+        }
+        BenchmarkApplication.seed(context, skus);
+        context.getBean(StockIndex.class).rebuild();
+
+        SockService sockService = context.getBean(SockService.class);
+        int colors = BenchmarkApplication.colors(skus);
+        apply(sockService, colors, threads, batch, warmupSeconds);
+        long batches = apply(sockService, colors, threads, batch, durationSeconds);
+        double batchesPerSecond = (double) batches / durationSeconds;
+        long total = totalQuantity(context);
+
+        long shutdownStarted = System.nanoTime();
+        context.close();
+        long shutdownMillis = (System.nanoTime() - shutdownStarted) / 1_000_000;
+        long diskBytes = diskBytes(dir);
+
+        long recoveryStarted = System.nanoTime();
+        context = BenchmarkApplication.start(properties);
+        if (mode.equals("mem")) {
+            BenchmarkApplication.seed(context, skus);
+            context.getBean(StockIndex.class).rebuild();
+        }
+        long recoveryMillis = (System.nanoTime() - recoveryStarted) / 1_000_000;
+        boolean restored = totalQuantity(context) == total;
+        context.close();
+        System.out.printf(Locale.ROOT, "Режим %s: %.0f пакетов/с, остановка %d мс, восстановление %d мс, остатки %s%n",
+                mode, batchesPerSecond, shutdownMillis, recoveryMillis, restored ? "сохранены" : "потеряны");
+        return new Result(mode, batchesPerSecond, shutdownMillis, recoveryMillis, diskBytes, restored);
+    }
+
+    /**
+     * Применяет пакеты движений в {@code threads} потоков в течение {@code seconds} секунд.
+     *
+     * @return число применённых пакетов
+     */
+    private static long apply(SockService sockService, int colors, int threads, int batch, int seconds)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong batches = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    List<StockMovementRequest> movements = new ArrayList<>(batch);
+                    for (int i = 0; i < batch; i++) {
+                        int quantity = random.nextInt(1, 6);
+                        movements.add(new StockMovementRequest(BenchmarkApplication.color(random.nextInt(colors)),
+                                random.nextInt(BenchmarkApplication.COTTON_PARTS), random.nextBoolean() ? quantity : -quantity));
+                    }
+                    sockService.applyMovements(movements);
+                    batches.incrementAndGet();
+                }
+            }, "persistence-bench-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return batches.get();
+    }
+
+    private static long totalQuantity(ConfigurableApplicationContext context) {
+        return context.getBean(JdbcTemplate.class).queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM socks", Long.class);
+    }
+
+    private static long diskBytes(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private record Result(String mode, double batchesPerSecond, long shutdownMillis, long recoveryMillis, long diskBytes,
+                          boolean restored) {
+    }
+}
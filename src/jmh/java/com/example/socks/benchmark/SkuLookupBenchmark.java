@@ -0,0 +1,62 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск позиции по id и по натуральному ключу (цвет, процент хлопка) с кэшем второго уровня Hibernate и без него.
+ * Запуск: {@code ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="SkuLookupBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkuLookupBenchmark {
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    @Param({"10000"})
+    private int skus;
+
+    private ConfigurableApplicationContext context;
+    private SockRepository repository;
+    private long[] ids;
+    private int colors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("socks.entity-cache.enabled=" + cache, "socks.seed.file=");
+        BenchmarkApplication.seed(context, skus);
+        repository = context.getBean(SockRepository.class);
+        ids = context.getBean(JdbcTemplate.class).queryForList("SELECT id FROM socks", Long.class).stream()
+                .mapToLong(Long::longValue).toArray();
+        colors = BenchmarkApplication.colors(skus);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Sock> findById() {
+        return repository.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public Optional<Sock> findByColorAndCottonPart() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return repository.findByColorAndCottonPart(BenchmarkApplication.color(random.nextInt(colors)),
+                random.nextInt(BenchmarkApplication.COTTON_PARTS));
+    }
+}
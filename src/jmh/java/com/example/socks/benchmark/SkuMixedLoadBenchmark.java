@@ -0,0 +1,83 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.SockService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш второго уровня под смешанной нагрузкой: поиск позиции по id вперемешку с приходами на случайные позиции.
+ * Доля приходов — {@code -p writePercent}. Каждый приход — массовый {@code UPDATE}, после которого Hibernate
+ * очищает весь регион {@code socks}, поэтому в конце прогона печатается доля попаданий в кэш.
+ * Запуск: {@code ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="SkuMixedLoadBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkuMixedLoadBenchmark {
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    @Param({"0", "1", "10", "50"})
+    private int writePercent;
+
+    @Param({"10000"})
+    private int skus;
+
+    private ConfigurableApplicationContext context;
+    private SockRepository repository;
+    private SockService sockService;
+    private Statistics statistics;
+    private long[] ids;
+    private int colors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("socks.entity-cache.enabled=" + cache, "socks.seed.file=");
+        BenchmarkApplication.seed(context, skus);
+        repository = context.getBean(SockRepository.class);
+        sockService = context.getBean(SockService.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        ids = context.getBean(JdbcTemplate.class).queryForList("SELECT id FROM socks", Long.class).stream()
+                .mapToLong(Long::longValue).toArray();
+        colors = BenchmarkApplication.colors(skus);
+        statistics.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long hits = statistics.getSecondLevelCacheHitCount();
+        long misses = statistics.getSecondLevelCacheMissCount();
+        System.out.printf("%nКэш второго уровня: попаданий %d, промахов %d, доля попаданий %.1f%%%n",
+                hits, misses, hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses));
+        context.close();
+    }
+
+    @Benchmark
+    public Object lookupOrIncome() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(100) < writePercent) {
+            return sockService.income(new CreateSockRequest(BenchmarkApplication.color(random.nextInt(colors)),
+                    random.nextInt(BenchmarkApplication.COTTON_PARTS), 1));
+        }
+        return lookup(random);
+    }
+
+    private Optional<Sock> lookup(ThreadLocalRandom random) {
+        return repository.findById(ids[random.nextInt(ids.length)]);
+    }
+}
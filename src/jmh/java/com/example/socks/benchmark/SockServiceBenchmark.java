@@ -0,0 +1,112 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.SockPage;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.SockCsvImporter;
+import com.example.socks.service.impl.StockIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути сервиса на встроенной H2: пропускная способность, перцентили задержки (режим SampleTime)
+ * и, с профилировщиком {@code -prof gc}, скорость аллокаций.
+ * Запуск: {@code ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="SockServiceBenchmark -p skus=100000"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SockServiceBenchmark {
+
+    @Param({"10000", "100000"})
+    private int skus;
+
+    @Param({"1000"})
+    private int csvRows;
+
+    @Param({"5"})
+    private int filterWidth;
+
+    private ConfigurableApplicationContext context;
+    private SockService sockService;
+    private SockCsvImporter csvImporter;
+    private int colors;
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, skus);
+        context.getBean(StockIndex.class).rebuild();
+        sockService = context.getBean(SockService.class);
+        csvImporter = context.getBean(SockCsvImporter.class);
+        colors = BenchmarkApplication.colors(skus);
+        csv = generateCsv(csvRows, colors);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String income() {
+        return sockService.income(randomRequest());
+    }
+
+    @Benchmark
+    public String outcome() {
+        return sockService.outcome(randomRequest());
+    }
+
+    @Benchmark
+    public long getSockCountByFilter() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return sockService.getSockCountByFilter(BenchmarkApplication.color(random.nextInt(colors)), "moreThan",
+                random.nextInt(BenchmarkApplication.COTTON_PARTS));
+    }
+
+    @Benchmark
+    public SockPage filterSocksByColor() {
+        int min = ThreadLocalRandom.current().nextInt(BenchmarkApplication.COTTON_PARTS - filterWidth);
+        return sockService.filterSocks(min, min + filterWidth - 1, "color", null, null);
+    }
+
+    @Benchmark
+    public SockPage filterSocksByCottonPart() {
+        int min = ThreadLocalRandom.current().nextInt(BenchmarkApplication.COTTON_PARTS - filterWidth);
+        return sockService.filterSocks(min, min + filterWidth - 1, "cottonPart", null, null);
+    }
+
+    @Benchmark
+    public BatchUploadResponse importCsv() throws IOException {
+        return csvImporter.importCsv(new ByteArrayInputStream(csv));
+    }
+
+    private CreateSockRequest randomRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new CreateSockRequest(BenchmarkApplication.color(random.nextInt(colors)),
+                random.nextInt(BenchmarkApplication.COTTON_PARTS), 1);
+    }
+
+    static byte[] generateCsv(int rows, int colors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder content = new StringBuilder("color,cottonPart,quantity\n");
+        for (int i = 0; i < rows; i++) {
+            content.append(BenchmarkApplication.color(random.nextInt(colors))).append(',')
+                    .append(random.nextInt(BenchmarkApplication.COTTON_PARTS)).append(',')
+                    .append(1 + random.nextInt(100)).append('\n');
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
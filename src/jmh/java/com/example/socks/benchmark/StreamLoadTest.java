@@ -0,0 +1,373 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.SocksApplication;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочный прогон потока изменений {@code GET /api/socks/stream}: {@code --subscribers} SSE-подписчиков без фильтра,
+ * фоновые приходы и отгрузки с частотой {@code --writes} в секунду и проба — приход на отдельную позицию раз
+ * в {@code --probe-interval} мс. Задержка доставки — от отправки пробы до получения её остатка подписчиком.
+ * Проба, схлопнутая со следующей у отстающего подписчика, в доставленные не входит.
+ * <p>
+ * Сервер запускается отдельным процессом (у клиента и сервера свои лимиты открытых файлов) или задаётся {@code --url}.
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Dbench.main=com.example.socks.benchmark.StreamLoadTest \
+ *     -Dbench.args="--subscribers=10000 --duration=30 --writes=100"
+ * </pre>
+ */
+public final class StreamLoadTest {
+    private static final String PROBE = "probe";
+    private static final Pattern PROBE_QUANTITY = Pattern.compile("\"color\":\"" + PROBE + "\",\"cottonPart\":0,\"quantity\":(\\d+)");
+    private static final int MAX_LATENCY_MILLIS = 60_000;
+
+    private StreamLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int subscribers = Integer.parseInt(options.getOrDefault("subscribers", "10000"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int writesPerSecond = Integer.parseInt(options.getOrDefault("writes", "100"));
+        int skus = Integer.parseInt(options.getOrDefault("skus", "1000"));
+        int probeIntervalMillis = Integer.parseInt(options.getOrDefault("probe-interval", "500"));
+        String serverHeap = options.getOrDefault("server-heap", "3g");
+
+        Process server = null;
+        String base = options.get("url");
+        if (base == null) {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            server = startServer(port, serverHeap, subscribers);
+            base = "http://localhost:" + port;
+        }
+        ExecutorService callbacks = Executors.newFixedThreadPool(2);
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(callbacks)
+                .build();
+        try {
+            awaitReady(http, base);
+            seed(http, base, skus);
+
+            Stats stats = new Stats();
+            long connectStarted = System.nanoTime();
+            for (int i = 0; i < subscribers; i++) {
+                http.sendAsync(HttpRequest.newBuilder(URI.create(base + "/api/socks/stream"))
+                                .header("Accept", "text/event-stream").build(),
+                        HttpResponse.BodyHandlers.fromLineSubscriber(new Listener(stats)))
+                        .exceptionally(e -> {
+                            stats.failed.incrementAndGet();
+                            return null;
+                        });
+                if (i % 500 == 499) {
+                    awaitConnected(stats, i + 1, 60);
+                }
+            }
+            awaitConnected(stats, subscribers, 120);
+            double connectSeconds = (System.nanoTime() - connectStarted) / 1e9;
+            System.out.printf(Locale.ROOT, "Подключено %d из %d подписчиков за %.1f с%n", stats.connected.get(), subscribers, connectSeconds);
+
+            Map<Long, Long> probesSent = new ConcurrentHashMap<>();
+            stats.probesSent = probesSent;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+            String api = base + "/api/socks";
+            Thread writer = new Thread(() -> write(http, api, skus, writesPerSecond, deadline), "stream-load-writer");
+            Thread prober = new Thread(() -> probe(http, api, probeIntervalMillis, deadline, probesSent), "stream-load-probe");
+            long eventsBefore = stats.events.get();
+            long started = System.nanoTime();
+            writer.start();
+            prober.start();
+            writer.join();
+            prober.join();
+            double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+            long eventsAfter = stats.events.get();
+            awaitSettled(stats);
+
+            long connected = stats.connected.get() - stats.closed.get();
+            long expected = (long) probesSent.size() * connected;
+            String dropped = metric(http, base, "socks.stream.dropped");
+            double eventsPerSecond = (eventsAfter - eventsBefore) / elapsedSeconds;
+            double p50 = stats.percentile(0.50);
+            double p99 = stats.percentile(0.99);
+            double max = stats.maxLatency.get();
+            System.out.printf("%n%12s %10s %12s %10s %10s %10s %10s %10s%n",
+                    "subscribers", "closed", "events/s", "probes", "delivered", "p50 ms", "p99 ms", "max ms");
+            System.out.printf(Locale.ROOT, "%12d %10d %12.0f %10d %9.1f%% %10.0f %10.0f %10.0f%n",
+                    connected, stats.closed.get(), eventsPerSecond, probesSent.size(),
+                    expected == 0 ? 0 : 100.0 * stats.probesReceived.get() / expected, p50, p99, max);
+            System.out.println("Отключено сервером за отставание: " + dropped);
+
+            String json = String.format(Locale.ROOT,
+                    "{\"subscribers\": %d, \"connected\": %d, \"closed\": %d, \"failed\": %d, \"connectSeconds\": %.1f, "
+                            + "\"eventsPerSecond\": %.0f, \"probes\": %d, \"probesReceived\": %d, \"probesExpected\": %d, "
+                            + "\"p50\": %.0f, \"p99\": %.0f, \"max\": %.0f, \"dropped\": %s}%n",
+                    subscribers, connected, stats.closed.get(), stats.failed.get(), connectSeconds, eventsPerSecond,
+                    probesSent.size(), stats.probesReceived.get(), expected, p50, p99, max, dropped);
+            Path output = Path.of("target", "stream-loadtest-result.json");
+            Files.createDirectories(output.getParent());
+            Files.writeString(output, json);
+            System.out.println("Результаты сохранены в " + output);
+        } finally {
+            callbacks.shutdownNow();
+            if (server != null) {
+                server.destroy();
+                server.waitFor(30, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static Process startServer(int port, String heap, int subscribers) throws IOException {
+        Path log = Path.of("target", "stream-loadtest-server.log");
+        Files.createDirectories(log.getParent());
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + heap,
+                "-cp", System.getProperty("java.class.path"),
+                SocksApplication.class.getName(),
+                "--server.port=" + port,
+                "--server.tomcat.max-connections=" + (subscribers + 1000),
+                "--socks.stream.max-subscribers=" + (subscribers + 1000),
+                "--spring.datasource.url=jdbc:h2:mem:stream-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--socks.seed.file="));
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    }
+
+    private static void awaitReady(HttpClient http, String base) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(base + "/actuator/health/readiness")).build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Сервер ещё запускается.
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Сервер не запустился за 120 с, см. target/stream-loadtest-server.log");
+    }
+
+    /**
+     * Загружает позиции {@code bench-*} через CSV-импорт, как их загрузил бы поставщик.
+     */
+    private static void seed(HttpClient http, String base, int skus) throws IOException, InterruptedException {
+        StringBuilder csv = new StringBuilder("color,cottonPart,quantity\n");
+        for (int i = 0; i < skus; i++) {
+            csv.append(BenchmarkApplication.color(i / BenchmarkApplication.COTTON_PARTS)).append(',')
+                    .append(i % BenchmarkApplication.COTTON_PARTS).append(",1000000\n");
+        }
+        String boundary = "bench-" + UUID.randomUUID();
+        String body = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"bench.csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n"
+                + csv + "\r\n--" + boundary + "--\r\n";
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(base + "/api/socks/batch"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)).build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Загрузка позиций не удалась: " + response.body());
+        }
+    }
+
+    /**
+     * Ждёт, пока подписчики дочитают отставшие события: пока число доставленных проб растёт, но не дольше 15 с.
+     */
+    private static void awaitSettled(Stats stats) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        long received;
+        do {
+            received = stats.probesReceived.get();
+            Thread.sleep(1000);
+        } while (stats.probesReceived.get() != received && System.nanoTime() < deadline);
+    }
+
+    private static void awaitConnected(Stats stats, int target, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (stats.connected.get() + stats.failed.get() < target && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static void write(HttpClient http, String api, int skus, int writesPerSecond, long deadline) {
+        long pause = TimeUnit.SECONDS.toNanos(1) / Math.max(1, writesPerSecond);
+        long next = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            int sku = random.nextInt(skus);
+            String body = "{\"color\":\"" + BenchmarkApplication.color(sku / BenchmarkApplication.COTTON_PARTS)
+                    + "\",\"cottonPart\":" + sku % BenchmarkApplication.COTTON_PARTS + ",\"quantity\":1}";
+            post(http, api + (random.nextBoolean() ? "/income" : "/outcome"), body);
+            next += pause;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                sleepNanos(sleep);
+            }
+        }
+    }
+
+    private static void probe(HttpClient http, String api, int intervalMillis, long deadline, Map<Long, Long> probesSent) {
+        String body = "{\"color\":\"" + PROBE + "\",\"cottonPart\":0,\"quantity\":1}";
+        for (long quantity = 1; System.nanoTime() < deadline; quantity++) {
+            probesSent.put(quantity, System.nanoTime());
+            post(http, api + "/income", body);
+            sleepNanos(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+        }
+    }
+
+    private static void post(HttpClient http, String uri, String body) {
+        try {
+            http.send(HttpRequest.newBuilder(URI.create(uri))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            // Ошибки записи видны по задержкам и доле доставленных проб.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String metric(HttpClient http, String base, String name) {
+        try {
+            String body = http.send(HttpRequest.newBuilder(URI.create(base + "/actuator/metrics/" + name)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            Matcher matcher = Pattern.compile("\"value\":([0-9.E]+)").matcher(body);
+            return matcher.find() ? matcher.group(1) : "null";
+        } catch (IOException e) {
+            return "null";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "null";
+        }
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static final class Stats {
+        private final AtomicLong connected = new AtomicLong();
+        private final AtomicLong closed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong events = new AtomicLong();
+        private final AtomicLong probesReceived = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+        private final AtomicLongArray latencies = new AtomicLongArray(MAX_LATENCY_MILLIS + 1);
+        private volatile Map<Long, Long> probesSent = Map.of();
+
+        private void probe(long quantity, long receivedNanos) {
+            Long sent = probesSent.get(quantity);
+            if (sent == null) {
+                return;
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(receivedNanos - sent);
+            latencies.incrementAndGet((int) Math.min(MAX_LATENCY_MILLIS, millis));
+            maxLatency.accumulateAndGet(millis, Math::max);
+            probesReceived.incrementAndGet();
+        }
+
+        private double percentile(double quantile) {
+            long total = 0;
+            for (int i = 0; i < latencies.length(); i++) {
+                total += latencies.get(i);
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < latencies.length(); i++) {
+                seen += latencies.get(i);
+                if (seen >= rank && seen > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Подписчик: считает события и ищет в них остаток пробы.
+     */
+    private static final class Listener implements Flow.Subscriber<String> {
+        private final Stats stats;
+
+        private Listener(Stats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            stats.connected.incrementAndGet();
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (!line.startsWith("data:")) {
+                return;
+            }
+            stats.events.incrementAndGet();
+            if (line.contains(PROBE)) {
+                Matcher matcher = PROBE_QUANTITY.matcher(line);
+                if (matcher.find()) {
+                    stats.probe(Long.parseLong(matcher.group(1)), System.nanoTime());
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            stats.closed.incrementAndGet();
+        }
+
+        @Override
+        public void onComplete() {
+            stats.closed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.socks.benchmark;
+
+import com.example.socks.controller.WireFormats;
+import com.example.socks.model.Sock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Страница выборки {@code /filter} в JSON, Smile и CBOR: кодирование тем же {@link WireFormats}, что и в контроллере,
+ * и разбор клиентом. Размер ответа печатается при подготовке каждого формата.
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="WireFormatBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"10000"})
+    public int items;
+
+    private WireFormats wireFormats;
+    private MediaType mediaType;
+    private ObjectReader reader;
+    private List<Sock> page;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        wireFormats = new WireFormats(objectMapper);
+        mediaType = switch (format) {
+            case "json" -> MediaType.APPLICATION_JSON;
+            case "smile" -> WireFormats.SMILE;
+            case "cbor" -> MediaType.APPLICATION_CBOR;
+            default -> throw new IllegalArgumentException(format);
+        };
+        ObjectMapper clientMapper = switch (format) {
+            case "smile" -> objectMapper.copyWith(new SmileFactory());
+            case "cbor" -> objectMapper.copyWith(new CBORFactory());
+            default -> objectMapper;
+        };
+        reader = clientMapper.readerFor(Sock[].class);
+        page = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            page.add(new Sock((long) i + 1, BenchmarkApplication.color(i / BenchmarkApplication.COTTON_PARTS),
+                    i % BenchmarkApplication.COTTON_PARTS, i * 7 % 10_000, 0, 0));
+        }
+        encoded = wireFormats.write(mediaType, page);
+        System.out.printf(Locale.ROOT, "%n%s: %d байт на %d позиций (%.1f байт на позицию)%n",
+                format, encoded.length, items, (double) encoded.length / items);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return wireFormats.write(mediaType, page);
+    }
+
+    @Benchmark
+    public Sock[] decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
@@ -2,8 +2,13 @@ package com.example.socks;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+/**
+ * Основное приложение: Spring MVC и JPA. R2DBC нужен только {@link com.example.socks.reactive.ReactiveSocksApplication}:
+ * созданная им фабрика соединений отключила бы здесь DataSource.
+ */
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 
 public class SocksApplication {
 
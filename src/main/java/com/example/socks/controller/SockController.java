@@ -1,24 +1,66 @@
 package com.example.socks.controller;
 
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.dto.CreateReservationRequest;
 import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.ImportJobResponse;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.ReservationResponse;
+import com.example.socks.dto.SockPage;
+import com.example.socks.dto.StockAtResponse;
+import com.example.socks.dto.StockMovementRequest;
 import com.example.socks.model.Sock;
+import com.example.socks.service.ImportJobService;
+import com.example.socks.service.ReservationService;
 import com.example.socks.service.SockService;
+import com.example.socks.service.StockHistoryService;
+import com.example.socks.service.StockStreamService;
+import com.example.socks.service.impl.InventoryVersion;
+import com.example.socks.service.impl.QueryResultCache;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/socks")
 @RequiredArgsConstructor
 public class SockController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String NDJSON_VALUE = "application/x-ndjson";
+
     private final SockService sockService;
+    private final ImportJobService importJobService;
+    private final ReservationService reservationService;
+    private final StockHistoryService stockHistoryService;
+    private final StockStreamService stockStreamService;
+    private final InventoryVersion inventoryVersion;
+    private final QueryResultCache queryResultCache;
+    private final WireFormats wireFormats;
+    private final ObjectMapper objectMapper;
 
 
     @Operation(summary = "Добавление новой партии носков", description = "Позволяет добавить новую партию носков или обновить существующую.")
@@ -43,30 +85,149 @@ public class SockController {
         return sockService.outcome(request);
     }
 
+    @Operation(summary = "Пакетное движение носков", description = "Применяет список приходов (положительное количество) и отгрузок "
+            + "(отрицательное количество) в одной транзакции: либо все строки, либо ни одной.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Все движения применены."),
+            @ApiResponse(responseCode = "400", description = "Пакет отклонён, в ответе указан результат по каждой строке.")
+    })
+    @PostMapping("/movements")
+    public MovementBatchResponse applyMovements(@RequestBody List<StockMovementRequest> movements) {
+        return sockService.applyMovements(movements);
+    }
+
+    @Operation(summary = "Резервирование носков", description = "Удерживает количество позиции до подтверждения или снятия, "
+            + "но не дольше ttlSeconds (по умолчанию socks.reservations.default-ttl). Отгрузки и другие резервы видят только "
+            + "незарезервированный остаток.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Резерв создан, ссылка на него — в заголовке Location."),
+            @ApiResponse(responseCode = "400", description = "Недостаточно носков или некорректные данные запроса."),
+            @ApiResponse(responseCode = "404", description = "Носки не найдены."),
+            @ApiResponse(responseCode = "503", description = "Включён реестр остатков в памяти.")
+    })
+    @PostMapping("/reservations")
+    public ResponseEntity<ReservationResponse> reserve(@RequestBody CreateReservationRequest request) {
+        ReservationResponse reservation = reservationService.reserve(request);
+        return ResponseEntity.created(URI.create("/api/socks/reservations/" + reservation.getId())).body(reservation);
+    }
+
+    @Operation(summary = "Резерв", description = "Позиция, количество и срок действующего резерва.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Резерв действует."),
+            @ApiResponse(responseCode = "404", description = "Резерв подтверждён, снят, истёк или не существовал.")
+    })
+    @GetMapping("/reservations/{id}")
+    public ReservationResponse getReservation(@PathVariable String id) {
+        return reservationService.getReservation(id);
+    }
+
+    @Operation(summary = "Подтверждение резерва", description = "Отгружает зарезервированное количество.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Носки отгружены."),
+            @ApiResponse(responseCode = "404", description = "Резерв подтверждён, снят, истёк или не существовал.")
+    })
+    @PostMapping("/reservations/{id}/confirm")
+    public String confirmReservation(@PathVariable String id) {
+        return reservationService.confirm(id);
+    }
+
+    @Operation(summary = "Снятие резерва", description = "Возвращает зарезервированное количество в доступный остаток.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Резерв снят."),
+            @ApiResponse(responseCode = "404", description = "Резерв подтверждён, снят, истёк или не существовал.")
+    })
+    @PostMapping("/reservations/{id}/release")
+    public String releaseReservation(@PathVariable String id) {
+        return reservationService.release(id);
+    }
+
     @Operation(summary = "Получение количества носков по фильтру", description = "Возвращает количество носков, соответствующих заданным критериям.")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Количество носков успешно возвращено."),
-            @ApiResponse(responseCode = "400", description = "Некорректные параметры фильтра."),
+            @ApiResponse(responseCode = "200", description = "Количество носков успешно возвращено.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(type = "integer", format = "int64"))),
+            @ApiResponse(responseCode = "304", description = "Склад не менялся с версии из If-None-Match."),
+            @ApiResponse(responseCode = "400", description = "Некорректные параметры фильтра (например, неизвестный оператор сравнения)."),
             @ApiResponse(responseCode = "500", description = "Ошибка сервера.")
     })
     @GetMapping("")
-    public Integer getSockCount(@RequestParam(required = false) String color,
-                                                @RequestParam(required = false) String comparison,
-                                                @RequestParam(required = false) Integer cottonPart) {
-        return sockService.getSockCountByFilter(color, comparison, cottonPart);
+    public ResponseEntity<byte[]> getSockCount(@RequestParam(required = false) String color,
+                                               @RequestParam(required = false) String comparison,
+                                               @RequestParam(required = false) Integer cottonPart,
+                                               WebRequest webRequest) {
+        long version = inventoryVersion.current();
+        String etag = inventoryVersion.etag(version);
+        if (webRequest.checkNotModified(etag)) {
+            queryResultCache.recordNotModified();
+            return null;
+        }
+        QueryResultCache.CachedResponse response = queryResultCache.get(Arrays.asList("count", color, comparison, cottonPart), version,
+                () -> new QueryResultCache.CachedResponse(wireFormats.write(MediaType.APPLICATION_JSON, sockService.getSockCountByFilter(color, comparison, cottonPart)), null));
+        return cachedResponse(etag, MediaType.APPLICATION_JSON, response);
+    }
+
+    @Operation(summary = "Остатки на момент времени", description = "Восстанавливает остатки на указанный момент (ISO-8601, например "
+            + "2024-05-01T09:00:00Z) по ближайшему предшествующему снимку и журналу движений после него. "
+            + "Цвет и процент хлопка необязательны и сужают выборку.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ненулевые остатки на указанный момент."),
+            @ApiResponse(responseCode = "400", description = "Момент раньше начала истории или некорректные параметры.")
+    })
+    @GetMapping("/at")
+    public StockAtResponse getStockAt(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant timestamp,
+                                      @RequestParam(required = false) String color,
+                                      @RequestParam(required = false) Integer cottonPart) {
+        return stockHistoryService.getStockAt(timestamp, color, cottonPart);
+    }
+
+    @Operation(summary = "Поток изменений остатков", description = "Server-Sent Events вместо опроса количества: событие stock "
+            + "приходит после изменений и содержит массив позиций с новым остатком (color, cottonPart, quantity). "
+            + "Изменения одной позиции между отправками схлопываются. Фильтры — как у запроса количества.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Подписка оформлена, события приходят в text/event-stream."),
+            @ApiResponse(responseCode = "400", description = "Некорректные параметры фильтра."),
+            @ApiResponse(responseCode = "503", description = "Достигнуто максимальное число подписчиков.")
+    })
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) String color,
+                                    @RequestParam(required = false) String comparison,
+                                    @RequestParam(required = false) Integer cottonPart) {
+        return stockStreamService.subscribe(color, comparison, cottonPart);
     }
 
     @Operation(summary = "Загрузка партии носков", description = "Позволяет загрузить партию носков из CSV файла.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Партия носков успешно загружена."),
-            @ApiResponse(responseCode = "400", description = "Ошибка в формате файла."),
+            @ApiResponse(responseCode = "400", description = "Ошибка в формате файла, ни одна строка не применена."),
             @ApiResponse(responseCode = "500", description = "Ошибка сервера.")
     })
     @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public String uploadSocksBatch(@RequestParam("file") MultipartFile file) throws IOException {
+    public BatchUploadResponse uploadSocksBatch(@RequestParam("file") MultipartFile file) throws IOException {
         return sockService.uploadSocksBatch(file);
     }
 
+    @Operation(summary = "Фоновая загрузка партии носков", description = "Сохраняет CSV файл и ставит его импорт в очередь; "
+            + "ответ возвращается сразу, статус задания доступен по ссылке из заголовка Location. "
+            + "Повторная загрузка того же файла возвращает существующее задание.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Задание принято или файл уже загружался."),
+            @ApiResponse(responseCode = "503", description = "Очередь импорта заполнена.")
+    })
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, params = "async=true")
+    public ResponseEntity<ImportJobResponse> submitImportJob(@RequestParam("file") MultipartFile file) {
+        ImportJobResponse job = importJobService.submit(file);
+        return ResponseEntity.accepted().location(URI.create("/api/socks/batch/" + job.getId())).body(job);
+    }
+
+    @Operation(summary = "Статус фоновой загрузки", description = "Состояние задания импорта: обработанные строки и байты, скорость, итог или ошибка.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Статус задания."),
+            @ApiResponse(responseCode = "404", description = "Задание не найдено.")
+    })
+    @GetMapping("/batch/{id}")
+    public ImportJobResponse getImportJob(@PathVariable String id) {
+        return importJobService.getJob(id);
+    }
+
     @Operation(summary = "Обновление параметров носков", description = "Позволяет изменить цвет, процент хлопка и количество носков.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Параметры носков успешно обновлены."),
@@ -79,21 +240,80 @@ public class SockController {
         return sockService.updateSock(id, request);
     }
 
-    @Operation(summary = "Фильтрация носков", description = "Позволяет фильтровать носки по проценту хлопка и сортировать результат.")
+    @Operation(summary = "Фильтрация носков", description = "Позволяет фильтровать носки по проценту хлопка и сортировать результат. "
+            + "Результат отдаётся страницами: курсор следующей страницы возвращается в заголовке X-Next-Cursor и передаётся в параметре after. "
+            + "Формат выбирается заголовком Accept: JSON, Smile (application/x-jackson-smile) или CBOR (application/cbor).")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Носки успешно отфильтрованы."),
+            @ApiResponse(responseCode = "200", description = "Носки успешно отфильтрованы.",
+                    content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = Sock.class))),
+                            @Content(mediaType = WireFormats.SMILE_VALUE, array = @ArraySchema(schema = @Schema(implementation = Sock.class))),
+                            @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE, array = @ArraySchema(schema = @Schema(implementation = Sock.class)))
+                    }),
+            @ApiResponse(responseCode = "304", description = "Склад не менялся с версии из If-None-Match."),
             @ApiResponse(responseCode = "400", description = "Некорректные данные запроса."),
             @ApiResponse(responseCode = "404", description = "Носки не найдены.")
     })
-    @GetMapping("/filter")
-    public List<Sock> filterSocks(
+    @GetMapping(value = "/filter", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormats.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> filterSocks(
             @RequestParam int minCottonPart,
             @RequestParam int maxCottonPart,
-            @RequestParam(required = false, defaultValue = "color") String sortBy) {
-        return sockService.filterSocks(minCottonPart, maxCottonPart, sortBy);
+            @RequestParam(required = false, defaultValue = "color") String sortBy,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        MediaType format = wireFormats.negotiate(webRequest.getHeaderValues(HttpHeaders.ACCEPT));
+        long version = inventoryVersion.current();
+        String etag = inventoryVersion.etag(version, WireFormats.variant(format));
+        if (webRequest.checkNotModified(etag)) {
+            queryResultCache.recordNotModified();
+            return null;
+        }
+        QueryResultCache.CachedResponse response = queryResultCache.get(
+                Arrays.asList("filter", format, minCottonPart, maxCottonPart, sortBy, after, limit), version, () -> {
+                    SockPage page = sockService.filterSocks(minCottonPart, maxCottonPart, sortBy, after, limit);
+                    return new QueryResultCache.CachedResponse(wireFormats.write(format, page.getItems()), page.getNextCursor());
+                });
+        return cachedResponse(etag, format, response);
     }
-}
-
-
 
+    /**
+     * Ответ с версией склада в ETag: клиент повторяет запрос с If-None-Match и, пока склад не менялся, получает 304.
+     */
+    private static ResponseEntity<byte[]> cachedResponse(String etag, MediaType format, QueryResultCache.CachedResponse cached) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(format);
+        if (cached.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, cached.nextCursor());
+        }
+        return response.body(cached.body());
+    }
 
+    @Operation(summary = "Потоковая фильтрация носков", description = "Возвращает все носки из диапазона хлопка в формате NDJSON (по одному объекту на строку) без загрузки выборки в память.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Носки успешно отфильтрованы.")
+    })
+    @GetMapping(value = "/filter/stream", produces = NDJSON_VALUE)
+    public StreamingResponseBody streamSocks(
+            @RequestParam int minCottonPart,
+            @RequestParam int maxCottonPart,
+            @RequestParam(required = false, defaultValue = "color") String sortBy) {
+        return outputStream -> {
+            try (SequenceWriter writer = objectMapper.writerFor(Sock.class)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                sockService.streamSocks(minCottonPart, maxCottonPart, sortBy, sock -> {
+                    try {
+                        writer.write(sock);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.socks.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Форматы ответов выборок: JSON по умолчанию, Smile и CBOR — двоичные представления той же модели Jackson для клиентов,
+ * выгружающих каталог целиком. Двоичные мапперы копируются с основного, поэтому настройки сериализации совпадают.
+ */
+@Component
+public class WireFormats {
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+    static final List<MediaType> SUPPORTED = List.of(MediaType.APPLICATION_JSON, SMILE, MediaType.APPLICATION_CBOR);
+
+    private final Map<MediaType, ObjectMapper> mappers;
+
+    public WireFormats(ObjectMapper objectMapper) {
+        this.mappers = Map.of(
+                MediaType.APPLICATION_JSON, objectMapper,
+                SMILE, objectMapper.copyWith(new SmileFactory()),
+                MediaType.APPLICATION_CBOR, objectMapper.copyWith(new CBORFactory()));
+    }
+
+    /**
+     * Выбирает формат по заголовку Accept: поддерживаемый тип с наибольшим q, при равенстве — JSON.
+     */
+    public MediaType negotiate(String[] accept) {
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(List.of(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType best = MediaType.APPLICATION_JSON;
+        double bestQuality = 0;
+        for (MediaType type : accepted) {
+            double quality = type.getQualityValue();
+            if (quality <= bestQuality) {
+                continue;
+            }
+            for (MediaType supported : SUPPORTED) {
+                if (type.includes(supported)) {
+                    best = supported;
+                    bestQuality = quality;
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    public byte[] write(MediaType format, Object value) {
+        try {
+            return mappers.get(format).writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Суффикс ETag: у разных представлений одной версии склада строгие ETag должны различаться.
+     */
+    static String variant(MediaType format) {
+        return MediaType.APPLICATION_JSON.equals(format) ? "" : format.getSubtype();
+    }
+}
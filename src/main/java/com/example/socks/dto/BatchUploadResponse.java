@@ -0,0 +1,29 @@
+package com.example.socks.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchUploadResponse {
+
+    @Schema(description = "Количество прочитанных строк с данными", example = "1000")
+    private long rowsRead;
+    @Schema(description = "Количество строк, применённых к складу", example = "998")
+    private long rowsApplied;
+    @Schema(description = "Количество отклонённых строк", example = "2")
+    private long rowsRejected;
+    @Schema(description = "Номера отклонённых строк файла (не более первых 1000)", example = "[17, 254]")
+    private List<Long> rejectedLines;
+    @Schema(description = "Время обработки файла в миллисекундах", example = "120")
+    private long elapsedMillis;
+    @Schema(description = "Скорость обработки, строк в секунду", example = "8333.3")
+    private double rowsPerSecond;
+}
@@ -0,0 +1,28 @@
+package com.example.socks.dto;
+
+import com.example.socks.validator.RequestValidator;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateReservationRequest {
+
+    @Schema(description = "Цвет носков", example = "синий")
+    private String color;
+    @Schema(description = "Процентное содержание хлопка в носках (от 0 до 100)", example = "80")
+    private int cottonPart;
+    @Schema(description = "Резервируемое количество (положительное)", example = "3")
+    private int quantity;
+    @Schema(description = "Время жизни резерва в секундах; по умолчанию socks.reservations.default-ttl", example = "300")
+    private Long ttlSeconds;
+
+    public void validate() {
+        new RequestValidator().validateReservation(this);
+    }
+}
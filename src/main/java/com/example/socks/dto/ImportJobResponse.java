@@ -0,0 +1,41 @@
+package com.example.socks.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportJobResponse {
+
+    @Schema(description = "Идентификатор задания", example = "2f1c6a0e-8f3b-4d7e-9a51-0c4f2b7d9e10")
+    private String id;
+    private ImportJobStatus status;
+    @Schema(description = "Файл уже загружался: возвращено существующее задание, повторный импорт не выполняется", example = "false")
+    private boolean duplicate;
+    @Schema(description = "Имя загруженного файла", example = "supplier.csv")
+    private String fileName;
+    @Schema(description = "SHA-256 содержимого файла — ключ идемпотентности")
+    private String sha256;
+    @Schema(description = "Размер файла в байтах", example = "104857600")
+    private long bytesTotal;
+    @Schema(description = "Обработано байт файла", example = "52428800")
+    private long bytesProcessed;
+    @Schema(description = "Обработано строк с данными", example = "2500000")
+    private long rowsProcessed;
+    @Schema(description = "Скорость обработки, строк в секунду", example = "250000.0")
+    private double rowsPerSecond;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    @Schema(description = "Итог импорта, когда задание выполнено")
+    private BatchUploadResponse result;
+    @Schema(description = "Причина ошибки, когда задание завершилось неудачно")
+    private String error;
+}
@@ -0,0 +1,8 @@
+package com.example.socks.dto;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
@@ -0,0 +1,22 @@
+package com.example.socks.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovementBatchResponse {
+
+    @Schema(description = "Применены ли движения (все или ни одного)", example = "true")
+    private boolean applied;
+    @Schema(description = "Количество различных позиций склада, затронутых пакетом", example = "12")
+    private int skus;
+    private List<MovementLineResult> lines;
+}
@@ -0,0 +1,21 @@
+package com.example.socks.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovementLineResult {
+
+    @Schema(description = "Номер строки в запросе, начиная с 1", example = "1")
+    private int line;
+    @Schema(description = "Результат по строке", example = "APPLIED")
+    private MovementStatus status;
+    @Schema(description = "Пояснение для строк, которые не были применены")
+    private String message;
+}
@@ -0,0 +1,9 @@
+package com.example.socks.dto;
+
+public enum MovementStatus {
+    APPLIED,
+    INVALID,
+    NOT_FOUND,
+    INSUFFICIENT,
+    REJECTED
+}
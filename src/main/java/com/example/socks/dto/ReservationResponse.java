@@ -0,0 +1,24 @@
+package com.example.socks.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationResponse {
+
+    @Schema(description = "Идентификатор резерва", example = "2f1c6a0e-8f3b-4d7e-9a51-0c4f2b7d9e10")
+    private String id;
+    private String color;
+    private int cottonPart;
+    private int quantity;
+    @Schema(description = "Момент, после которого неподтверждённый резерв снимается")
+    private Instant expiresAt;
+}
@@ -0,0 +1,18 @@
+package com.example.socks.dto;
+
+import com.example.socks.model.Sock;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SockPage {
+    private List<Sock> items;
+    private String nextCursor;
+}
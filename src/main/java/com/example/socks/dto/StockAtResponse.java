@@ -0,0 +1,24 @@
+package com.example.socks.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockAtResponse {
+
+    @Schema(description = "Момент, на который восстановлены остатки", example = "2024-05-01T09:00:00Z")
+    private Instant timestamp;
+    @Schema(description = "Момент снимка, от которого проиграны движения", example = "2024-05-01T08:00:00Z")
+    private Instant snapshotTakenAt;
+    @Schema(description = "Ненулевые остатки по позициям")
+    private List<StockLevel> levels;
+}
@@ -0,0 +1,21 @@
+package com.example.socks.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockLevel {
+
+    @Schema(description = "Цвет носков", example = "красный")
+    private String color;
+    @Schema(description = "Процентное содержание хлопка", example = "80")
+    private int cottonPart;
+    @Schema(description = "Остаток на указанный момент", example = "120")
+    private long quantity;
+}
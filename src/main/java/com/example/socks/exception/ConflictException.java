@@ -0,0 +1,7 @@
+package com.example.socks.exception;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.socks.exception;
+
+public class InsufficientStockException extends BadRequestException {
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.socks.exception;
+
+import com.example.socks.dto.MovementBatchResponse;
+
+public class MovementRejectedException extends BadRequestException {
+    private final MovementBatchResponse response;
+
+    public MovementRejectedException(MovementBatchResponse response) {
+        super("Пакет движений отклонён: ни одна строка не применена.");
+        this.response = response;
+    }
+
+    public MovementBatchResponse getResponse() {
+        return response;
+    }
+}
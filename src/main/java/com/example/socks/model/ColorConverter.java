@@ -0,0 +1,26 @@
+package com.example.socks.model;
+
+import com.example.socks.repository.ColorDictionary;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Хранит цвет носков как id из словаря colors: сравнения в запросах идут по целым числам.
+ * Экземпляр создаётся Hibernate через контейнер бинов Spring.
+ */
+@Converter
+@RequiredArgsConstructor
+public class ColorConverter implements AttributeConverter<String, Integer> {
+    private final ColorDictionary colorDictionary;
+
+    @Override
+    public Integer convertToDatabaseColumn(String color) {
+        return color == null ? null : colorDictionary.idOf(color);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer colorId) {
+        return colorId == null ? null : colorDictionary.nameOf(colorId);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.socks.model;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Приведение цвета к каноническому виду на входе в приложение: без пробелов по краям,
+ * в нижнем регистре и в форме Unicode NFC. «Синий», «синий » и «синий» — один цвет.
+ */
+public final class ColorNames {
+    private ColorNames() {
+    }
+
+    public static String normalize(String color) {
+        if (color == null) {
+            return null;
+        }
+        return Normalizer.normalize(color.strip().toLowerCase(Locale.ROOT), Normalizer.Form.NFC);
+    }
+}
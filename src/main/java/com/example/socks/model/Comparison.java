@@ -0,0 +1,26 @@
+package com.example.socks.model;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum Comparison {
+    MORE_THAN("moreThan"),
+    LESS_THAN("lessThan"),
+    EQUAL("equal");
+
+    private final String value;
+
+    Comparison(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static Optional<Comparison> fromValue(String value) {
+        return Arrays.stream(values())
+                .filter(comparison -> comparison.value.equals(value))
+                .findFirst();
+    }
+}
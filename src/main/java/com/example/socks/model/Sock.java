@@ -1,23 +1,55 @@
 package com.example.socks.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
+/**
+ * Позиция склада. Натуральный ключ — цвет и процент хлопка; позиции и соответствие ключа и id кэшируются
+ * во втором уровне Hibernate ({@code socks.entity-cache.enabled}). Изменения остатков в обход Hibernate сбрасывают
+ * изменённую позицию ({@link com.example.socks.repository.SockStockRepository}) или, для пакетных SQL-запросов
+ * {@link com.example.socks.repository.SockBatchRepository}, весь регион позиций.
+ */
 @Entity
-@Table(name = "socks")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "socks")
+@NaturalIdCache(region = "socks-natural-id")
+@Table(name = "socks",
+        uniqueConstraints = @UniqueConstraint(name = "ux_socks_color_cotton_part", columnNames = {"color_id", "cottonPart"}),
+        indexes = @Index(name = "ix_socks_cotton_part_color", columnList = "cottonPart, color_id"))
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 public class Sock {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "socks_seq")
+    @SequenceGenerator(name = "socks_seq", sequenceName = "socks_seq", allocationSize = 50)
     private Long id;
+    @NaturalId(mutable = true)
+    @Convert(converter = ColorConverter.class)
+    @Column(name = "color_id", nullable = false)
     private String color;
+    @NaturalId(mutable = true)
     private int cottonPart;
     private int quantity;
+    /**
+     * Удерживается неподтверждёнными резервами: отгрузить можно не больше {@code quantity - reserved}.
+     */
+    @JsonIgnore
+    private int reserved;
+    /**
+     * Версия строки для оптимистической блокировки. Атомарные движения остатков в SQL тоже увеличивают её,
+     * поэтому изменение по устаревшему чтению не перезапишет их молча.
+     */
+    @Version
+    private long version;
 }
 
@@ -0,0 +1,13 @@
+package com.example.socks.model;
+
+import java.util.Comparator;
+
+public record SockKey(String color, int cottonPart) implements Comparable<SockKey> {
+    private static final Comparator<SockKey> ORDER = Comparator.comparing(SockKey::color)
+            .thenComparingInt(SockKey::cottonPart);
+
+    @Override
+    public int compareTo(SockKey other) {
+        return ORDER.compare(this, other);
+    }
+}
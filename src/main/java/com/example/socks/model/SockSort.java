@@ -0,0 +1,10 @@
+package com.example.socks.model;
+
+public enum SockSort {
+    COLOR,
+    COTTON_PART;
+
+    public static SockSort fromValue(String value) {
+        return "cottonPart".equalsIgnoreCase(value) ? COTTON_PART : COLOR;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.socks.model;
+
+import java.time.Instant;
+
+/**
+ * Запись журнала движений: знаковое изменение остатка позиции в момент {@code occurredAt}.
+ */
+public record StockMovement(Instant occurredAt, SockKey key, long delta) {
+}
@@ -0,0 +1,73 @@
+package com.example.socks.reactive;
+
+import com.example.socks.repository.ColorDictionary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.retry.Retry;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь цветов для R2DBC: то же, что {@link ColorDictionary}, без блокирующих вызовов. Новые цвета регистрируются
+ * вне транзакции операции (каждый запрос фиксируется сам), поэтому откат операции не оставляет в кэше лишних id.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveColorDictionary {
+    private static final int MAX_REGISTER_ATTEMPTS = 3;
+
+    private final DatabaseClient databaseClient;
+    private final Scheduler databaseScheduler;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    public ReactiveColorDictionary(DatabaseClient databaseClient, Scheduler databaseScheduler) {
+        this.databaseClient = databaseClient;
+        this.databaseScheduler = databaseScheduler;
+    }
+
+    /**
+     * @return id цвета или {@link ColorDictionary#UNKNOWN}, если такого цвета нет
+     */
+    public Mono<Integer> idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return Mono.just(id);
+        }
+        return databaseClient.sql("SELECT id FROM colors WHERE name = :name")
+                .bind("name", name)
+                .map(row -> row.get(0, Integer.class))
+                .one()
+                .subscribeOn(databaseScheduler)
+                .doOnNext(found -> ids.put(name, found))
+                .defaultIfEmpty(ColorDictionary.UNKNOWN);
+    }
+
+    /**
+     * Возвращает id цвета, добавляя его в словарь при необходимости.
+     */
+    public Mono<Integer> register(String name) {
+        return idOf(name).flatMap(id -> id != ColorDictionary.UNKNOWN ? Mono.just(id)
+                : databaseClient.sql("MERGE INTO colors (name) KEY (name) VALUES (:name)")
+                .bind("name", name)
+                .fetch()
+                .rowsUpdated()
+                .subscribeOn(databaseScheduler)
+                .then(Mono.defer(() -> idOf(name)))
+                // Тот же цвет одновременно добавил другой запрос: он будет прочитан при повторе.
+                .retryWhen(Retry.max(MAX_REGISTER_ATTEMPTS - 1).filter(DataIntegrityViolationException.class::isInstance)));
+    }
+
+    public Mono<Map<String, Integer>> registerAll(Collection<String> colors) {
+        return Flux.fromIterable(colors)
+                .distinct()
+                .concatMap(color -> register(color).map(id -> Map.entry(color, id)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.socks.reactive;
+
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.model.Sock;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Те же адреса, что у {@link com.example.socks.controller.SockController}: приход, отгрузка, пакетные движения,
+ * количество, страницы и поток выборки, загрузка CSV и изменение позиции.
+ */
+@RestController
+@RequestMapping("/api/socks")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSockController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final ReactiveSockService sockService;
+
+    @PostMapping("/income")
+    public Mono<String> income(@RequestBody CreateSockRequest request) {
+        return sockService.income(request);
+    }
+
+    @PostMapping("/outcome")
+    public Mono<String> outcome(@RequestBody CreateSockRequest request) {
+        return sockService.outcome(request);
+    }
+
+    @PostMapping("/movements")
+    public Mono<MovementBatchResponse> applyMovements(@RequestBody List<StockMovementRequest> movements) {
+        return sockService.applyMovements(movements);
+    }
+
+    @GetMapping("")
+    public Mono<Long> getSockCount(@RequestParam(required = false) String color,
+                                   @RequestParam(required = false) String comparison,
+                                   @RequestParam(required = false) Integer cottonPart) {
+        return sockService.getSockCountByFilter(color, comparison, cottonPart);
+    }
+
+    /**
+     * Тело читается событиями multipart по мере поступления: блоки части {@code file} сразу уходят в разбор,
+     * файл не сохраняется ни в памяти, ни на диске.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<BatchUploadResponse> uploadSocksBatch(@RequestBody Flux<PartEvent> parts) {
+        return sockService.uploadSocksBatch(parts.<DataBuffer>handle((part, sink) -> {
+            if (part instanceof FilePartEvent && "file".equals(part.name())) {
+                sink.next(part.content());
+            } else {
+                DataBufferUtils.release(part.content());
+            }
+        }));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<String> updateSock(@PathVariable Long id, @RequestBody CreateSockRequest request) {
+        return sockService.updateSock(id, request);
+    }
+
+    @GetMapping("/filter")
+    public Mono<ResponseEntity<List<Sock>>> filterSocks(
+            @RequestParam int minCottonPart,
+            @RequestParam int maxCottonPart,
+            @RequestParam(required = false, defaultValue = "color") String sortBy,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        return sockService.filterSocks(minCottonPart, maxCottonPart, sortBy, after, limit).map(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getItems());
+        });
+    }
+
+    /**
+     * Выборка целиком в NDJSON с обратным давлением: строки читаются из базы по мере того, как клиент принимает ответ.
+     */
+    @GetMapping(value = "/filter/stream", produces = NDJSON_VALUE)
+    public Flux<Sock> streamSocks(
+            @RequestParam int minCottonPart,
+            @RequestParam int maxCottonPart,
+            @RequestParam(required = false, defaultValue = "color") String sortBy) {
+        return sockService.streamSocks(minCottonPart, maxCottonPart, sortBy);
+    }
+}
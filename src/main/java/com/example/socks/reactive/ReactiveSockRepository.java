@@ -0,0 +1,206 @@
+package com.example.socks.reactive;
+
+import com.example.socks.model.Comparison;
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.model.SockSort;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Запросы к socks через R2DBC. SQL тот же, что у репозиториев основного приложения: изменения остатков — одним
+ * атомарным UPDATE или MERGE, выборки — соединением со словарём colors. Запросы выполняются на потоках
+ * {@code databaseScheduler}, а не на потоках Netty.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSockRepository {
+    // Порядок и курсор — те же, что в SockListingRepository: по хлопку — индексом socks с именем цвета подзапросом,
+    // по цвету — соединением со следующими по имени цветами, у которых есть строки в диапазоне.
+    private static final String COLUMNS = "s.id, c.name, s.cotton_part, s.quantity, s.reserved, s.version ";
+    private static final String SELECT = "SELECT s.id, (SELECT c.name FROM colors c WHERE c.id = s.color_id), "
+            + "s.cotton_part, s.quantity, s.reserved, s.version FROM socks s ";
+    private static final String SELECT_BY_COLOR = "SELECT " + COLUMNS + "FROM socks s JOIN colors c ON c.id = s.color_id ";
+    private static final String IN_RANGE = "WHERE s.cotton_part BETWEEN :min AND :max ";
+    private static final String PAGE_BY_COLOR = "SELECT " + COLUMNS + "FROM ("
+            + "SELECT p.id, p.name FROM colors p WHERE p.name >= :color AND EXISTS "
+            + "(SELECT 1 FROM socks e WHERE e.color_id = p.id AND e.cotton_part BETWEEN :min AND :max) "
+            + "ORDER BY p.name LIMIT :colors) c JOIN socks s ON s.color_id = c.id "
+            + IN_RANGE + "AND (c.name, s.cotton_part) > (:color, :cottonPart) ";
+    private static final String ORDER_BY_COLOR = "ORDER BY c.name, s.cotton_part";
+    private static final String ORDER_BY_COTTON_PART = "ORDER BY s.cotton_part, s.color_id";
+    private static final String AFTER_COTTON_PART = "AND (s.cotton_part, s.color_id) > (:cottonPart, (SELECT id FROM colors WHERE name = :color)) ";
+
+    private static final String INCREASE_SQL = "UPDATE socks SET quantity = quantity + :quantity, version = version + 1 "
+            + "WHERE color_id = :colorId AND cotton_part = :cottonPart";
+    private static final String DECREASE_SQL = "UPDATE socks SET quantity = quantity - :quantity, version = version + 1 "
+            + "WHERE color_id = :colorId AND cotton_part = :cottonPart AND quantity - reserved >= :quantity";
+    private static final String UPSERT_SQL = "MERGE INTO socks s "
+            + "USING (VALUES (CAST(:colorId AS INTEGER), CAST(:cottonPart AS INTEGER), CAST(:quantity AS INTEGER))) "
+            + "AS v(color_id, cotton_part, quantity) "
+            + "ON s.color_id = v.color_id AND s.cotton_part = v.cotton_part "
+            + "WHEN MATCHED THEN UPDATE SET s.quantity = s.quantity + v.quantity, s.version = s.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (id, color_id, cotton_part, quantity) "
+            + "VALUES (NEXT VALUE FOR socks_seq, v.color_id, v.cotton_part, v.quantity)";
+    private static final String MOVEMENT_SQL = "MERGE INTO socks s "
+            + "USING (VALUES (CAST(:colorId AS INTEGER), CAST(:cottonPart AS INTEGER), CAST(:quantity AS INTEGER))) "
+            + "AS v(color_id, cotton_part, quantity) "
+            + "ON s.color_id = v.color_id AND s.cotton_part = v.cotton_part "
+            + "WHEN MATCHED AND s.quantity - s.reserved + v.quantity >= 0 THEN UPDATE SET s.quantity = s.quantity + v.quantity, s.version = s.version + 1 "
+            + "WHEN NOT MATCHED AND v.quantity >= 0 THEN INSERT (id, color_id, cotton_part, quantity) "
+            + "VALUES (NEXT VALUE FOR socks_seq, v.color_id, v.cotton_part, v.quantity)";
+    private static final String UPDATE_SQL = "UPDATE socks SET color_id = :colorId, cotton_part = :cottonPart, "
+            + "quantity = :quantity, version = version + 1 WHERE id = :id AND version = :version";
+
+    private final DatabaseClient databaseClient;
+    private final Scheduler databaseScheduler;
+
+    public ReactiveSockRepository(DatabaseClient databaseClient, Scheduler databaseScheduler) {
+        this.databaseClient = databaseClient;
+        this.databaseScheduler = databaseScheduler;
+    }
+
+    public Mono<Long> increaseQuantity(int colorId, int cottonPart, int quantity) {
+        return change(INCREASE_SQL, colorId, cottonPart, quantity);
+    }
+
+    public Mono<Long> decreaseQuantity(int colorId, int cottonPart, int quantity) {
+        return change(DECREASE_SQL, colorId, cottonPart, quantity);
+    }
+
+    public Mono<Long> upsertQuantity(int colorId, int cottonPart, int quantity) {
+        return change(UPSERT_SQL, colorId, cottonPart, quantity);
+    }
+
+    /**
+     * Знаковое изменение остатка.
+     *
+     * @return 0, если отгрузка больше остатка или позиции нет
+     */
+    public Mono<Long> applyMovement(int colorId, int cottonPart, int quantity) {
+        return change(MOVEMENT_SQL, colorId, cottonPart, quantity);
+    }
+
+    private Mono<Long> change(String sql, int colorId, int cottonPart, int quantity) {
+        return databaseClient.sql(sql)
+                .bind("colorId", colorId)
+                .bind("cottonPart", cottonPart)
+                .bind("quantity", quantity)
+                .fetch()
+                .rowsUpdated()
+                .subscribeOn(databaseScheduler);
+    }
+
+    public Mono<Integer> findQuantity(int colorId, int cottonPart) {
+        return databaseClient.sql("SELECT quantity - reserved FROM socks WHERE color_id = :colorId AND cotton_part = :cottonPart")
+                .bind("colorId", colorId)
+                .bind("cottonPart", cottonPart)
+                .map(row -> row.get(0, Integer.class))
+                .one()
+                .subscribeOn(databaseScheduler);
+    }
+
+    public Mono<Sock> findById(long id) {
+        return databaseClient.sql(SELECT + "WHERE s.id = :id")
+                .bind("id", id)
+                .map(ReactiveSockRepository::sock)
+                .one()
+                .subscribeOn(databaseScheduler);
+    }
+
+    /**
+     * Изменение позиции при неизменной версии строки.
+     *
+     * @return 0, если строку успели изменить после чтения версии
+     */
+    public Mono<Long> update(long id, long version, int colorId, int cottonPart, int quantity) {
+        return databaseClient.sql(UPDATE_SQL)
+                .bind("id", id)
+                .bind("version", version)
+                .bind("colorId", colorId)
+                .bind("cottonPart", cottonPart)
+                .bind("quantity", quantity)
+                .fetch()
+                .rowsUpdated()
+                .subscribeOn(databaseScheduler);
+    }
+
+    /**
+     * Сумма доступных остатков по фильтру: {@code colorId} null — все цвета, {@code comparison} null — любой процент хлопка.
+     */
+    public Mono<Long> sumQuantity(Integer colorId, Comparison comparison, Integer cottonPart) {
+        StringBuilder sql = new StringBuilder("SELECT COALESCE(SUM(quantity - reserved), 0) FROM socks WHERE 1 = 1");
+        if (colorId != null) {
+            sql.append(" AND color_id = :colorId");
+        }
+        if (comparison != null) {
+            sql.append(switch (comparison) {
+                case MORE_THAN -> " AND cotton_part > :cottonPart";
+                case LESS_THAN -> " AND cotton_part < :cottonPart";
+                case EQUAL -> " AND cotton_part = :cottonPart";
+            });
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        if (colorId != null) {
+            spec = spec.bind("colorId", colorId);
+        }
+        if (comparison != null) {
+            spec = spec.bind("cottonPart", cottonPart);
+        }
+        return spec.map(row -> row.get(0, Long.class)).one().subscribeOn(databaseScheduler);
+    }
+
+    /**
+     * Страница после ключа {@code after} (или с начала, если он null) в порядке {@code sort}.
+     */
+    public Flux<Sock> findPage(int minCottonPart, int maxCottonPart, SockSort sort, SockKey after, int limit) {
+        String sql;
+        if (sort == SockSort.COLOR) {
+            sql = PAGE_BY_COLOR;
+        } else {
+            sql = SELECT + IN_RANGE + (after == null ? "" : AFTER_COTTON_PART);
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql + orderBy(sort) + " LIMIT :limit")
+                .bind("min", minCottonPart)
+                .bind("max", maxCottonPart)
+                .bind("limit", limit);
+        if (sort == SockSort.COLOR) {
+            // Без курсора — ключ до любого реального: пустое имя цвета и хлопок -1.
+            spec = spec.bind("colors", limit + 1)
+                    .bind("color", after == null ? "" : after.color())
+                    .bind("cottonPart", after == null ? -1 : after.cottonPart());
+        } else if (after != null) {
+            spec = spec.bind("color", after.color()).bind("cottonPart", after.cottonPart());
+        }
+        return spec.map(ReactiveSockRepository::sock).all().subscribeOn(databaseScheduler);
+    }
+
+    /**
+     * Все строки диапазона в порядке {@code sort}; строки читаются по мере запроса подписчиком.
+     */
+    public Flux<Sock> stream(int minCottonPart, int maxCottonPart, SockSort sort) {
+        return databaseClient.sql((sort == SockSort.COLOR ? SELECT_BY_COLOR : SELECT) + IN_RANGE + orderBy(sort))
+                .bind("min", minCottonPart)
+                .bind("max", maxCottonPart)
+                .map(ReactiveSockRepository::sock)
+                .all()
+                .subscribeOn(databaseScheduler);
+    }
+
+    private static String orderBy(SockSort sort) {
+        return switch (sort) {
+            case COLOR -> ORDER_BY_COLOR;
+            case COTTON_PART -> ORDER_BY_COTTON_PART;
+        };
+    }
+
+    private static Sock sock(Readable row) {
+        return new Sock(row.get(0, Long.class), row.get(1, String.class), row.get(2, Integer.class),
+                row.get(3, Integer.class), row.get(4, Integer.class), row.get(5, Long.class));
+    }
+}
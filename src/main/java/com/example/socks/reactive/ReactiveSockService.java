@@ -0,0 +1,320 @@
+package com.example.socks.reactive;
+
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.MovementLineResult;
+import com.example.socks.dto.SockPage;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.ConflictException;
+import com.example.socks.exception.InsufficientStockException;
+import com.example.socks.exception.NotFoundException;
+import com.example.socks.model.ColorNames;
+import com.example.socks.model.Comparison;
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.model.SockSort;
+import com.example.socks.repository.ColorDictionary;
+import com.example.socks.service.impl.MovementBatch;
+import com.example.socks.service.impl.SockCsvParser;
+import com.example.socks.service.impl.SockPages;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Операции склада без блокировок потока: те же правила и ответы, что у
+ * {@link com.example.socks.service.impl.SockServiceImpl}, на R2DBC. Реестр остатков в памяти, индекс количеств,
+ * история движений и поток изменений есть только в основном приложении: здесь каждая операция идёт в базу.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveSockService {
+    private static final int MAX_REPORTED_LINES = 1000;
+
+    private final ReactiveSockRepository repository;
+    private final ReactiveColorDictionary colorDictionary;
+    private final TransactionalOperator transactionalOperator;
+    private final Retry retry;
+
+    public ReactiveSockService(ReactiveSockRepository repository,
+                               ReactiveColorDictionary colorDictionary,
+                               TransactionalOperator transactionalOperator,
+                               @Value("${socks.retry.max-attempts:5}") int maxAttempts,
+                               @Value("${socks.retry.initial-backoff:5ms}") Duration initialBackoff,
+                               @Value("${socks.retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.repository = repository;
+        this.colorDictionary = colorDictionary;
+        this.transactionalOperator = transactionalOperator;
+        // Как RetryingExecutor: конфликт параллельных записей повторяется с задержкой, после всех попыток — 409.
+        this.retry = Retry.backoff(maxAttempts - 1, initialBackoff)
+                .maxBackoff(maxBackoff)
+                .filter(e -> e instanceof ConcurrencyFailureException || e instanceof DataIntegrityViolationException)
+                .onRetryExhaustedThrow((spec, signal) -> new ConflictException(
+                        "Позиция одновременно изменяется другими запросами, повторите операцию позже.", signal.failure()));
+    }
+
+    public Mono<String> income(CreateSockRequest request) {
+        return Mono.fromRunnable(() -> normalize(request))
+                .then(Mono.defer(() -> {
+                    String color = request.getColor();
+                    int cottonPart = request.getCottonPart();
+                    return colorDictionary.idOf(color)
+                            .flatMap(colorId -> colorId == ColorDictionary.UNKNOWN ? Mono.just(0L)
+                                    : repository.increaseQuantity(colorId, cottonPart, request.getQuantity()))
+                            .flatMap(updated -> updated > 0
+                                    ? Mono.just(createUpdatedResponse(color, cottonPart))
+                                    : colorDictionary.register(color)
+                                    .flatMap(colorId -> repository.upsertQuantity(colorId, cottonPart, request.getQuantity()))
+                                    .thenReturn(createAddedResponse(color, cottonPart)));
+                }))
+                .retryWhen(retry);
+    }
+
+    public Mono<String> outcome(CreateSockRequest request) {
+        return Mono.fromRunnable(() -> normalize(request))
+                .then(Mono.defer(() -> colorDictionary.idOf(request.getColor())))
+                .flatMap(colorId -> colorId == ColorDictionary.UNKNOWN
+                        ? Mono.error(new NotFoundException(createNotFoundResponse(request)))
+                        : repository.decreaseQuantity(colorId, request.getCottonPart(), request.getQuantity())
+                        .flatMap(updated -> updated > 0
+                                ? Mono.just(createShippedResponse(request))
+                                : repository.findQuantity(colorId, request.getCottonPart())
+                                .switchIfEmpty(Mono.error(() -> new NotFoundException(createNotFoundResponse(request))))
+                                .flatMap(available -> Mono.error(createInsufficientQuantityException(request, available)))))
+                .retryWhen(retry);
+    }
+
+    /**
+     * Все движения пакета в одной транзакции: либо все строки, либо ни одной.
+     */
+    public Mono<MovementBatchResponse> applyMovements(List<StockMovementRequest> movements) {
+        return Mono.fromCallable(() -> MovementBatch.of(movements))
+                .flatMap(batch -> {
+                    SortedMap<SockKey, Integer> changes = batch.changes();
+                    return colorDictionary.registerAll(changes.keySet().stream().map(SockKey::color).toList())
+                            .flatMap(colorIds -> Flux.fromIterable(changes.entrySet())
+                                    .concatMap(change -> repository.applyMovement(colorIds.get(change.getKey().color()),
+                                                    change.getKey().cottonPart(), change.getValue())
+                                            .filter(updated -> updated == 0)
+                                            .map(updated -> change.getKey()))
+                                    .concatMap(key -> repository.findQuantity(colorIds.get(key.color()), key.cottonPart())
+                                            .map(quantity -> Optional.of((long) quantity))
+                                            .defaultIfEmpty(Optional.empty())
+                                            .map(available -> MovementBatch.failure(key, changes.get(key), available))
+                                            .map(failure -> Map.entry(key, failure)))
+                                    .collectMap(Map.Entry::getKey, Map.Entry::getValue, TreeMap<SockKey, MovementLineResult>::new)
+                                    .flatMap(failures -> failures.isEmpty()
+                                            ? Mono.just(batch.applied())
+                                            : Mono.<MovementBatchResponse>error(batch.rejected(failures)))
+                                    .as(transactionalOperator::transactional));
+                })
+                .retryWhen(retry);
+    }
+
+    public Mono<Long> getSockCountByFilter(String color, String comparison, Integer cottonPart) {
+        return Mono.defer(() -> {
+            String normalized = ColorNames.normalize(color);
+            Comparison operator = cottonPart == null ? null : Comparison.fromValue(comparison)
+                    .orElseThrow(() -> new BadRequestException(String.format(
+                            "Некорректный оператор сравнения '%s'. Допустимые значения: moreThan, lessThan, equal.", comparison)));
+            if (normalized == null) {
+                return repository.sumQuantity(null, operator, cottonPart);
+            }
+            return colorDictionary.idOf(normalized).flatMap(colorId -> colorId == ColorDictionary.UNKNOWN
+                    ? Mono.just(0L)
+                    : repository.sumQuantity(colorId, operator, cottonPart));
+        });
+    }
+
+    public Mono<String> updateSock(Long id, CreateSockRequest request) {
+        return Mono.fromRunnable(() -> normalize(request))
+                .then(Mono.defer(() -> colorDictionary.register(request.getColor())))
+                .flatMap(colorId -> repository.findById(id)
+                        .switchIfEmpty(Mono.error(() -> new NotFoundException(String.format("Носки с id %d не найдены.", id))))
+                        .flatMap(sock -> repository.update(id, sock.getVersion(), colorId, request.getCottonPart(), request.getQuantity())))
+                .flatMap(updated -> updated > 0
+                        ? Mono.just("Параметры носков успешно обновлены.")
+                        : Mono.<String>error(new OptimisticLockingFailureException("Позиция изменена после чтения.")))
+                .retryWhen(retry);
+    }
+
+    public Mono<SockPage> filterSocks(int minCottonPart, int maxCottonPart, String sortBy, String after, Integer limit) {
+        return Mono.defer(() -> {
+            if (SockPages.isUnpaged(limit, after)) {
+                return repository.stream(minCottonPart, maxCottonPart, SockSort.fromValue(sortBy))
+                        .collectList()
+                        .map(socks -> new SockPage(socks, null));
+            }
+            int pageSize = SockPages.pageSize(limit);
+            return repository.findPage(minCottonPart, maxCottonPart, SockSort.fromValue(sortBy), SockPages.after(after), pageSize)
+                    .collectList()
+                    .map(socks -> SockPages.page(socks, pageSize));
+        });
+    }
+
+    public Flux<Sock> streamSocks(int minCottonPart, int maxCottonPart, String sortBy) {
+        return repository.stream(minCottonPart, maxCottonPart, SockSort.fromValue(sortBy));
+    }
+
+    /**
+     * Загрузка CSV по мере поступления блоков тела запроса: целые строки разбираются на месте, хвост блока ждёт
+     * следующего. В памяти остаются только суммы по позициям. Файл с ошибками не загружается; иначе все позиции
+     * применяются в одной транзакции.
+     */
+    public Mono<BatchUploadResponse> uploadSocksBatch(Flux<DataBuffer> content) {
+        long started = System.nanoTime();
+        return content.reduceWith(CsvUpload::new, (upload, buffer) -> {
+                    try {
+                        upload.accept(buffer);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                    return upload;
+                })
+                .defaultIfEmpty(new CsvUpload())
+                .flatMap(upload -> {
+                    upload.finish();
+                    if (upload.rowsRejected > 0) {
+                        return Mono.error(new BadRequestException(createRejectedResponse(upload)));
+                    }
+                    Map<SockKey, Integer> quantities = new TreeMap<>();
+                    upload.parser.drain((color, cottonPart, quantity) -> quantities.put(new SockKey(color, cottonPart), (int) quantity));
+                    return colorDictionary.registerAll(quantities.keySet().stream().map(SockKey::color).toList())
+                            .flatMap(colorIds -> Flux.fromIterable(quantities.entrySet())
+                                    .concatMap(row -> repository.upsertQuantity(colorIds.get(row.getKey().color()),
+                                            row.getKey().cottonPart(), row.getValue()))
+                                    .then()
+                                    .as(transactionalOperator::transactional))
+                            .retryWhen(retry)
+                            .then(Mono.fromCallable(() -> {
+                                long elapsedNanos = System.nanoTime() - started;
+                                BatchUploadResponse response = BatchUploadResponse.builder()
+                                        .rowsRead(upload.rowsRead)
+                                        .rowsApplied(upload.rowsRead)
+                                        .rowsRejected(0)
+                                        .rejectedLines(List.of())
+                                        .elapsedMillis(elapsedNanos / 1_000_000)
+                                        .rowsPerSecond(elapsedNanos == 0 ? 0 : upload.rowsRead * 1_000_000_000.0 / elapsedNanos)
+                                        .build();
+                                log.info("CSV импорт (реактивный): прочитано {}, позиций {}, {} строк/с",
+                                        response.getRowsRead(), quantities.size(), Math.round(response.getRowsPerSecond()));
+                                return response;
+                            }));
+                });
+    }
+
+    private static void normalize(CreateSockRequest request) {
+        request.validate();
+        request.setColor(ColorNames.normalize(request.getColor()));
+    }
+
+    private static String createAddedResponse(String color, int cottonPart) {
+        return String.format("Добавлена новая партия носков с цветом '%s' и содержанием хлопка %d%%.", color, cottonPart);
+    }
+
+    private static String createUpdatedResponse(String color, int cottonPart) {
+        return String.format("Носки с цветом '%s' и содержанием хлопка %d%% были успешно обновлены.", color, cottonPart);
+    }
+
+    private static String createShippedResponse(CreateSockRequest request) {
+        return String.format("Носки с цветом '%s' и содержанием хлопка %d%% были успешно отгружены.", request.getColor(), request.getCottonPart());
+    }
+
+    private static String createNotFoundResponse(CreateSockRequest request) {
+        return String.format("Носков с цветом '%s' и содержанием хлопка %d%% на складе нет.", request.getColor(), request.getCottonPart());
+    }
+
+    private static InsufficientStockException createInsufficientQuantityException(CreateSockRequest request, int available) {
+        return new InsufficientStockException(String.format("Недостаточно носков с цветом '%s' и содержанием хлопка %d%%." +
+                        " Запрашиваемое количество: %d, доступное количество: %d",
+                request.getColor(), request.getCottonPart(), request.getQuantity(), available));
+    }
+
+    private static String createRejectedResponse(CsvUpload upload) {
+        String lines = upload.rejectedLines.stream().limit(20).map(String::valueOf).collect(Collectors.joining(", "));
+        return String.format("Файл не загружен: ошибки в строках %s%s (всего отклонено строк: %d).",
+                lines, upload.rowsRejected > 20 ? ", ..." : "", upload.rowsRejected);
+    }
+
+    /**
+     * Состояние разбора загружаемого CSV. Первая строка — заголовок.
+     */
+    private static final class CsvUpload {
+        private final SockCsvParser.LineParser parser = new SockCsvParser.LineParser();
+        private byte[] bytes = new byte[64 * 1024];
+        private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        private int length;
+        private long lineNumber;
+        private long rowsRead;
+        private long rowsRejected;
+        private final List<Long> rejectedLines = new ArrayList<>();
+
+        private void accept(DataBuffer data) {
+            int readable = data.readableByteCount();
+            if (length + readable > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + readable));
+                buffer = ByteBuffer.wrap(bytes);
+            }
+            data.read(bytes, length, readable);
+            int scanned = length;
+            length += readable;
+            int lineStart = 0;
+            for (int i = scanned; i < length; i++) {
+                if (bytes[i] == '\n') {
+                    acceptLine(lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            length -= lineStart;
+            System.arraycopy(bytes, lineStart, bytes, 0, length);
+        }
+
+        private void finish() {
+            if (length > 0) {
+                acceptLine(0, length);
+                length = 0;
+            }
+        }
+
+        private void acceptLine(int from, int to) {
+            if (++lineNumber == 1) {
+                return;
+            }
+            SockCsvParser.LineResult result = parser.parseLine(buffer, from, to);
+            if (result == SockCsvParser.LineResult.BLANK) {
+                return;
+            }
+            rowsRead++;
+            if (result == SockCsvParser.LineResult.REJECTED) {
+                rowsRejected++;
+                if (rejectedLines.size() < MAX_REPORTED_LINES) {
+                    rejectedLines.add(lineNumber);
+                }
+            }
+        }
+    }
+}
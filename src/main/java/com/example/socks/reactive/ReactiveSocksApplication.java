@@ -0,0 +1,82 @@
+package com.example.socks.reactive;
+
+import com.example.socks.exception.GlobalExceptionHandler;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Реактивный вариант API склада: WebFlux на Netty и R2DBC к H2 (профиль {@code reactive}). Запускается отдельно
+ * от {@link com.example.socks.SocksApplication}: классы этого пакета создаются только в реактивном веб-приложении,
+ * поэтому при сканировании основным приложением пропускаются.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@ComponentScan
+@Import(GlobalExceptionHandler.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSocksApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveSocksApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles("reactive")
+                .run(args);
+    }
+
+    /**
+     * Tomcat тоже на classpath (его использует основное приложение) и выбирался бы первым.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Потоки для запросов к базе. r2dbc-h2 выполняет запрос синхронно в вызывающем потоке: на потоке Netty запрос
+     * занимал бы цикл событий вместе со всеми его соединениями.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler databaseScheduler(R2dbcProperties properties) {
+        return Schedulers.newBoundedElastic(properties.getPool().getMaxSize(), Integer.MAX_VALUE, "r2dbc-h2");
+    }
+
+    /**
+     * Пул соединений с настройками {@code spring.r2dbc.*}. Соединение, которого пришлось ждать, выдаётся через
+     * {@code databaseScheduler}: по умолчанию пул отдаёт его следующему ожидающему прямо в потоке, вернувшем
+     * соединение, и под постоянной очередью этот поток бесконечно выполнял бы чужие запросы, не доходя до своих задач.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory(R2dbcProperties properties, Scheduler databaseScheduler) {
+        ConnectionFactory connectionFactory = ConnectionFactoryBuilder.withUrl(properties.getUrl())
+                .username(properties.getUsername())
+                .password(properties.getPassword())
+                .build();
+        R2dbcProperties.Pool pool = properties.getPool();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .customizer(builder -> builder.acquisitionScheduler(databaseScheduler))
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.socks.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь цветов: таблица colors и двусторонний кэш имя ↔ id. Имена приходят уже нормализованными
+ * ({@link com.example.socks.model.ColorNames}). Новые цвета добавляются в текущей транзакции, на её же соединении:
+ * отдельная транзакция брала бы второе соединение из пула, пока первое занято операцией. Прочитанное внутри транзакции
+ * попадает в кэш только после её фиксации, поэтому откат операции не оставляет в кэше id, которого нет в базе.
+ */
+@Repository
+@Slf4j
+public class ColorDictionary {
+    public static final int UNKNOWN = -1;
+    private static final int MAX_REGISTER_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    public ColorDictionary(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @PostConstruct
+    public void load() {
+        jdbcTemplate.query("SELECT id, name FROM colors", rs -> {
+            put(rs.getString(2), rs.getInt(1));
+        });
+        log.info("Словарь цветов загружен: {} цветов", ids.size());
+    }
+
+    /**
+     * @return id цвета или {@link #UNKNOWN}, если такого цвета нет: условие с ним не совпадёт ни с одной строкой
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        List<Integer> found = jdbcTemplate.queryForList("SELECT id FROM colors WHERE name = ?", Integer.class, name);
+        if (found.isEmpty()) {
+            return UNKNOWN;
+        }
+        cache(name, found.get(0));
+        return found.get(0);
+    }
+
+    public String nameOf(int id) {
+        String name = names.get(id);
+        if (name != null) {
+            return name;
+        }
+        name = jdbcTemplate.queryForObject("SELECT name FROM colors WHERE id = ?", String.class, id);
+        cache(name, id);
+        return name;
+    }
+
+    public int register(String name) {
+        return registerAll(List.of(name)).get(name);
+    }
+
+    /**
+     * Возвращает id цветов, добавляя в словарь отсутствующие.
+     */
+    public Map<String, Integer> registerAll(Collection<String> colors) {
+        Map<String, Integer> result = new HashMap<>(colors.size() * 2);
+        List<String> missing = new ArrayList<>();
+        for (String color : colors) {
+            Integer id = ids.get(color);
+            if (id != null) {
+                result.put(color, id);
+            } else {
+                missing.add(color);
+            }
+        }
+        // Одинаковый порядок вставки: параллельные транзакции не ждут друг друга по кругу.
+        missing.sort(null);
+        for (int attempt = 1; !missing.isEmpty(); attempt++) {
+            insert(missing, attempt);
+            for (int from = 0; from < missing.size(); from += 1000) {
+                List<String> batch = missing.subList(from, Math.min(missing.size(), from + 1000));
+                namedJdbcTemplate.query("SELECT id, name FROM colors WHERE name IN (:names)",
+                        new MapSqlParameterSource("names", batch), rs -> {
+                            cache(rs.getString(2), rs.getInt(1));
+                            result.put(rs.getString(2), rs.getInt(1));
+                        });
+            }
+            missing.removeIf(result::containsKey);
+        }
+        return result;
+    }
+
+    private void insert(List<String> colors, int attempt) {
+        try {
+            jdbcTemplate.batchUpdate("MERGE INTO colors (name) KEY (name) VALUES (?)", colors, colors.size(),
+                    (ps, color) -> ps.setString(1, color));
+        } catch (DataIntegrityViolationException e) {
+            // Тот же цвет одновременно добавил другой поток: он будет прочитан, недостающие добавятся повторно.
+            if (attempt >= MAX_REGISTER_ATTEMPTS) {
+                throw e;
+            }
+        }
+    }
+
+    private void cache(String name, int id) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            put(name, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(name, id);
+            }
+        });
+    }
+
+    private void put(String name, int id) {
+        ids.put(name, id);
+        names.put(id, name);
+    }
+}
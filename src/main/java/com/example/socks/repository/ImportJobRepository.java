@@ -0,0 +1,110 @@
+package com.example.socks.repository;
+
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.dto.ImportJobResponse;
+import com.example.socks.dto.ImportJobStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+/**
+ * Задания фонового импорта {@code import_jobs}. Ключ идемпотентности — уникальный SHA-256 файла: из двух загрузок
+ * одного файла задание создаёт та, чья вставка прошла, в том числе после перезапуска сервиса.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ImportJobRepository {
+    private static final String SELECT = "SELECT id, sha256, file_name, bytes_total, status, submitted_at, finished_at, "
+            + "rows_read, rows_applied, rows_rejected, error FROM import_jobs WHERE ";
+    private static final RowMapper<ImportJobResponse> JOB = (rs, rowNum) -> {
+        long rowsRead = rs.getLong(8);
+        boolean finished = rs.getObject(7) != null;
+        return ImportJobResponse.builder()
+                .id(rs.getString(1))
+                .sha256(rs.getString(2))
+                .fileName(rs.getString(3))
+                .bytesTotal(rs.getLong(4))
+                .bytesProcessed(finished ? rs.getLong(4) : 0)
+                .status(ImportJobStatus.valueOf(rs.getString(5)))
+                .submittedAt(rs.getObject(6, OffsetDateTime.class).toInstant())
+                .finishedAt(finished ? rs.getObject(7, OffsetDateTime.class).toInstant() : null)
+                .rowsProcessed(rowsRead)
+                .result(rs.getObject(9) == null ? null : BatchUploadResponse.builder()
+                        .rowsRead(rowsRead)
+                        .rowsApplied(rs.getLong(9))
+                        .rowsRejected(rs.getLong(10))
+                        .build())
+                .error(rs.getString(11))
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Занимает ключ {@code sha256} за новым заданием. Ключ, занятый заданием с ошибкой, передаётся новому.
+     *
+     * @return {@code false}, если файл уже загружен другим заданием
+     */
+    public boolean claim(String id, String sha256, String fileName, long bytesTotal, Instant submittedAt) {
+        try {
+            jdbcTemplate.update("INSERT INTO import_jobs (id, sha256, file_name, bytes_total, status, submitted_at) "
+                            + "VALUES (?, ?, ?, ?, 'QUEUED', ?)",
+                    id, sha256, fileName, bytesTotal, toTimestamp(submittedAt));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return jdbcTemplate.update("UPDATE import_jobs SET id = ?, file_name = ?, bytes_total = ?, status = 'QUEUED', "
+                            + "submitted_at = ?, finished_at = NULL, rows_read = NULL, rows_applied = NULL, "
+                            + "rows_rejected = NULL, error = NULL WHERE sha256 = ? AND status = 'FAILED'",
+                    id, fileName, bytesTotal, toTimestamp(submittedAt), sha256) == 1;
+        }
+    }
+
+    public Optional<ImportJobResponse> findById(String id) {
+        return jdbcTemplate.query(SELECT + "id = ?", JOB, id).stream().findFirst();
+    }
+
+    public Optional<ImportJobResponse> findBySha256(String sha256) {
+        return jdbcTemplate.query(SELECT + "sha256 = ?", JOB, sha256).stream().findFirst();
+    }
+
+    /**
+     * Помечает задание выполненным; вызывается в транзакции импорта, чтобы ключ и изменения склада фиксировались вместе.
+     */
+    public void markApplied(String id) {
+        jdbcTemplate.update("UPDATE import_jobs SET status = 'SUCCEEDED' WHERE id = ?", id);
+    }
+
+    public void finish(String id, ImportJobStatus status, Instant finishedAt, BatchUploadResponse result, String error) {
+        jdbcTemplate.update("UPDATE import_jobs SET status = ?, finished_at = ?, rows_read = ?, rows_applied = ?, "
+                        + "rows_rejected = ?, error = ? WHERE id = ?",
+                status.name(), toTimestamp(finishedAt),
+                result == null ? null : result.getRowsRead(),
+                result == null ? null : result.getRowsApplied(),
+                result == null ? null : result.getRowsRejected(),
+                error, id);
+    }
+
+    /**
+     * Завершает ошибкой задания, которые не успели выполниться до остановки сервиса, и освобождает их ключи.
+     */
+    public int failUnfinished(String error, Instant finishedAt) {
+        return jdbcTemplate.update("UPDATE import_jobs SET status = 'FAILED', finished_at = ?, error = ? "
+                + "WHERE status IN ('QUEUED', 'RUNNING')", toTimestamp(finishedAt), error);
+    }
+
+    public void delete(String id) {
+        jdbcTemplate.update("DELETE FROM import_jobs WHERE id = ?", id);
+    }
+
+    private static OffsetDateTime toTimestamp(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.MICROS).atOffset(ZoneOffset.UTC);
+    }
+}
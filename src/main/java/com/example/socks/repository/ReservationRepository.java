@@ -0,0 +1,90 @@
+package com.example.socks.repository;
+
+import com.example.socks.dto.ReservationResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Резервы {@code reservations}. Строка удаляется одним запросом, возвращающим удалённое: подтверждение, снятие
+ * и истечение одного резерва конкурируют за это удаление, и остаток меняет только тот, кто его выполнил.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReservationRepository {
+    private static final String DELETED = "SELECT id, sock_id, quantity, expires_at FROM OLD TABLE (DELETE FROM reservations WHERE ";
+    private static final RowMapper<Hold> HOLD = (rs, rowNum) ->
+            new Hold(rs.getString(1), rs.getLong(2), rs.getInt(3), rs.getObject(4, OffsetDateTime.class).toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Hold(String id, long sockId, int quantity, Instant expiresAt) {
+    }
+
+    public void insert(Hold hold) {
+        jdbcTemplate.update("INSERT INTO reservations (id, sock_id, quantity, expires_at) VALUES (?, ?, ?, ?)",
+                hold.id(), hold.sockId(), hold.quantity(), toTimestamp(hold.expiresAt()));
+    }
+
+    /**
+     * Резерв, срок которого ещё не наступил к {@code now}; истёкший, но ещё не снятый не находится.
+     */
+    public Optional<ReservationResponse> findActive(String id, Instant now) {
+        return jdbcTemplate.query("SELECT r.id, c.name, s.cotton_part, r.quantity, r.expires_at FROM reservations r "
+                        + "JOIN socks s ON s.id = r.sock_id JOIN colors c ON c.id = s.color_id WHERE r.id = ? AND r.expires_at > ?",
+                (rs, rowNum) -> new ReservationResponse(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getInt(4),
+                        rs.getObject(5, OffsetDateTime.class).toInstant()), id, toTimestamp(now)).stream().findFirst();
+    }
+
+    /**
+     * Удаляет резерв, если его срок ещё не наступил.
+     */
+    public Optional<Hold> deleteActive(String id, Instant now) {
+        return jdbcTemplate.query(DELETED + "id = ? AND expires_at > ?)", HOLD, id, toTimestamp(now)).stream().findFirst();
+    }
+
+    /**
+     * Удаляет резервы из {@code ids}, срок которых наступил к {@code now}.
+     */
+    public List<Hold> deleteExpired(Collection<String> ids, Instant now) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] args = new Object[ids.size() + 1];
+        int i = 0;
+        for (String id : ids) {
+            args[i++] = id;
+        }
+        args[i] = toTimestamp(now);
+        return jdbcTemplate.query(DELETED + "id IN (" + placeholders + ") AND expires_at <= ?)", HOLD, args);
+    }
+
+    /**
+     * Удаляет резервы позиции {@code sockId}, срок которых наступил к {@code now}.
+     */
+    public List<Hold> deleteExpired(long sockId, Instant now) {
+        return jdbcTemplate.query(DELETED + "sock_id = ? AND expires_at <= ?)", HOLD, sockId, toTimestamp(now));
+    }
+
+    public void forEachDeadline(BiConsumer<String, Instant> consumer) {
+        jdbcTemplate.query("SELECT id, expires_at FROM reservations",
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString(1), rs.getObject(2, OffsetDateTime.class).toInstant()));
+    }
+
+    private static OffsetDateTime toTimestamp(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.MICROS).atOffset(ZoneOffset.UTC);
+    }
+}
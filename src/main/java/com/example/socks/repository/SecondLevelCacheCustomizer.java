@@ -0,0 +1,34 @@
+package com.example.socks.repository;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Кэш второго уровня Hibernate: регионы Caffeine из {@code caffeine.conf}. Каждый контекст приложения получает свой
+ * менеджер кэшей — Hibernate закрывает его вместе с фабрикой сессий, и общий на процесс менеджер закрылся бы
+ * под остальными контекстами (тесты, перезапуск в бенчмарках).
+ */
+@Component
+public class SecondLevelCacheCustomizer implements HibernatePropertiesCustomizer {
+    private static final URI CONFIG = URI.create("classpath:caffeine.conf");
+
+    private final boolean enabled;
+
+    public SecondLevelCacheCustomizer(@Value("${socks.entity-cache.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        if (enabled) {
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER,
+                    new CaffeineCachingProvider().getCacheManager(CONFIG, getClass().getClassLoader()));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.socks.repository;
+
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+@Repository
+@RequiredArgsConstructor
+public class SockBatchRepository {
+    private static final String UPSERT_SQL = "MERGE INTO socks s "
+            + "USING (VALUES (?, ?, ?)) AS v(color_id, cotton_part, quantity) "
+            + "ON s.color_id = v.color_id AND s.cotton_part = v.cotton_part "
+            + "WHEN MATCHED THEN UPDATE SET s.quantity = s.quantity + v.quantity, s.version = s.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (id, color_id, cotton_part, quantity) "
+            + "VALUES (NEXT VALUE FOR socks_seq, v.color_id, v.cotton_part, v.quantity)";
+
+    private static final String MOVEMENT_SQL = "MERGE INTO socks s "
+            + "USING (VALUES (?, ?, ?)) AS v(color_id, cotton_part, quantity) "
+            + "ON s.color_id = v.color_id AND s.cotton_part = v.cotton_part "
+            + "WHEN MATCHED AND s.quantity - s.reserved + v.quantity >= 0 THEN UPDATE SET s.quantity = s.quantity + v.quantity, s.version = s.version + 1 "
+            + "WHEN NOT MATCHED AND v.quantity >= 0 THEN INSERT (id, color_id, cotton_part, quantity) "
+            + "VALUES (NEXT VALUE FOR socks_seq, v.color_id, v.cotton_part, v.quantity)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ColorDictionary colorDictionary;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public boolean hasStock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM socks)", Boolean.class));
+    }
+
+    public void upsertQuantities(Map<SockKey, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<SockKey, Integer>> rows = new ArrayList<>(quantities.entrySet());
+        rows.sort(Map.Entry.comparingByKey());
+        Map<String, Integer> colorIds = colorIds(quantities.keySet());
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, colorIds.get(row.getKey().color()));
+            ps.setInt(2, row.getKey().cottonPart());
+            ps.setInt(3, row.getValue());
+        });
+        evictCachedSocks();
+    }
+
+    /**
+     * Применяет знаковые изменения остатков в порядке ключей одним пакетом.
+     *
+     * @return позиции, изменение которых не применено: отгрузка больше остатка или отгрузка несуществующей позиции
+     */
+    public Set<SockKey> applyMovements(SortedMap<SockKey, Integer> movements) {
+        List<Map.Entry<SockKey, Integer>> rows = new ArrayList<>(movements.entrySet());
+        Map<String, Integer> colorIds = colorIds(movements.keySet());
+        int[] counts = jdbcTemplate.batchUpdate(MOVEMENT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, colorIds.get(rows.get(i).getKey().color()));
+                ps.setInt(2, rows.get(i).getKey().cottonPart());
+                ps.setInt(3, rows.get(i).getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+        evictCachedSocks();
+        Set<SockKey> failed = new TreeSet<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                failed.add(rows.get(i).getKey());
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Запись в обход Hibernate оставляет в кэше второго уровня старые остатки. Регион позиций сбрасывается сразу
+     * и ещё раз после завершения транзакции: так из кэша уходят и остатки, прочитанные до её фиксации.
+     * Соответствие ключа и id эти запросы не меняют.
+     */
+    private void evictCachedSocks() {
+        Cache cache = entityManagerFactory.getCache();
+        cache.evict(Sock.class);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evict(Sock.class);
+                }
+            });
+        }
+    }
+
+    private Map<String, Integer> colorIds(Set<SockKey> keys) {
+        Set<String> colors = new HashSet<>();
+        for (SockKey key : keys) {
+            colors.add(key.color());
+        }
+        return colorDictionary.registerAll(colors);
+    }
+}
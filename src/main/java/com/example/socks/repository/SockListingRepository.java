@@ -0,0 +1,84 @@
+package com.example.socks.repository;
+
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.model.SockSort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Выборки носков по диапазону хлопка. Порядок «по цвету» — по имени цвета, затем по хлопку. Страница по цвету
+ * начинается с выбора следующих по имени цветов, у которых есть строки в диапазоне: их не больше {@code limit + 1}
+ * (первый может быть исчерпан курсором), индекс имени отдаёт их уже упорядоченными, а строки этих цветов читаются
+ * индексом (color_id, cotton_part) — сортируется только сама страница, а не весь остаток диапазона.
+ * Порядок «по хлопку» отдаёт индекс (cotton_part, color_id); курсор сравнивается с ключом индекса как строка значений,
+ * id цвета из курсора и имя цвета строки берутся подзапросами к colors, а не соединением: с соединением H2 начинает
+ * план с colors и теряет порядок индекса. Строки возвращаются готовыми объектами и не попадают в контекст персистентности.
+ */
+@Repository
+public class SockListingRepository {
+    private static final String COLUMNS = "s.id, c.name, s.cotton_part, s.quantity, s.reserved, s.version ";
+    private static final String SELECT_BY_COLOR = "SELECT " + COLUMNS + "FROM socks s JOIN colors c ON c.id = s.color_id "
+            + "WHERE s.cotton_part BETWEEN ? AND ? ";
+    private static final String SELECT_BY_COTTON_PART = "SELECT s.id, (SELECT c.name FROM colors c WHERE c.id = s.color_id), "
+            + "s.cotton_part, s.quantity, s.reserved, s.version FROM socks s "
+            + "WHERE s.cotton_part BETWEEN ? AND ? ";
+    private static final String PAGE_BY_COLOR = "SELECT " + COLUMNS + "FROM ("
+            + "SELECT p.id, p.name FROM colors p WHERE p.name >= ? AND EXISTS "
+            + "(SELECT 1 FROM socks e WHERE e.color_id = p.id AND e.cotton_part BETWEEN ? AND ?) "
+            + "ORDER BY p.name LIMIT ?) c JOIN socks s ON s.color_id = c.id "
+            + "WHERE s.cotton_part BETWEEN ? AND ? AND (c.name, s.cotton_part) > (?, ?) ";
+    private static final String ORDER_BY_COLOR = "ORDER BY c.name, s.cotton_part";
+    private static final String ORDER_BY_COTTON_PART = "ORDER BY s.cotton_part, s.color_id";
+    private static final String AFTER_COTTON_PART = "AND (s.cotton_part, s.color_id) > (?, (SELECT id FROM colors WHERE name = ?)) ";
+    private static final RowMapper<Sock> SOCK = (rs, rowNum) ->
+            new Sock(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getLong(6));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public SockListingRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(500);
+    }
+
+    public List<Sock> findAll(int minCottonPart, int maxCottonPart, SockSort sort) {
+        return jdbcTemplate.query(select(sort), SOCK, minCottonPart, maxCottonPart);
+    }
+
+    /**
+     * Страница после ключа {@code after} (или с начала, если он null) в порядке {@code sort}.
+     */
+    public List<Sock> findPage(int minCottonPart, int maxCottonPart, SockSort sort, SockKey after, int limit) {
+        return switch (sort) {
+            // Ключ до любого реального: пустое имя цвета и хлопок -1.
+            case COLOR -> jdbcTemplate.query(PAGE_BY_COLOR + ORDER_BY_COLOR + " LIMIT ?", SOCK,
+                    after == null ? "" : after.color(), minCottonPart, maxCottonPart, limit + 1,
+                    minCottonPart, maxCottonPart, after == null ? "" : after.color(), after == null ? -1 : after.cottonPart(),
+                    limit);
+            case COTTON_PART -> after == null
+                    ? jdbcTemplate.query(select(sort) + " LIMIT ?", SOCK, minCottonPart, maxCottonPart, limit)
+                    : jdbcTemplate.query(SELECT_BY_COTTON_PART + AFTER_COTTON_PART + ORDER_BY_COTTON_PART + " LIMIT ?", SOCK,
+                    minCottonPart, maxCottonPart, after.cottonPart(), after.color(), limit);
+        };
+    }
+
+    /**
+     * Поток строк в порядке {@code sort}; вызывающий закрывает поток.
+     */
+    public Stream<Sock> stream(int minCottonPart, int maxCottonPart, SockSort sort) {
+        return streamingJdbcTemplate.queryForStream(select(sort), SOCK, minCottonPart, maxCottonPart);
+    }
+
+    private static String select(SockSort sort) {
+        return switch (sort) {
+            case COLOR -> SELECT_BY_COLOR + ORDER_BY_COLOR;
+            case COTTON_PART -> SELECT_BY_COTTON_PART + ORDER_BY_COTTON_PART;
+        };
+    }
+}
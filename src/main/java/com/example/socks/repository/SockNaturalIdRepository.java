@@ -0,0 +1,15 @@
+package com.example.socks.repository;
+
+import com.example.socks.model.Sock;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface SockNaturalIdRepository {
+
+    /**
+     * Позиция по натуральному ключу. С кэшем второго уровня и ключ, и позиция читаются из кэша без запроса к базе.
+     */
+    @Transactional(readOnly = true)
+    Optional<Sock> findByColorAndCottonPart(String color, int cottonPart);
+}
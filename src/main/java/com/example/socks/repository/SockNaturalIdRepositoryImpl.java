@@ -0,0 +1,22 @@
+package com.example.socks.repository;
+
+import com.example.socks.model.Sock;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+class SockNaturalIdRepositoryImpl implements SockNaturalIdRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Sock> findByColorAndCottonPart(String color, int cottonPart) {
+        return entityManager.unwrap(Session.class)
+                .byNaturalId(Sock.class)
+                .using("color", color)
+                .using("cottonPart", cottonPart)
+                .loadOptional();
+    }
+}
@@ -5,25 +5,49 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.util.List;
-import java.util.Optional;
-
-public interface SockRepository extends JpaRepository<Sock, Long> {
-    List<Sock> findByCottonPartBetween(int minCottonPart, int maxCottonPart);
+public interface SockRepository extends JpaRepository<Sock, Long>, SockNaturalIdRepository, SockStockRepository {
     int countByColorAndCottonPart(String color, int cottonPart);
 
-   Optional<Sock> findByColorAndCottonPart(String color, int cottonPart);
+    /**
+     * Суммы доступного количества: остаток минус действующие резервы.
+     */
+    @Query("SELECT COALESCE(SUM(s.quantity - s.reserved), 0) FROM Sock s")
+    long sumQuantity();
+
+    @Query("SELECT COALESCE(SUM(s.quantity - s.reserved), 0) FROM Sock s WHERE s.color = :color")
+    long sumQuantityByColor(@Param("color") String color);
+
+    @Query("SELECT COALESCE(SUM(s.quantity - s.reserved), 0) FROM Sock s WHERE s.cottonPart > :cottonPart")
+    long sumQuantityByCottonPartGreaterThan(@Param("cottonPart") int cottonPart);
+
+    @Query("SELECT COALESCE(SUM(s.quantity - s.reserved), 0) FROM Sock s WHERE s.cottonPart < :cottonPart")
+    long sumQuantityByCottonPartLessThan(@Param("cottonPart") int cottonPart);
+
+    @Query("SELECT COALESCE(SUM(s.quantity - s.reserved), 0) FROM Sock s WHERE s.cottonPart = :cottonPart")
+    long sumQuantityByCottonPartEquals(@Param("cottonPart") int cottonPart);
 
-    @Query("SELECT SUM(s.quantity) FROM Sock s WHERE "
+    @Query("SELECT COALESCE(SUM(s.quantity - s.reserved), 0) FROM Sock s WHERE s.color = :color AND s.cottonPart > :cottonPart")
+    long sumQuantityByColorAndCottonPartGreaterThan(@Param("color") String color, @Param("cottonPart") int cottonPart);
+
+    @Query("SELECT COALESCE(SUM(s.quantity - s.reserved), 0) FROM Sock s WHERE s.color = :color AND s.cottonPart < :cottonPart")
+    long sumQuantityByColorAndCottonPartLessThan(@Param("color") String color, @Param("cottonPart") int cottonPart);
+
+    @Query("SELECT COALESCE(SUM(s.quantity - s.reserved), 0) FROM Sock s WHERE s.color = :color AND s.cottonPart = :cottonPart")
+    long sumQuantityByColorAndCottonPartEquals(@Param("color") String color, @Param("cottonPart") int cottonPart);
+
+    /**
+     * Универсальный запрос с условиями внутри WHERE: индексы им не используются.
+     * Оставлен как эталон для сравнения в бенчмарках и проверках согласованности.
+     */
+    @Query("SELECT SUM(s.quantity - s.reserved) FROM Sock s WHERE "
             + "(:color IS NULL OR s.color = :color) AND "
             + "(:cottonPart IS NULL OR CASE "
             + "WHEN :comparison = 'moreThan' THEN s.cottonPart > :cottonPart "
             + "WHEN :comparison = 'lessThan' THEN s.cottonPart < :cottonPart "
             + "WHEN :comparison = 'equal' THEN s.cottonPart = :cottonPart "
             + "END)")
-    Integer countSocksByFilter(
+    Long countSocksByFilter(
             @Param("color") String color,
             @Param("comparison") String comparison,
             @Param("cottonPart") Integer cottonPart);
 }
-
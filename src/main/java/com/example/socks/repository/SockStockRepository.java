@@ -0,0 +1,38 @@
+package com.example.socks.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Условные изменения остатков и резервов одним UPDATE. Запросы идут через JDBC и сбрасывают в кэше второго уровня
+ * только изменённую позицию: массовый запрос Hibernate очистил бы весь регион позиций после каждого прихода
+ * и отгрузки.
+ */
+public interface SockStockRepository {
+
+    @Transactional
+    int increaseQuantity(String color, int cottonPart, int quantity);
+
+    /**
+     * Отгружает, если доступного количества ({@code quantity - reserved}) хватает.
+     */
+    @Transactional
+    int decreaseQuantity(String color, int cottonPart, int quantity);
+
+    /**
+     * Резервирует, если доступного количества хватает.
+     */
+    @Transactional
+    int reserve(String color, int cottonPart, int quantity);
+
+    @Transactional
+    int shipReserved(long id, int quantity);
+
+    @Transactional
+    int releaseReserved(long id, int quantity);
+
+    /**
+     * Увеличивает остаток позиции или создаёт её.
+     */
+    @Transactional
+    int upsertQuantity(int colorId, int cottonPart, int quantity);
+}
@@ -0,0 +1,96 @@
+package com.example.socks.repository;
+
+import com.example.socks.model.Sock;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+class SockStockRepositoryImpl implements SockStockRepository {
+    private static final String BY_KEY = " WHERE color_id = ? AND cotton_part = ?";
+    private static final String AVAILABLE = " AND quantity - reserved >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ColorDictionary colorDictionary;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public int increaseQuantity(String color, int cottonPart, int quantity) {
+        return updated("UPDATE socks SET quantity = quantity + ?, version = version + 1" + BY_KEY,
+                quantity, colorDictionary.idOf(color), cottonPart);
+    }
+
+    @Override
+    public int decreaseQuantity(String color, int cottonPart, int quantity) {
+        return updated("UPDATE socks SET quantity = quantity - ?, version = version + 1" + BY_KEY + AVAILABLE,
+                quantity, colorDictionary.idOf(color), cottonPart, quantity);
+    }
+
+    @Override
+    public int reserve(String color, int cottonPart, int quantity) {
+        return updated("UPDATE socks SET reserved = reserved + ?, version = version + 1" + BY_KEY + AVAILABLE,
+                quantity, colorDictionary.idOf(color), cottonPart, quantity);
+    }
+
+    @Override
+    public int shipReserved(long id, int quantity) {
+        int count = jdbcTemplate.update("UPDATE socks SET quantity = quantity - ?, reserved = reserved - ?, "
+                + "version = version + 1 WHERE id = ?", quantity, quantity, id);
+        evict(List.of(id));
+        return count;
+    }
+
+    @Override
+    public int releaseReserved(long id, int quantity) {
+        int count = jdbcTemplate.update("UPDATE socks SET reserved = reserved - ?, version = version + 1 WHERE id = ?",
+                quantity, id);
+        evict(List.of(id));
+        return count;
+    }
+
+    @Override
+    public int upsertQuantity(int colorId, int cottonPart, int quantity) {
+        return updated("MERGE INTO socks s "
+                + "USING (VALUES (?, ?, ?)) AS v(color_id, cotton_part, quantity) "
+                + "ON s.color_id = v.color_id AND s.cotton_part = v.cotton_part "
+                + "WHEN MATCHED THEN UPDATE SET s.quantity = s.quantity + v.quantity, s.version = s.version + 1 "
+                + "WHEN NOT MATCHED THEN INSERT (id, color_id, cotton_part, quantity) "
+                + "VALUES (NEXT VALUE FOR socks_seq, v.color_id, v.cotton_part, v.quantity)",
+                colorId, cottonPart, quantity);
+    }
+
+    /**
+     * Выполняет изменение и возвращает число затронутых строк; их id берутся из того же запроса.
+     */
+    private int updated(String sql, Object... args) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM FINAL TABLE (" + sql + ")", Long.class, args);
+        evict(ids);
+        return ids.size();
+    }
+
+    /**
+     * Запись в обход Hibernate оставляет в кэше второго уровня старый остаток. Позиция сбрасывается сразу и ещё раз
+     * после завершения транзакции, как и регион в {@link SockBatchRepository}; остальные позиции остаются в кэше.
+     * Соответствие ключа и id эти запросы не меняют.
+     */
+    private void evict(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Cache cache = entityManagerFactory.getCache();
+        ids.forEach(id -> cache.evict(Sock.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> cache.evict(Sock.class, id));
+                }
+            });
+        }
+    }
+}
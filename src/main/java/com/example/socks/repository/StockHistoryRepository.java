@@ -0,0 +1,149 @@
+package com.example.socks.repository;
+
+import com.example.socks.dto.StockLevel;
+import com.example.socks.model.StockMovement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Журнал движений {@code stock_movements} и снимки остатков {@code stock_snapshots}. Снимок — свёртка предыдущего снимка
+ * и зафиксированных к этому времени движений, ещё не свёрнутых ни в один снимок; движение помечается снимком, в который
+ * свёрнуто. Транзакция, зафиксированная позже снимка своего времени, сворачивается в следующий снимок и помечается
+ * опоздавшей, поэтому остаток на любой момент — снимок плюс движения после него и опоздавшие движения до него.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockHistoryRepository {
+    private static final String INSERT_MOVEMENT_SQL =
+            "INSERT INTO stock_movements (occurred_at, color_id, cotton_part, delta) VALUES (?, ?, ?, ?)";
+
+    private static final String INSERT_SNAPSHOT_ITEMS_SQL = "INSERT INTO stock_snapshot_items (snapshot_id, color_id, cotton_part, quantity) "
+            + "SELECT ?, color_id, cotton_part, SUM(quantity) FROM ("
+            + "SELECT color_id, cotton_part, quantity FROM stock_snapshot_items WHERE snapshot_id = ? "
+            + "UNION ALL "
+            + "SELECT color_id, cotton_part, delta FROM stock_movements WHERE snapshot_id = ?"
+            + ") t GROUP BY color_id, cotton_part HAVING SUM(quantity) <> 0";
+
+    private static final String FOLD_MOVEMENTS_SQL = "UPDATE stock_movements "
+            + "SET snapshot_id = ?, late_snapshot_id = CASE WHEN occurred_at <= ? THEN ? END "
+            + "WHERE snapshot_id IS NULL AND occurred_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ColorDictionary colorDictionary;
+
+    public record Snapshot(long id, Instant takenAt) {
+    }
+
+    public void insertMovements(List<StockMovement> movements) {
+        if (movements.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> colorIds = colorDictionary.registerAll(movements.stream().map(movement -> movement.key().color()).distinct().toList());
+        jdbcTemplate.batchUpdate(INSERT_MOVEMENT_SQL, movements, movements.size(), (ps, movement) -> {
+            ps.setObject(1, toTimestamp(movement.occurredAt()));
+            ps.setInt(2, colorIds.get(movement.key().color()));
+            ps.setInt(3, movement.key().cottonPart());
+            ps.setLong(4, movement.delta());
+        });
+    }
+
+    /**
+     * Последний снимок, сделанный не позже {@code at}.
+     */
+    public Optional<Snapshot> findLatestSnapshot(Instant at) {
+        return jdbcTemplate.query("SELECT id, taken_at FROM stock_snapshots WHERE taken_at <= ? ORDER BY taken_at DESC LIMIT 1",
+                (rs, rowNum) -> new Snapshot(rs.getLong(1), toInstant(rs, 2)), toTimestamp(at)).stream().findFirst();
+    }
+
+    public Optional<Snapshot> findFirstSnapshot() {
+        return jdbcTemplate.query("SELECT id, taken_at FROM stock_snapshots ORDER BY taken_at LIMIT 1",
+                (rs, rowNum) -> new Snapshot(rs.getLong(1), toInstant(rs, 2))).stream().findFirst();
+    }
+
+    public Optional<Snapshot> findLastSnapshot() {
+        return jdbcTemplate.query("SELECT id, taken_at FROM stock_snapshots ORDER BY taken_at DESC LIMIT 1",
+                (rs, rowNum) -> new Snapshot(rs.getLong(1), toInstant(rs, 2))).stream().findFirst();
+    }
+
+    /**
+     * Сворачивает в новый снимок на момент {@code at} последний снимок и все зафиксированные движения не позже
+     * {@code at}, ещё не свёрнутые в снимок. Вызывать в транзакции.
+     *
+     * @return новый снимок или пустой результат, если снимок на этот момент или позже уже есть
+     */
+    public Optional<Snapshot> createSnapshot(Instant at) {
+        Snapshot previous = findLastSnapshot().orElseThrow();
+        if (!previous.takenAt().isBefore(at)) {
+            return Optional.empty();
+        }
+        jdbcTemplate.update("INSERT INTO stock_snapshots (taken_at) VALUES (?)", toTimestamp(at));
+        Snapshot snapshot = new Snapshot(jdbcTemplate.queryForObject("SELECT id FROM stock_snapshots WHERE taken_at = ?",
+                Long.class, toTimestamp(at)), at);
+        // Сначала движения помечаются, затем сворачиваются помеченные: зафиксированное между двумя запросами
+        // останется несвёрнутым до следующего снимка.
+        jdbcTemplate.update(FOLD_MOVEMENTS_SQL, snapshot.id(), toTimestamp(previous.takenAt()), snapshot.id(), toTimestamp(at));
+        jdbcTemplate.update(INSERT_SNAPSHOT_ITEMS_SQL, snapshot.id(), previous.id(), snapshot.id());
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * Ненулевые остатки на момент {@code at}: снимок, движения после него и движения не позже снимка, свёрнутые
+     * в более поздние снимки или ещё не свёрнутые. Фильтры необязательны.
+     */
+    public List<StockLevel> findLevels(Snapshot snapshot, Instant at, Integer colorId, Integer cottonPart) {
+        StringBuilder filter = new StringBuilder();
+        List<Object> filterArgs = new ArrayList<>();
+        if (colorId != null) {
+            filter.append(" AND color_id = ?");
+            filterArgs.add(colorId);
+        }
+        if (cottonPart != null) {
+            filter.append(" AND cotton_part = ?");
+            filterArgs.add(cottonPart);
+        }
+        String sql = "SELECT c.name, t.cotton_part, SUM(t.quantity) FROM ("
+                + "SELECT color_id, cotton_part, quantity FROM stock_snapshot_items WHERE snapshot_id = ?" + filter
+                + " UNION ALL "
+                + "SELECT color_id, cotton_part, delta FROM stock_movements WHERE occurred_at > ? AND occurred_at <= ?" + filter
+                + " UNION ALL "
+                + "SELECT color_id, cotton_part, delta FROM stock_movements USE INDEX (ix_stock_movements_late) "
+                + "WHERE late_snapshot_id > ? AND occurred_at <= ?" + filter
+                + " UNION ALL "
+                + "SELECT color_id, cotton_part, delta FROM stock_movements WHERE snapshot_id IS NULL AND occurred_at <= ?" + filter
+                + ") t JOIN colors c ON c.id = t.color_id "
+                + "GROUP BY c.name, t.cotton_part HAVING SUM(t.quantity) <> 0 ORDER BY c.name, t.cotton_part";
+        OffsetDateTime takenAt = toTimestamp(snapshot.takenAt());
+        List<Object> args = new ArrayList<>();
+        args.add(snapshot.id());
+        args.addAll(filterArgs);
+        args.add(takenAt);
+        args.add(toTimestamp(at));
+        args.addAll(filterArgs);
+        args.add(snapshot.id());
+        args.add(takenAt);
+        args.addAll(filterArgs);
+        args.add(takenAt);
+        args.addAll(filterArgs);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new StockLevel(rs.getString(1), rs.getInt(2), rs.getLong(3)), args.toArray());
+    }
+
+    private static OffsetDateTime toTimestamp(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.MICROS).atOffset(ZoneOffset.UTC);
+    }
+
+    private static Instant toInstant(ResultSet rs, int column) throws SQLException {
+        return rs.getObject(column, OffsetDateTime.class).toInstant();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.socks.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод сервиса, которому нужно соединение с базой: при включённом ограничителе допуска
+ * он выполняется только после получения разрешения.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DbBound {
+}
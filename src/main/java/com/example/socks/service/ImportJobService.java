@@ -0,0 +1,10 @@
+package com.example.socks.service;
+
+import com.example.socks.dto.ImportJobResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface ImportJobService {
+    ImportJobResponse submit(MultipartFile file);
+
+    ImportJobResponse getJob(String id);
+}
@@ -0,0 +1,14 @@
+package com.example.socks.service;
+
+import com.example.socks.dto.CreateReservationRequest;
+import com.example.socks.dto.ReservationResponse;
+
+public interface ReservationService {
+    ReservationResponse reserve(CreateReservationRequest request);
+
+    ReservationResponse getReservation(String id);
+
+    String confirm(String id);
+
+    String release(String id);
+}
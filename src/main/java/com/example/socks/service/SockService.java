@@ -1,21 +1,43 @@
 package com.example.socks.service;
 
+import com.example.socks.dto.BatchUploadResponse;
 import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.SockPage;
+import com.example.socks.dto.StockMovementRequest;
 import com.example.socks.model.Sock;
 import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public interface SockService {
     String income(CreateSockRequest request);
 
     String outcome(CreateSockRequest request);
 
-    Integer getSockCountByFilter(String color, String comparison, Integer cottonPart);
+    MovementBatchResponse applyMovements(List<StockMovementRequest> movements);
+
+    long getSockCountByFilter(String color, String comparison, Integer cottonPart);
 
-    String uploadSocksBatch(MultipartFile file);
+    BatchUploadResponse uploadSocksBatch(MultipartFile file);
+
+    /**
+     * Импорт CSV из потока для фоновых заданий: тот же допуск к базе и та же метрика, что у {@link #uploadSocksBatch}.
+     *
+     * @param progress  получает число прочитанных строк после записи каждого чанка
+     * @param onApplied выполняется в транзакции, фиксирующей импорт; при {@code socks.import.atomic: false} —
+     *                  в отдельной транзакции после последнего чанка
+     */
+    BatchUploadResponse importSocks(InputStream inputStream, LongConsumer progress, Runnable onApplied) throws IOException;
 
     String updateSock(Long id, CreateSockRequest request);
 
-    List<Sock> filterSocks(int minCottonPart, int maxCottonPart, String sortBy);
+    SockPage filterSocks(int minCottonPart, int maxCottonPart, String sortBy, String after, Integer limit);
+
+    void streamSocks(int minCottonPart, int maxCottonPart, String sortBy, Consumer<Sock> consumer);
 }
 
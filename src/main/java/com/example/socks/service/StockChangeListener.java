@@ -0,0 +1,12 @@
+package com.example.socks.service;
+
+public interface StockChangeListener {
+
+    void onStockChanged(String color, int cottonPart, long delta);
+
+    /**
+     * Резерв позиции изменился на {@code delta}: доступное количество изменилось на {@code -delta}, а физическое — нет.
+     */
+    default void onReservedChanged(String color, int cottonPart, long delta) {
+    }
+}
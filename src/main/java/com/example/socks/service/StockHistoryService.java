@@ -0,0 +1,9 @@
+package com.example.socks.service;
+
+import com.example.socks.dto.StockAtResponse;
+
+import java.time.Instant;
+
+public interface StockHistoryService {
+    StockAtResponse getStockAt(Instant timestamp, String color, Integer cottonPart);
+}
@@ -0,0 +1,7 @@
+package com.example.socks.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface StockStreamService {
+    SseEmitter subscribe(String color, String comparison, Integer cottonPart);
+}
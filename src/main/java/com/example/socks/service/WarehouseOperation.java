@@ -0,0 +1,18 @@
+package com.example.socks.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Операция склада, время и исход которой публикуются в метрике {@code socks.operation}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WarehouseOperation {
+    /**
+     * Значение тега {@code operation}.
+     */
+    String value();
+}
@@ -0,0 +1,88 @@
+package com.example.socks.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Одновременные запросы количества с одинаковыми параметрами выполняют один запрос к базе: первый вызов его выполняет,
+ * остальные ждут его результата ({@code socks.count-coalescing.enabled}). В ключ входит {@link InventoryVersion},
+ * прочитанная до запроса, поэтому вызов после фиксации изменения не получит результат запроса, начатого до неё.
+ */
+@Component
+public class CountQueryCoalescer {
+    private final InventoryVersion inventoryVersion;
+    private final boolean enabled;
+    private final Map<List<Object>, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter coalesced;
+
+    public CountQueryCoalescer(InventoryVersion inventoryVersion,
+                               MeterRegistry meterRegistry,
+                               @Value("${socks.count-coalescing.enabled:true}") boolean enabled) {
+        this.inventoryVersion = inventoryVersion;
+        this.enabled = enabled;
+        this.executed = counter(meterRegistry, "executed");
+        this.coalesced = counter(meterRegistry, "coalesced");
+    }
+
+    public long count(List<?> filter, LongSupplier query) {
+        if (!enabled) {
+            executed.increment();
+            return query.getAsLong();
+        }
+        List<Object> key = new ArrayList<>(filter.size() + 1);
+        key.add(inventoryVersion.current());
+        key.addAll(filter);
+        CompletableFuture<Long> own = new CompletableFuture<>();
+        CompletableFuture<Long> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        executed.increment();
+        try {
+            long result = query.getAsLong();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Ошибка общего запроса достаётся всем его ожидающим в исходном виде.
+     */
+    private static long await(CompletableFuture<Long> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("socks.count.queries")
+                .description("Запросы количества к базе: выполненные и присоединённые к уже выполняемому")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограничивает число одновременно работающих с базой вызовов размером пула соединений.
+ * С виртуальными потоками запросов может быть тысячи, и без ограничителя все они ждали бы внутри пула Hikari.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@Slf4j
+public class DbAdmissionLimiter {
+    private final boolean enabled;
+    private final Semaphore permits;
+    private final long timeoutNanos;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+
+    public DbAdmissionLimiter(MeterRegistry meterRegistry,
+                              @Value("${socks.db-admission.enabled:${spring.threads.virtual.enabled:false}}") boolean enabled,
+                              @Value("${socks.db-admission.permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+                              @Value("${socks.db-admission.timeout:30s}") Duration timeout) {
+        this.enabled = enabled;
+        this.permits = new Semaphore(permits, true);
+        this.timeoutNanos = timeout.toNanos();
+        this.waitTimer = Timer.builder("socks.db.admission.wait")
+                .description("Ожидание разрешения на работу с базой")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("socks.db.admission.queued", waiting, AtomicInteger::get)
+                .description("Вызовы, ожидающие разрешения на работу с базой")
+                .register(meterRegistry);
+        Gauge.builder("socks.db.admission.available", this.permits, Semaphore::availablePermits)
+                .description("Свободные разрешения на работу с базой")
+                .register(meterRegistry);
+        log.info("Ограничитель допуска к базе: {}, разрешений: {}", enabled ? "включён" : "выключен", permits);
+    }
+
+    @Around("@annotation(com.example.socks.service.DbBound)")
+    public Object admit(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!enabled) {
+            return joinPoint.proceed();
+        }
+        long started = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Ожидание доступа к базе прервано.", e);
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            throw new ServiceUnavailableException("Сервис перегружен: нет свободных соединений с базой, повторите запрос позже.");
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            permits.release();
+        }
+    }
+}
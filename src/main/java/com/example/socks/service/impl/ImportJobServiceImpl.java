@@ -0,0 +1,305 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.dto.ImportJobResponse;
+import com.example.socks.dto.ImportJobStatus;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.NotFoundException;
+import com.example.socks.exception.ServiceUnavailableException;
+import com.example.socks.repository.ImportJobRepository;
+import com.example.socks.service.ImportJobService;
+import com.example.socks.service.SockService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновый импорт CSV: файл сохраняется во временный каталог, задание ставится в ограниченную очередь,
+ * а клиент сразу получает идентификатор и опрашивает статус. Ключ идемпотентности — SHA-256 содержимого,
+ * уникальный в таблице {@code import_jobs}: повторная загрузка того же файла возвращает существующее задание,
+ * пока оно не завершилось ошибкой, в том числе после перезапуска. Выполненным задание помечается в транзакции
+ * импорта. Прогресс выполняющихся заданий хранится в памяти, итог — в таблице. Файл загружается через
+ * {@link SockService}, поэтому задание проходит тот же допуск к базе и попадает в ту же метрику {@code import},
+ * что и синхронная загрузка.
+ */
+@Service
+@Slf4j
+public class ImportJobServiceImpl implements ImportJobService {
+    private final SockService sockService;
+    private final ImportJobRepository importJobRepository;
+    private final Path spoolDirectory;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportJobServiceImpl(SockService sockService,
+                                ImportJobRepository importJobRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${socks.import.jobs.workers:2}") int workers,
+                                @Value("${socks.import.jobs.queue-capacity:16}") int queueCapacity,
+                                @Value("${socks.import.jobs.spool-dir:${java.io.tmpdir}}") Path spoolDirectory,
+                                @Value("${socks.import.jobs.retention:24h}") Duration retention) {
+        this.sockService = sockService;
+        this.importJobRepository = importJobRepository;
+        this.spoolDirectory = spoolDirectory;
+        this.retention = retention;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "import-job-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("socks.import.jobs.queued", executor, pool -> pool.getQueue().size())
+                .description("Задания импорта в очереди")
+                .register(meterRegistry);
+        Gauge.builder("socks.import.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Выполняющиеся задания импорта")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ImportJobResponse submit(MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new BadRequestException("Файл пуст.");
+        }
+        purgeExpired();
+        Path spool = null;
+        String sha256;
+        try {
+            Files.createDirectories(spoolDirectory);
+            spool = Files.createTempFile(spoolDirectory, "socks-import-", ".csv");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(inputStream, spool, StandardCopyOption.REPLACE_EXISTING);
+            }
+            sha256 = HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            delete(spool);
+            log.error("Ошибка при сохранении файла импорта", e);
+            throw new RuntimeException(e);
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.getOriginalFilename(), sha256, file.getSize());
+        // Ключ, освобождённый между неудачной вставкой и чтением (очередь отклонила задание), занимается заново.
+        while (!importJobRepository.claim(job.id, sha256, job.fileName, job.bytesTotal, job.submittedAt)) {
+            Optional<ImportJobResponse> existing = importJobRepository.findBySha256(sha256);
+            if (existing.isPresent()) {
+                delete(spool);
+                ImportJob running = jobs.get(existing.get().getId());
+                ImportJobResponse response = running != null ? running.toResponse(true) : existing.get();
+                response.setDuplicate(true);
+                log.info("Файл {} уже загружен заданием {} ({})", file.getOriginalFilename(), response.getId(), response.getStatus());
+                return response;
+            }
+        }
+        jobs.put(job.id, job);
+        Path jobFile = spool;
+        try {
+            executor.execute(() -> run(job, jobFile));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            importJobRepository.delete(job.id);
+            delete(spool);
+            throw new ServiceUnavailableException("Очередь импорта заполнена, повторите загрузку позже.");
+        }
+        log.info("Задание импорта {} поставлено в очередь: файл {}, {} байт", job.id, job.fileName, job.bytesTotal);
+        return job.toResponse(false);
+    }
+
+    @Override
+    public ImportJobResponse getJob(String id) {
+        ImportJob job = jobs.get(id);
+        if (job != null) {
+            return job.toResponse(false);
+        }
+        return importJobRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException(String.format("Задание импорта %s не найдено.", id)));
+    }
+
+    private void run(ImportJob job, Path spool) {
+        job.start();
+        try (InputStream inputStream = new CountingInputStream(Files.newInputStream(spool), job)) {
+            job.succeed(sockService.importSocks(inputStream, rows -> job.rowsProcessed = rows,
+                    () -> importJobRepository.markApplied(job.id)));
+            log.info("Задание импорта {} выполнено", job.id);
+        } catch (BadRequestException e) {
+            job.fail(e.getMessage());
+            log.info("Задание импорта {} отклонено: {}", job.id, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            job.fail("Ошибка при обработке файла: " + e.getMessage());
+            log.error("Задание импорта {} завершилось ошибкой", job.id, e);
+        } finally {
+            delete(spool);
+        }
+        try {
+            importJobRepository.finish(job.id, job.status, job.finishedAt, job.result, job.error);
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить итог задания импорта {}", job.id, e);
+        }
+    }
+
+    /**
+     * Задания, прерванные остановкой сервиса, завершаются ошибкой: атомарный импорт откатился целиком,
+     * и файл можно загрузить заново.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void failUnfinished() {
+        int unfinished = importJobRepository.failUnfinished("Задание прервано остановкой сервиса.", Instant.now());
+        if (unfinished > 0) {
+            log.warn("Задания импорта, прерванные остановкой сервиса: {}", unfinished);
+        }
+    }
+
+    private void purgeExpired() {
+        Instant threshold = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    private static void delete(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class ImportJob {
+        private final String id;
+        private final String fileName;
+        private final String sha256;
+        private final long bytesTotal;
+        private final Instant submittedAt = Instant.now();
+        private volatile ImportJobStatus status = ImportJobStatus.QUEUED;
+        private volatile long bytesProcessed;
+        private volatile long rowsProcessed;
+        private volatile long startedNanos;
+        private volatile long finishedNanos;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile BatchUploadResponse result;
+        private volatile String error;
+
+        private ImportJob(String id, String fileName, String sha256, long bytesTotal) {
+            this.id = id;
+            this.fileName = fileName;
+            this.sha256 = sha256;
+            this.bytesTotal = bytesTotal;
+        }
+
+        private void start() {
+            startedNanos = System.nanoTime();
+            startedAt = Instant.now();
+            status = ImportJobStatus.RUNNING;
+        }
+
+        private void succeed(BatchUploadResponse response) {
+            result = response;
+            rowsProcessed = response.getRowsRead();
+            finish(ImportJobStatus.SUCCEEDED);
+        }
+
+        private void fail(String message) {
+            error = message;
+            finish(ImportJobStatus.FAILED);
+        }
+
+        private void finish(ImportJobStatus finalStatus) {
+            finishedNanos = System.nanoTime();
+            finishedAt = Instant.now();
+            status = finalStatus;
+        }
+
+        private ImportJobResponse toResponse(boolean duplicate) {
+            ImportJobStatus current = status;
+            long rows = rowsProcessed;
+            long elapsedNanos = switch (current) {
+                case QUEUED -> 0;
+                case RUNNING -> System.nanoTime() - startedNanos;
+                case SUCCEEDED, FAILED -> finishedNanos - startedNanos;
+            };
+            return ImportJobResponse.builder()
+                    .id(id)
+                    .status(current)
+                    .duplicate(duplicate)
+                    .fileName(fileName)
+                    .sha256(sha256)
+                    .bytesTotal(bytesTotal)
+                    .bytesProcessed(bytesProcessed)
+                    .rowsProcessed(rows)
+                    .rowsPerSecond(elapsedNanos <= 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos)
+                    .submittedAt(submittedAt)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .result(result)
+                    .error(error)
+                    .build();
+        }
+    }
+
+    /**
+     * Считает прочитанные байты для отображения прогресса задания.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final ImportJob job;
+
+        private CountingInputStream(InputStream in, ImportJob job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                job.bytesProcessed++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                job.bytesProcessed += read;
+            }
+            return read;
+        }
+    }
+}
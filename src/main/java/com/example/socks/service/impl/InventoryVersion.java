@@ -0,0 +1,35 @@
+package com.example.socks.service.impl;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версия склада: растёт после каждого изменения остатков, когда оно уже видно читателям.
+ * Одинаковая версия гарантирует одинаковый ответ на одинаковый запрос, поэтому по ней строятся ETag и кэш выборок.
+ * Версия живёт в памяти, и к ETag добавляется момент запуска, чтобы после перезапуска старые ETag не совпали с новыми.
+ */
+@Component
+public class InventoryVersion {
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public void increment() {
+        version.incrementAndGet();
+    }
+
+    public String etag(long version) {
+        return etag(version, "");
+    }
+
+    /**
+     * ETag представления ответа: одна версия в разных форматах даёт разные ETag.
+     */
+    public String etag(long version, String variant) {
+        return "\"" + epoch + "-" + version + (variant.isEmpty() ? "" : "-" + variant) + "\"";
+    }
+}
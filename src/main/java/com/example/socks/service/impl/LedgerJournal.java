@@ -0,0 +1,151 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.model.SockKey;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Журнал изменений остатков, ведущийся только дописыванием: файлы-сегменты {@code ledger-<номер>.journal}.
+ * Одна запись — все изменения одной операции: длина записи, затем по каждой позиции длина цвета в байтах UTF-8,
+ * сам цвет, хлопок и знаковое изменение. Оборванная при падении запись отбрасывается целиком. При сбросе в базу текущий сегмент
+ * закрывается и начинается следующий; сегменты, изменения которых уже в базе, удаляются.
+ * Запись попадает в файл до ответа клиенту, поэтому падение процесса её не теряет; {@code fsync} выполняется
+ * при каждой смене сегмента.
+ */
+public final class LedgerJournal implements AutoCloseable {
+    private static final String PREFIX = "ledger-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private FileChannel channel;
+    private long segment;
+
+    public LedgerJournal(Path directory, long segment) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        open(segment);
+    }
+
+    public synchronized void append(Map<SockKey, Long> deltas) {
+        int size = Integer.BYTES;
+        List<byte[]> colors = new ArrayList<>(deltas.size());
+        for (SockKey key : deltas.keySet()) {
+            byte[] color = key.color().getBytes(StandardCharsets.UTF_8);
+            colors.add(color);
+            size += Integer.BYTES * 2 + Long.BYTES + color.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).putInt(size - Integer.BYTES);
+        int i = 0;
+        for (Map.Entry<SockKey, Long> entry : deltas.entrySet()) {
+            byte[] color = colors.get(i++);
+            buffer.putInt(color.length).put(color).putInt(entry.getKey().cottonPart()).putLong(entry.getValue());
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает следующий.
+     *
+     * @return номер закрытого сегмента
+     */
+    public synchronized long rotate() throws IOException {
+        long closed = segment;
+        channel.force(false);
+        channel.close();
+        open(closed + 1);
+        return closed;
+    }
+
+    /**
+     * Удаляет сегменты с номерами не больше {@code segment}.
+     */
+    public void deleteUpTo(long segment) throws IOException {
+        for (long number : segments(directory)) {
+            if (number <= segment) {
+                Files.deleteIfExists(path(directory, number));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private void open(long number) throws IOException {
+        segment = number;
+        channel = FileChannel.open(path(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Номера сегментов в каталоге по возрастанию.
+     */
+    public static List<Long> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Суммирует изменения сегмента по позициям. Оборванная последняя запись (падение во время записи) пропускается:
+     * ответ по ней клиенту не отправлялся.
+     */
+    public static Map<SockKey, Long> read(Path directory, long segment) throws IOException {
+        Map<SockKey, Long> deltas = new HashMap<>();
+        try (InputStream file = Files.newInputStream(path(directory, segment));
+             DataInputStream input = new DataInputStream(new BufferedInputStream(file))) {
+            while (true) {
+                byte[] record;
+                try {
+                    record = new byte[input.readInt()];
+                    input.readFully(record);
+                } catch (EOFException e) {
+                    return deltas;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                while (buffer.hasRemaining()) {
+                    byte[] color = new byte[buffer.getInt()];
+                    buffer.get(color);
+                    SockKey key = new SockKey(new String(color, StandardCharsets.UTF_8), buffer.getInt());
+                    deltas.merge(key, buffer.getLong(), Long::sum);
+                }
+            }
+        }
+    }
+
+    private static Path path(Path directory, long segment) {
+        return directory.resolve(PREFIX + segment + SUFFIX);
+    }
+}
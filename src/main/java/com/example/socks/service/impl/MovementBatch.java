@@ -0,0 +1,147 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.MovementLineResult;
+import com.example.socks.dto.MovementStatus;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.MovementRejectedException;
+import com.example.socks.model.ColorNames;
+import com.example.socks.model.SockKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Проверенный пакет движений: строки с нормализованными цветами и суммарное изменение по позициям в порядке ключей.
+ * Ответы по строкам пакета строятся здесь же, поэтому их одинаково формируют обычный и реактивный сервисы.
+ */
+public final class MovementBatch {
+    static final int MAX_MOVEMENTS = 10_000;
+
+    private final List<StockMovementRequest> movements;
+    private final MovementLineResult[] results;
+    private final int skus;
+    private final SortedMap<SockKey, Integer> changes;
+
+    private MovementBatch(List<StockMovementRequest> movements, MovementLineResult[] results, int skus,
+                          SortedMap<SockKey, Integer> changes) {
+        this.movements = movements;
+        this.results = results;
+        this.skus = skus;
+        this.changes = changes;
+    }
+
+    /**
+     * Проверяет строки и сворачивает их по позициям.
+     *
+     * @throws MovementRejectedException если хотя бы одна строка некорректна
+     */
+    public static MovementBatch of(List<StockMovementRequest> movements) {
+        if (movements == null || movements.isEmpty()) {
+            throw new BadRequestException("Список движений не может быть пустым.");
+        }
+        if (movements.size() > MAX_MOVEMENTS) {
+            throw new BadRequestException(String.format("Пакет не может содержать больше %d движений.", MAX_MOVEMENTS));
+        }
+        MovementLineResult[] results = new MovementLineResult[movements.size()];
+        SortedMap<SockKey, Long> net = new TreeMap<>();
+        boolean valid = true;
+        for (int i = 0; i < movements.size(); i++) {
+            StockMovementRequest movement = movements.get(i);
+            String error = validate(movement);
+            if (error != null) {
+                results[i] = new MovementLineResult(i + 1, MovementStatus.INVALID, error);
+                valid = false;
+            } else {
+                movement.setColor(ColorNames.normalize(movement.getColor()));
+                net.merge(new SockKey(movement.getColor(), movement.getCottonPart()), (long) movement.getQuantity(), Long::sum);
+            }
+        }
+        MovementBatch batch = new MovementBatch(movements, results, net.size(), new TreeMap<>());
+        if (!valid) {
+            throw batch.rejected(Map.of());
+        }
+        Map<SockKey, MovementLineResult> failures = new HashMap<>();
+        net.forEach((key, quantity) -> {
+            if (quantity < Integer.MIN_VALUE || quantity > Integer.MAX_VALUE) {
+                failures.put(key, new MovementLineResult(0, MovementStatus.INVALID, "Суммарное изменение по позиции вне допустимого диапазона."));
+            } else {
+                batch.changes.put(key, quantity.intValue());
+            }
+        });
+        if (!failures.isEmpty()) {
+            throw batch.rejected(failures);
+        }
+        return batch;
+    }
+
+    private static String validate(StockMovementRequest movement) {
+        if (movement == null) {
+            return "Движение не может быть null";
+        }
+        if (movement.getColor() == null || movement.getColor().isBlank()) {
+            return "Цвет носков не может быть пустым";
+        }
+        if (movement.getCottonPart() < 0 || movement.getCottonPart() > 100) {
+            return "Процентное содержание хлопка должно быть от 0 до 100";
+        }
+        return null;
+    }
+
+    /**
+     * Суммарное изменение по каждой позиции в порядке ключей.
+     */
+    public SortedMap<SockKey, Integer> changes() {
+        return Collections.unmodifiableSortedMap(changes);
+    }
+
+    public MovementBatchResponse applied() {
+        return response(true, Map.of());
+    }
+
+    /**
+     * @param failures причины отказа по позициям; остальные строки помечаются как не применённые
+     */
+    public MovementRejectedException rejected(Map<SockKey, MovementLineResult> failures) {
+        return new MovementRejectedException(response(false, failures));
+    }
+
+    /**
+     * Причина, по которой изменение позиции не применено: остаток {@code available} меньше отгрузки или позиции нет.
+     */
+    public static MovementLineResult failure(SockKey key, int quantity, Optional<Long> available) {
+        return available
+                .map(level -> new MovementLineResult(0, MovementStatus.INSUFFICIENT, String.format(
+                        "Недостаточно носков с цветом '%s' и содержанием хлопка %d%%. Суммарная отгрузка: %d, доступное количество: %d",
+                        key.color(), key.cottonPart(), -quantity, level)))
+                .orElseGet(() -> new MovementLineResult(0, MovementStatus.NOT_FOUND, String.format(
+                        "Носков с цветом '%s' и содержанием хлопка %d%% на складе нет.", key.color(), key.cottonPart())));
+    }
+
+    private MovementBatchResponse response(boolean applied, Map<SockKey, MovementLineResult> failures) {
+        List<MovementLineResult> lines = new ArrayList<>(movements.size());
+        for (int i = 0; i < movements.size(); i++) {
+            MovementLineResult result = results[i];
+            if (result == null) {
+                StockMovementRequest movement = movements.get(i);
+                MovementLineResult failure = failures.get(new SockKey(movement.getColor(), movement.getCottonPart()));
+                if (failure != null) {
+                    result = new MovementLineResult(i + 1, failure.getStatus(), failure.getMessage());
+                } else if (applied) {
+                    result = new MovementLineResult(i + 1, MovementStatus.APPLIED, null);
+                } else {
+                    result = new MovementLineResult(i + 1, MovementStatus.REJECTED, "Строка не применена из-за ошибок в других строках пакета.");
+                }
+            }
+            lines.add(result);
+        }
+        return new MovementBatchResponse(applied, skus, lines);
+    }
+}
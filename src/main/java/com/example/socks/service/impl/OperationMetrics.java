@@ -0,0 +1,73 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.ConflictException;
+import com.example.socks.exception.InsufficientStockException;
+import com.example.socks.exception.MovementRejectedException;
+import com.example.socks.exception.NotFoundException;
+import com.example.socks.exception.RequestValidatorException;
+import com.example.socks.exception.ServiceUnavailableException;
+import com.example.socks.service.WarehouseOperation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Таймер {@code socks.operation} с тегами {@code operation} и {@code outcome} вокруг операций склада.
+ * Стоит снаружи ограничителя допуска к базе, поэтому ожидание соединения входит в измеренное время.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class OperationMetrics {
+    public static final String TIMER = "socks.operation";
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("@annotation(operation)")
+    public Object record(ProceedingJoinPoint joinPoint, WarehouseOperation operation) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "ok";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = outcome(e);
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(TIMER)
+                    .description("Время выполнения операций склада")
+                    .tag("operation", operation.value())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    static String outcome(Throwable e) {
+        if (e instanceof NotFoundException) {
+            return "not-found";
+        }
+        if (e instanceof InsufficientStockException) {
+            return "insufficient";
+        }
+        if (e instanceof MovementRejectedException) {
+            return "rejected";
+        }
+        if (e instanceof BadRequestException || e instanceof RequestValidatorException) {
+            return "validation-error";
+        }
+        if (e instanceof ConflictException) {
+            return "conflict";
+        }
+        if (e instanceof ServiceUnavailableException) {
+            return "unavailable";
+        }
+        return "error";
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.socks.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Готовые ответы на повторяющиеся запросы чтения (опрос дашбордов): ключ — параметры запроса, значение действительно,
+ * пока не изменилась {@link InventoryVersion}. Совпадение избавляет и от запроса к базе, и от сериализации.
+ * Хранится не больше {@code socks.query-cache.max-entries} последних ответов; ответы больше
+ * {@code socks.query-cache.max-entry-size} не кэшируются.
+ */
+@Component
+public class QueryResultCache {
+    private final boolean enabled;
+    private final long maxEntrySize;
+    private final Map<List<?>, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notModified;
+
+    public record CachedResponse(byte[] body, String nextCursor) {
+    }
+
+    private record Entry(long version, CachedResponse response) {
+    }
+
+    public QueryResultCache(MeterRegistry meterRegistry,
+                            @Value("${socks.query-cache.enabled:true}") boolean enabled,
+                            @Value("${socks.query-cache.max-entries:256}") int maxEntries,
+                            @Value("${socks.query-cache.max-entry-size:256KB}") DataSize maxEntrySize) {
+        this.enabled = enabled;
+        this.maxEntrySize = maxEntrySize.toBytes();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<?>, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+        this.notModified = counter(meterRegistry, "not-modified");
+        Gauge.builder("socks.query.cache.hit.ratio", this, QueryResultCache::hitRatio)
+                .description("Доля запросов чтения, обслуженных без обращения к базе (ответ из кэша или 304)")
+                .register(meterRegistry);
+        Gauge.builder("socks.query.cache.entries", entries, map -> {
+            synchronized (map) {
+                return map.size();
+            }
+        }).description("Ответы в кэше выборок").register(meterRegistry);
+    }
+
+    /**
+     * Возвращает ответ, сохранённый для тех же параметров и той же версии, или строит и сохраняет новый.
+     *
+     * @param version версия склада, прочитанная до обращения к базе
+     */
+    public CachedResponse get(List<?> key, long version, Supplier<CachedResponse> loader) {
+        if (enabled) {
+            synchronized (entries) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.version() == version) {
+                    hits.increment();
+                    return entry.response();
+                }
+            }
+        }
+        misses.increment();
+        CachedResponse response = loader.get();
+        if (enabled && response.body().length <= maxEntrySize) {
+            synchronized (entries) {
+                Entry current = entries.get(key);
+                if (current == null || current.version() < version) {
+                    entries.put(key, new Entry(version, response));
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Учитывает ответ 304: у клиента актуальная версия, запрос обслужен без базы.
+     */
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    private double hitRatio() {
+        double served = hits.count() + notModified.count();
+        double total = served + misses.count();
+        return total == 0 ? 0 : served / total;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("socks.query.cache")
+                .description("Запросы чтения по результату обращения к кэшу")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
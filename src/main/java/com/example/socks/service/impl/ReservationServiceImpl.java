@@ -0,0 +1,269 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.dto.CreateReservationRequest;
+import com.example.socks.dto.ReservationResponse;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.InsufficientStockException;
+import com.example.socks.exception.NotFoundException;
+import com.example.socks.exception.ServiceUnavailableException;
+import com.example.socks.model.ColorNames;
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.repository.ReservationRepository;
+import com.example.socks.repository.ReservationRepository.Hold;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.DbBound;
+import com.example.socks.service.ReservationService;
+import com.example.socks.service.WarehouseOperation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Резервы остатков. Резерв увеличивает {@code socks.reserved} позиции тем же условным UPDATE, что и отгрузка,
+ * поэтому доступное количество {@code quantity - reserved} не уходит в минус при любой конкуренции.
+ * Подтверждение отгружает зарезервированное, снятие и истечение возвращают его в доступное.
+ * Каждое изменение резерва рассылается слушателям остатков и меняет {@link InventoryVersion}: GET /api/socks
+ * считает доступное количество, и его ETag и кеш запросов должны это видеть.
+ * <p>
+ * Резерв, срок которого наступил, не находится и не снимается по id, даже если фоновый поток ещё не вернул его
+ * в доступное. Отгрузка или резерв, которым не хватило доступного, сначала снимают истёкшие резервы позиции
+ * в своей транзакции ({@link #releaseExpired}) и только потом отказывают.
+ * <p>
+ * Сроки резервов хранятся в {@link TimerWheel}: база читается один раз при старте, дальше фоновый поток раз в такт
+ * снимает только резервы, срок которых наступил, — без периодического поиска истёкших строк в таблице.
+ */
+@Service
+@Slf4j
+public class ReservationServiceImpl implements ReservationService {
+    private static final int SWEEP_BATCH_SIZE = 1000;
+
+    private final SockRepository repository;
+    private final ReservationRepository reservationRepository;
+    private final StockLedger stockLedger;
+    private final StockChangePublisher changePublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final RetryingExecutor retryingExecutor;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final Duration tick;
+    private final TimerWheel<String> wheel;
+    private final Counter expiredCounter;
+    private ScheduledExecutorService sweeper;
+
+    public ReservationServiceImpl(SockRepository repository,
+                                  ReservationRepository reservationRepository,
+                                  StockLedger stockLedger,
+                                  StockChangePublisher changePublisher,
+                                  TransactionTemplate transactionTemplate,
+                                  RetryingExecutor retryingExecutor,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${socks.reservations.default-ttl:5m}") Duration defaultTtl,
+                                  @Value("${socks.reservations.max-ttl:1h}") Duration maxTtl,
+                                  @Value("${socks.reservations.tick:1s}") Duration tick,
+                                  @Value("${socks.reservations.wheel-size:512}") int wheelSize) {
+        this.repository = repository;
+        this.reservationRepository = reservationRepository;
+        this.stockLedger = stockLedger;
+        this.changePublisher = changePublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.retryingExecutor = retryingExecutor;
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.tick = tick;
+        this.wheel = new TimerWheel<>(tick, wheelSize, Instant.now());
+        this.expiredCounter = Counter.builder("socks.reservations.expired")
+                .description("Резервы, снятые по истечении срока")
+                .register(meterRegistry);
+        Gauge.builder("socks.reservations.active", wheel, TimerWheel::size)
+                .description("Действующие резервы")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        reservationRepository.forEachDeadline(wheel::schedule);
+        log.info("Загружено действующих резервов: {}", wheel.size());
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickNanos = tick.toNanos();
+        sweeper.scheduleWithFixedDelay(this::sweep, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    @DbBound
+    @WarehouseOperation("reserve")
+    public ReservationResponse reserve(CreateReservationRequest request) {
+        request.validate();
+        request.setColor(ColorNames.normalize(request.getColor()));
+        requireDatabaseStock();
+        Duration ttl = request.getTtlSeconds() == null ? defaultTtl : Duration.ofSeconds(request.getTtlSeconds());
+        if (ttl.compareTo(maxTtl) > 0) {
+            throw new BadRequestException(String.format("Время жизни резерва не может превышать %d с.", maxTtl.toSeconds()));
+        }
+        String color = request.getColor();
+        int cottonPart = request.getCottonPart();
+        int quantity = request.getQuantity();
+        Hold hold = retryingExecutor.execute("reserve", () -> transactionTemplate.execute(status -> {
+            if (repository.reserve(color, cottonPart, quantity) == 0) {
+                Sock sock = repository.findByColorAndCottonPart(color, cottonPart)
+                        .orElseThrow(() -> new NotFoundException(String.format(
+                                "Носков с цветом '%s' и содержанием хлопка %d%% на складе нет.", color, cottonPart)));
+                int released = releaseExpired(sock.getId());
+                if (released == 0 || repository.reserve(color, cottonPart, quantity) == 0) {
+                    throw new InsufficientStockException(String.format("Недостаточно носков с цветом '%s' и содержанием хлопка %d%%." +
+                                    " Запрашиваемое количество: %d, доступное количество: %d",
+                            color, cottonPart, quantity, sock.getQuantity() - sock.getReserved() + released));
+                }
+            }
+            // Срок хранится с точностью до миллисекунды, как и в колесе: истечение не сработает раньше срока в базе.
+            Hold created = new Hold(UUID.randomUUID().toString(), repository.findByColorAndCottonPart(color, cottonPart).orElseThrow().getId(),
+                    quantity, Instant.now().plus(ttl).truncatedTo(ChronoUnit.MILLIS));
+            reservationRepository.insert(created);
+            changePublisher.publishReserved(color, cottonPart, quantity);
+            return created;
+        }));
+        wheel.schedule(hold.id(), hold.expiresAt());
+        return new ReservationResponse(hold.id(), color, cottonPart, quantity, hold.expiresAt());
+    }
+
+    @Override
+    @DbBound
+    public ReservationResponse getReservation(String id) {
+        return reservationRepository.findActive(id, Instant.now()).orElseThrow(() -> notFound(id));
+    }
+
+    @Override
+    @DbBound
+    @WarehouseOperation("confirm")
+    public String confirm(String id) {
+        requireDatabaseStock();
+        retryingExecutor.execute("confirm", () -> transactionTemplate.execute(status -> {
+            Hold hold = reservationRepository.deleteActive(id, Instant.now()).orElseThrow(() -> notFound(id));
+            repository.shipReserved(hold.sockId(), hold.quantity());
+            Sock sock = repository.findById(hold.sockId()).orElseThrow();
+            changePublisher.publish(sock.getColor(), sock.getCottonPart(), -hold.quantity());
+            changePublisher.publishReserved(sock.getColor(), sock.getCottonPart(), -hold.quantity());
+            return hold;
+        }));
+        wheel.cancel(id);
+        return String.format("Резерв %s подтверждён, носки отгружены.", id);
+    }
+
+    @Override
+    @DbBound
+    @WarehouseOperation("release")
+    public String release(String id) {
+        retryingExecutor.execute("release", () -> transactionTemplate.execute(status -> {
+            Hold hold = reservationRepository.deleteActive(id, Instant.now()).orElseThrow(() -> notFound(id));
+            repository.releaseReserved(hold.sockId(), hold.quantity());
+            Sock sock = repository.findById(hold.sockId()).orElseThrow();
+            changePublisher.publishReserved(sock.getColor(), sock.getCottonPart(), -hold.quantity());
+            return hold;
+        }));
+        wheel.cancel(id);
+        return String.format("Резерв %s снят.", id);
+    }
+
+    /**
+     * Снимает в текущей транзакции резервы позиции, срок которых наступил, но которые фоновый поток ещё не снял.
+     * На колесе они остаются: поток их в базе уже не найдёт и пропустит.
+     *
+     * @return количество, возвращённое в доступное
+     */
+    int releaseExpired(long sockId) {
+        List<Hold> holds = reservationRepository.deleteExpired(sockId, Instant.now());
+        if (holds.isEmpty()) {
+            return 0;
+        }
+        int quantity = holds.stream().mapToInt(Hold::quantity).sum();
+        repository.releaseReserved(sockId, quantity);
+        Sock sock = repository.findById(sockId).orElseThrow();
+        changePublisher.publishReserved(sock.getColor(), sock.getCottonPart(), -quantity);
+        expiredCounter.increment(holds.size());
+        return quantity;
+    }
+
+    /**
+     * Реестр остатков отгружает из памяти и не видит резервов, поэтому резервировать и подтверждать при нём нельзя.
+     * Снять уже сделанный резерв можно.
+     */
+    private void requireDatabaseStock() {
+        if (stockLedger.isEnabled()) {
+            throw new ServiceUnavailableException("Резервирование недоступно при включённом реестре остатков в памяти.");
+        }
+    }
+
+    private static NotFoundException notFound(String id) {
+        return new NotFoundException(String.format("Резерв %s не найден: он подтверждён, снят или истёк.", id));
+    }
+
+    void sweep() {
+        Instant now = Instant.now();
+        List<String> due = wheel.advance(now);
+        for (int from = 0; from < due.size(); from += SWEEP_BATCH_SIZE) {
+            List<String> batch = due.subList(from, Math.min(due.size(), from + SWEEP_BATCH_SIZE));
+            try {
+                expire(batch, now);
+            } catch (RuntimeException e) {
+                log.error("Ошибка снятия истёкших резервов, повтор через {}", tick, e);
+                batch.forEach(id -> wheel.schedule(id, now));
+            }
+        }
+    }
+
+    /**
+     * Удаляет истёкшие резервы и возвращает их количество в доступное; позиции обновляются по возрастанию id,
+     * чтобы параллельные транзакции блокировали строки в одном порядке. Резервы, уже подтверждённые или снятые,
+     * в базе не найдутся и пропускаются.
+     */
+    private void expire(List<String> ids, Instant now) {
+        int expired = transactionTemplate.execute(status -> {
+            Map<Long, Integer> released = new TreeMap<>();
+            List<Hold> holds = reservationRepository.deleteExpired(ids, now);
+            for (Hold hold : holds) {
+                released.merge(hold.sockId(), hold.quantity(), Integer::sum);
+            }
+            Map<SockKey, Integer> releasedByKey = new HashMap<>();
+            released.forEach((sockId, quantity) -> {
+                repository.releaseReserved(sockId, quantity);
+                Sock sock = repository.findById(sockId).orElseThrow();
+                releasedByKey.put(new SockKey(sock.getColor(), sock.getCottonPart()), -quantity);
+            });
+            changePublisher.publishReserved(releasedByKey);
+            return holds.size();
+        });
+        expiredCounter.increment(expired);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdown();
+        try {
+            sweeper.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
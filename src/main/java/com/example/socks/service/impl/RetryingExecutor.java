@@ -0,0 +1,76 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.exception.ConflictException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Повторяет операцию записи, проигравшую гонку за строку: конфликт версий, блокировку или взаимоблокировку.
+ * Каждая попытка должна быть целой транзакцией. Пауза между попытками случайна в пределах растущего окна,
+ * чтобы столкнувшиеся писатели не повторяли попытки одновременно.
+ */
+@Component
+@Slf4j
+public class RetryingExecutor {
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    public RetryingExecutor(MeterRegistry meterRegistry,
+                            @Value("${socks.retry.max-attempts:5}") int maxAttempts,
+                            @Value("${socks.retry.initial-backoff:5ms}") Duration initialBackoff,
+                            @Value("${socks.retry.max-backoff:200ms}") Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("socks.retry.max-attempts должен быть не меньше 1");
+        }
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    public <T> T execute(String operation, Supplier<T> action) {
+        return execute(operation, action, ConcurrencyFailureException.class);
+    }
+
+    /**
+     * @param retryOn дополнительный тип исключения, после которого попытку тоже можно повторить
+     */
+    public <T> T execute(String operation, Supplier<T> action, Class<? extends RuntimeException> retryOn) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                if (!(e instanceof ConcurrencyFailureException) && !retryOn.isInstance(e)) {
+                    throw e;
+                }
+                meterRegistry.counter("socks.write.conflicts", "operation", operation).increment();
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("socks.write.retries.exhausted", "operation", operation).increment();
+                    log.warn("Операция {} не выполнена за {} попыток из-за параллельных изменений", operation, attempt);
+                    throw new ConflictException("Позиция одновременно изменяется другими запросами, повторите операцию позже.", e);
+                }
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void backoff(int attempt, RuntimeException cause) {
+        long window = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(window + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Повтор операции прерван.", cause);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.model.SockKey;
+import com.example.socks.repository.SockBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class SockCsvImporter {
+    private static final int MAX_REPORTED_LINES = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SockBatchRepository batchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockChangePublisher changePublisher;
+    private final int chunkSize;
+    private final boolean atomic;
+    private final Counter rowsRead;
+    private final Counter rowsRejected;
+    private volatile double lastRowsPerSecond;
+
+    public SockCsvImporter(SockBatchRepository batchRepository,
+                           TransactionTemplate transactionTemplate,
+                           StockChangePublisher changePublisher,
+                           MeterRegistry meterRegistry,
+                           @Value("${socks.import.chunk-size:5000}") int chunkSize,
+                           @Value("${socks.import.atomic:true}") boolean atomic) {
+        this.batchRepository = batchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.changePublisher = changePublisher;
+        this.chunkSize = chunkSize;
+        this.atomic = atomic;
+        this.rowsRead = Counter.builder("socks.import.rows").tag("result", "read").register(meterRegistry);
+        this.rowsRejected = Counter.builder("socks.import.rows").tag("result", "rejected").register(meterRegistry);
+        Gauge.builder("socks.import.rows.per.second", this, importer -> importer.lastRowsPerSecond)
+                .description("Скорость последнего импорта CSV")
+                .register(meterRegistry);
+    }
+
+    public BatchUploadResponse importCsv(InputStream inputStream) throws IOException {
+        return importCsv(inputStream, rows -> {
+        });
+    }
+
+    /**
+     * @param progress получает число прочитанных строк после записи каждого чанка
+     */
+    public BatchUploadResponse importCsv(InputStream inputStream, LongConsumer progress) throws IOException {
+        return importCsv(inputStream, progress, () -> {
+        });
+    }
+
+    /**
+     * @param progress  получает число прочитанных строк после записи каждого чанка
+     * @param onApplied выполняется после записи всего файла: при атомарном импорте — в той же транзакции,
+     *                  иначе — в отдельной после последнего чанка
+     */
+    public BatchUploadResponse importCsv(InputStream inputStream, LongConsumer progress, Runnable onApplied) throws IOException {
+        long started = System.nanoTime();
+        ImportState state = new ImportState(progress);
+        try {
+            if (atomic) {
+                Map<SockKey, Long> applied = new HashMap<>();
+                transactionTemplate.executeWithoutResult(status -> {
+                    readChunks(inputStream, state, chunk -> {
+                        batchRepository.upsertQuantities(chunk);
+                        chunk.forEach((key, quantity) -> applied.merge(key, quantity.longValue(), Long::sum));
+                    });
+                    if (state.rowsRejected > 0) {
+                        throw new BadRequestException(createRejectedResponse(state));
+                    }
+                    changePublisher.publish(applied);
+                    onApplied.run();
+                });
+            } else {
+                readChunks(inputStream, state, chunk -> transactionTemplate.executeWithoutResult(status -> {
+                    batchRepository.upsertQuantities(chunk);
+                    changePublisher.publish(chunk);
+                }));
+                transactionTemplate.executeWithoutResult(status -> onApplied.run());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            rowsRead.increment(state.rowsRead);
+            rowsRejected.increment(state.rowsRejected);
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        BatchUploadResponse response = BatchUploadResponse.builder()
+                .rowsRead(state.rowsRead)
+                .rowsApplied(state.rowsRead - state.rowsRejected)
+                .rowsRejected(state.rowsRejected)
+                .rejectedLines(state.rejectedLines)
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .rowsPerSecond(elapsedNanos == 0 ? 0 : state.rowsRead * 1_000_000_000.0 / elapsedNanos)
+                .build();
+        lastRowsPerSecond = response.getRowsPerSecond();
+        log.info("CSV импорт: прочитано {}, применено {}, отклонено {}, {} строк/с",
+                response.getRowsRead(), response.getRowsApplied(), response.getRowsRejected(),
+                Math.round(response.getRowsPerSecond()));
+        return response;
+    }
+
+    /**
+     * Читает поток блоками байт и разбирает целые строки на месте; хвост блока переносится в начало буфера.
+     * Первая строка — заголовок.
+     */
+    private void readChunks(InputStream inputStream, ImportState state, ChunkWriter writer) {
+        SockCsvParser.LineParser parser = new SockCsvParser.LineParser();
+        byte[] bytes = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int length = 0;
+        int scanned = 0;
+        try {
+            int read;
+            while ((read = inputStream.read(bytes, length, bytes.length - length)) >= 0) {
+                length += read;
+                int lineStart = 0;
+                for (int i = scanned; i < length; i++) {
+                    if (bytes[i] == '\n') {
+                        acceptLine(parser, buffer, lineStart, i, state, writer);
+                        lineStart = i + 1;
+                    }
+                }
+                length -= lineStart;
+                System.arraycopy(bytes, lineStart, bytes, 0, length);
+                scanned = length;
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                    buffer = ByteBuffer.wrap(bytes);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (length > 0) {
+            acceptLine(parser, buffer, 0, length, state, writer);
+        }
+        writer.write(drain(parser));
+        state.progress.accept(state.rowsRead);
+    }
+
+    private void acceptLine(SockCsvParser.LineParser parser, ByteBuffer buffer, int from, int to,
+                            ImportState state, ChunkWriter writer) {
+        if (++state.lineNumber == 1) {
+            return;
+        }
+        SockCsvParser.LineResult result = parser.parseLine(buffer, from, to);
+        if (result == SockCsvParser.LineResult.BLANK) {
+            return;
+        }
+        state.rowsRead++;
+        if (result == SockCsvParser.LineResult.REJECTED) {
+            state.reject(state.lineNumber);
+        }
+        if (++state.chunkRows >= chunkSize) {
+            writer.write(drain(parser));
+            state.chunkRows = 0;
+            state.progress.accept(state.rowsRead);
+        }
+    }
+
+    private static Map<SockKey, Integer> drain(SockCsvParser.LineParser parser) {
+        Map<SockKey, Integer> chunk = new HashMap<>(parser.size() * 2);
+        parser.drain((color, cottonPart, quantity) -> chunk.put(new SockKey(color, cottonPart), (int) quantity));
+        return chunk;
+    }
+
+    private String createRejectedResponse(ImportState state) {
+        String lines = state.rejectedLines.stream().limit(20).map(String::valueOf).collect(Collectors.joining(", "));
+        return String.format("Файл не загружен: ошибки в строках %s%s (всего отклонено строк: %d).",
+                lines, state.rowsRejected > 20 ? ", ..." : "", state.rowsRejected);
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        void write(Map<SockKey, Integer> chunk);
+    }
+
+    private static final class ImportState {
+        private final LongConsumer progress;
+        private long lineNumber;
+        private int chunkRows;
+        private long rowsRead;
+        private long rowsRejected;
+        private final List<Long> rejectedLines = new ArrayList<>();
+
+        private ImportState(LongConsumer progress) {
+            this.progress = progress;
+        }
+
+        private void reject(long lineNumber) {
+            rowsRejected++;
+            if (rejectedLines.size() < MAX_REPORTED_LINES) {
+                rejectedLines.add(lineNumber);
+            }
+        }
+    }
+}
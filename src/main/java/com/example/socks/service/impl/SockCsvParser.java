@@ -0,0 +1,421 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.model.ColorNames;
+import com.example.socks.model.SockKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Разбор CSV остатков ({@code color,cottonPart,quantity}) без построчных аллокаций. Общий для начального
+ * заполнения и загрузки партий: файл отображается в память, делится по границам строк на сегменты,
+ * сегменты разбираются параллельно, каждый в свою таблицу цветов, после чего таблицы сливаются.
+ */
+@Slf4j
+public final class SockCsvParser {
+    static final int COTTON_PARTS = 101;
+    private static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    private static final int MAX_REPORTED_LINES = 1000;
+
+    private SockCsvParser() {
+    }
+
+    public static Result parse(Path file, int parallelism) throws IOException {
+        return parse(file, parallelism, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public static Result parse(Path file, int parallelism, long maxSegmentBytes) throws IOException {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<long[]> bounds = split(channel, parallelism, maxSegmentBytes);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, bounds.size())), runnable -> {
+                Thread thread = new Thread(runnable, "csv-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            List<Segment> segments = new ArrayList<>(bounds.size());
+            try {
+                List<Future<Segment>> futures = new ArrayList<>(bounds.size());
+                for (long[] bound : bounds) {
+                    futures.add(executor.submit(() -> {
+                        Segment segment = new Segment();
+                        segment.parse(channel.map(FileChannel.MapMode.READ_ONLY, bound[0], bound[1] - bound[0]));
+                        return segment;
+                    }));
+                }
+                for (Future<Segment> future : futures) {
+                    segments.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Разбор CSV прерван", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+            long parsed = System.nanoTime();
+            Result result = reduce(segments);
+            log.info("CSV {} разобран: сегментов {}, потоков {}, строк {}, позиций {}; разбор {} мс, слияние {} мс",
+                    file, segments.size(), parallelism, result.rowsRead(), result.quantities().size(),
+                    (parsed - started) / 1_000_000, (System.nanoTime() - parsed) / 1_000_000);
+            return result;
+        }
+    }
+
+    /**
+     * Делит файл после строки заголовка на сегменты, каждый из которых начинается с начала строки.
+     */
+    private static List<long[]> split(FileChannel channel, int parallelism, long maxSegmentBytes) throws IOException {
+        long size = channel.size();
+        long start = nextLine(channel, 0, size);
+        List<long[]> bounds = new ArrayList<>();
+        if (start >= size) {
+            return bounds;
+        }
+        long length = size - start;
+        long count = Math.max(parallelism, (length + maxSegmentBytes - 1) / maxSegmentBytes);
+        long step = Math.max(1, (length + count - 1) / count);
+        long from = start;
+        while (from < size) {
+            long to = from + step >= size ? size : nextLine(channel, from + step - 1, size);
+            if (to - from > Integer.MAX_VALUE) {
+                throw new IOException("Сегмент CSV превышает 2 ГБ: слишком длинная строка около позиции " + from);
+            }
+            bounds.add(new long[]{from, to});
+            from = to;
+        }
+        return bounds;
+    }
+
+    /**
+     * @return позиция сразу после первого перевода строки, начиная с {@code position}, или конец файла
+     */
+    private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static Result reduce(List<Segment> segments) {
+        Map<SockKey, Long> quantities = new HashMap<>();
+        long rowsRead = 0;
+        long rowsRejected = 0;
+        List<Long> rejectedLines = new ArrayList<>();
+        long lineBase = 1;
+        for (Segment segment : segments) {
+            segment.parser.drain((color, cottonPart, quantity) ->
+                    quantities.merge(new SockKey(color, cottonPart), quantity, Long::sum));
+            for (int i = 0; i < segment.reportedCount && rejectedLines.size() < MAX_REPORTED_LINES; i++) {
+                rejectedLines.add(lineBase + segment.reported[i]);
+            }
+            rowsRead += segment.rows;
+            rowsRejected += segment.rejected;
+            lineBase += segment.lines;
+        }
+        return new Result(quantities, rowsRead, rowsRejected, rejectedLines);
+    }
+
+    /**
+     * @param quantities    суммарное количество по позициям
+     * @param rejectedLines номера отклонённых строк (не более 1000), заголовок — строка 1
+     */
+    public record Result(Map<SockKey, Long> quantities, long rowsRead, long rowsRejected, List<Long> rejectedLines) {
+    }
+
+    /**
+     * Разбор строк в таблицы остатков. Цвет декодируется из UTF-8 и нормализуется ({@link ColorNames}) только
+     * при первой встрече его байтов, дальше строки находят канонический цвет по байтам в открытой хеш-таблице;
+     * разные написания одного цвета сходятся к одной записи. Числа разбираются на месте.
+     * Ошибки не бросаются: {@link #parseLine} возвращает {@link LineResult#REJECTED}.
+     */
+    public static final class LineParser {
+        private static final long INVALID = Long.MIN_VALUE;
+        private static final long ABSENT = -1;
+
+        private int[] slots = new int[64];
+        private int[] hashes = new int[16];
+        private byte[][] spellings = new byte[16][];
+        private int[] canonical = new int[16];
+        private int spellingCount;
+        private final Map<String, Integer> colorIds = new HashMap<>();
+        private String[] colors = new String[16];
+        private long[][] quantities = new long[16][];
+        private int colorCount;
+        private int[] touched = new int[256];
+        private int touchedCount;
+
+        public LineResult parseLine(ByteBuffer buffer, int from, int to) {
+            int start = skipBlank(buffer, from, to);
+            if (start == to) {
+                return LineResult.BLANK;
+            }
+            int firstComma = indexOfComma(buffer, start, to);
+            int secondComma = firstComma < 0 ? -1 : indexOfComma(buffer, firstComma + 1, to);
+            if (secondComma < 0 || indexOfComma(buffer, secondComma + 1, to) >= 0) {
+                return LineResult.REJECTED;
+            }
+            int colorEnd = trimEnd(buffer, start, firstComma);
+            if (colorEnd == start) {
+                return LineResult.REJECTED;
+            }
+            long cottonPart = parseInt(buffer, firstComma + 1, secondComma);
+            long quantity = parseInt(buffer, secondComma + 1, to);
+            if (cottonPart == INVALID || quantity == INVALID || cottonPart < 0 || cottonPart > 100 || quantity < 0) {
+                return LineResult.REJECTED;
+            }
+            int id = colorId(buffer, start, colorEnd);
+            long[] perCottonPart = quantities[id];
+            long current = perCottonPart[(int) cottonPart];
+            if (current == ABSENT) {
+                touch(id * COTTON_PARTS + (int) cottonPart);
+                current = 0;
+            } else if (current + quantity > Integer.MAX_VALUE) {
+                return LineResult.REJECTED;
+            }
+            perCottonPart[(int) cottonPart] = current + quantity;
+            return LineResult.PARSED;
+        }
+
+        /**
+         * Передаёт накопленные позиции и очищает таблицы; канонические цвета сохраняются.
+         */
+        public void drain(PositionConsumer consumer) {
+            for (int i = 0; i < touchedCount; i++) {
+                int id = touched[i] / COTTON_PARTS;
+                int cottonPart = touched[i] % COTTON_PARTS;
+                consumer.accept(colors[id], cottonPart, quantities[id][cottonPart]);
+                quantities[id][cottonPart] = ABSENT;
+            }
+            touchedCount = 0;
+        }
+
+        public int size() {
+            return touchedCount;
+        }
+
+        private void touch(int cell) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            }
+            touched[touchedCount++] = cell;
+        }
+
+        private int colorId(ByteBuffer buffer, int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = slots.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int spelling = slots[slot] - 1;
+                if (spelling < 0) {
+                    return addSpelling(buffer, from, to, hash, slot);
+                }
+                if (hashes[spelling] == hash && sameBytes(spellings[spelling], buffer, from, to)) {
+                    return canonical[spelling];
+                }
+            }
+        }
+
+        private int addSpelling(ByteBuffer buffer, int from, int to, int hash, int slot) {
+            if (spellingCount == spellings.length) {
+                int capacity = spellings.length * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                spellings = Arrays.copyOf(spellings, capacity);
+                canonical = Arrays.copyOf(canonical, capacity);
+            }
+            byte[] bytes = new byte[to - from];
+            buffer.get(from, bytes);
+            int spelling = spellingCount++;
+            hashes[spelling] = hash;
+            spellings[spelling] = bytes;
+            canonical[spelling] = colorIds.computeIfAbsent(
+                    ColorNames.normalize(new String(bytes, StandardCharsets.UTF_8)), this::addColor);
+            slots[slot] = spelling + 1;
+            if (spellingCount * 2 > slots.length) {
+                rehash();
+            }
+            return canonical[spelling];
+        }
+
+        private int addColor(String color) {
+            if (colorCount == colors.length) {
+                colors = Arrays.copyOf(colors, colors.length * 2);
+                quantities = Arrays.copyOf(quantities, colors.length);
+            }
+            int id = colorCount++;
+            colors[id] = color;
+            quantities[id] = new long[COTTON_PARTS];
+            Arrays.fill(quantities[id], ABSENT);
+            return id;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int id = 0; id < spellingCount; id++) {
+                int slot = mix(hashes[id]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean sameBytes(byte[] bytes, ByteBuffer buffer, int from, int to) {
+            if (bytes.length != to - from) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != buffer.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Целое со знаком между пробельными символами, как {@code Integer.parseInt(value.trim())}.
+         */
+        private static long parseInt(ByteBuffer buffer, int from, int to) {
+            int start = skipBlank(buffer, from, to);
+            int end = trimEnd(buffer, start, to);
+            if (start == end) {
+                return INVALID;
+            }
+            boolean negative = false;
+            byte first = buffer.get(start);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                if (++start == end) {
+                    return INVALID;
+                }
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b < '0' || b > '9') {
+                    return INVALID;
+                }
+                value = value * 10 + (b - '0');
+                if (value > Integer.MAX_VALUE + 1L) {
+                    return INVALID;
+                }
+            }
+            value = negative ? -value : value;
+            return value > Integer.MAX_VALUE ? INVALID : value;
+        }
+
+        private static int indexOfComma(ByteBuffer buffer, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (buffer.get(i) == ',') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int skipBlank(ByteBuffer buffer, int from, int to) {
+            while (from < to && isBlank(buffer.get(from))) {
+                from++;
+            }
+            return from;
+        }
+
+        private static int trimEnd(ByteBuffer buffer, int from, int to) {
+            while (to > from && isBlank(buffer.get(to - 1))) {
+                to--;
+            }
+            return to;
+        }
+
+        private static boolean isBlank(byte b) {
+            return b >= 0 && b <= ' ';
+        }
+    }
+
+    public enum LineResult {
+        BLANK, PARSED, REJECTED
+    }
+
+    @FunctionalInterface
+    public interface PositionConsumer {
+        void accept(String color, int cottonPart, long quantity);
+    }
+
+    /**
+     * Строки одного сегмента файла: позиции разбираются в собственный {@link LineParser}.
+     */
+    private static final class Segment {
+        private final LineParser parser = new LineParser();
+        private long lines;
+        private long rows;
+        private long rejected;
+        private long[] reported = new long[16];
+        private int reportedCount;
+
+        private void parse(ByteBuffer buffer) {
+            int limit = buffer.limit();
+            int position = 0;
+            while (position < limit) {
+                int end = position;
+                while (end < limit && buffer.get(end) != '\n') {
+                    end++;
+                }
+                lines++;
+                LineResult result = parser.parseLine(buffer, position, end);
+                if (result != LineResult.BLANK) {
+                    rows++;
+                }
+                if (result == LineResult.REJECTED) {
+                    reject();
+                }
+                position = end + 1;
+            }
+        }
+
+        private void reject() {
+            rejected++;
+            if (reportedCount < MAX_REPORTED_LINES) {
+                if (reportedCount == reported.length) {
+                    reported = Arrays.copyOf(reported, reported.length * 2);
+                }
+                reported[reportedCount++] = lines;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.dto.SockPage;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Постраничная выборка по ключу: размер страницы и курсор — последняя позиция страницы в виде {@code cottonPart:color}
+ * в Base64. Общая для обычного и реактивного API, поэтому курсор одного подходит другому.
+ * Запрос без {@code limit} и курсора не постраничный и, как до появления страниц, возвращает все строки.
+ */
+public final class SockPages {
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 10_000;
+
+    private SockPages() {
+    }
+
+    public static boolean isUnpaged(Integer limit, String cursor) {
+        return limit == null && cursor == null;
+    }
+
+    public static int pageSize(Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new BadRequestException(String.format("Параметр limit должен быть от 1 до %d.", MAX_PAGE_SIZE));
+        }
+        return pageSize;
+    }
+
+    /**
+     * @return ключ, после которого начинается страница, или null для первой страницы
+     */
+    public static SockKey after(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(':');
+            return new SockKey(value.substring(separator + 1), Integer.parseInt(value.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestException("Некорректный курсор постраничной выборки.");
+        }
+    }
+
+    /**
+     * Страница с курсором следующей; неполная страница — последняя.
+     */
+    public static SockPage page(List<Sock> socks, int pageSize) {
+        return new SockPage(socks, socks.size() < pageSize ? null : cursor(socks.get(socks.size() - 1)));
+    }
+
+    private static String cursor(Sock sock) {
+        String value = sock.getCottonPart() + ":" + sock.getColor();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
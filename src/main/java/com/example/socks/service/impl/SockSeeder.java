@@ -0,0 +1,135 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.model.SockKey;
+import com.example.socks.repository.SockBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Начальное заполнение склада из {@code socks.seed.file} при старте приложения.
+ * В фоновом режиме ({@code socks.seed.async=true}) приложение стартует сразу, а проверка готовности
+ * ({@code /actuator/health/readiness}) возвращает OUT_OF_SERVICE, пока данные не загружены.
+ * С {@code socks.seed.only-if-empty=true} файл загружается только в пустой склад — для базы в файле, которая
+ * переживает перезапуск, иначе остатки из файла добавлялись бы при каждом старте.
+ */
+@Component
+@Slf4j
+public class SockSeeder implements HealthIndicator {
+    private final SockBatchRepository batchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockChangePublisher changePublisher;
+    private final String file;
+    private final boolean async;
+    private final boolean onlyIfEmpty;
+    private final int parallelism;
+    private final int chunkSize;
+    private volatile Health health = Health.outOfService().withDetail("state", "ожидает запуска").build();
+
+    public SockSeeder(SockBatchRepository batchRepository,
+                      TransactionTemplate transactionTemplate,
+                      StockChangePublisher changePublisher,
+                      @Value("${socks.seed.file:data/sk.csv}") String file,
+                      @Value("${socks.seed.async:false}") boolean async,
+                      @Value("${socks.seed.only-if-empty:false}") boolean onlyIfEmpty,
+                      @Value("${socks.seed.parallelism:0}") int parallelism,
+                      @Value("${socks.import.chunk-size:5000}") int chunkSize) {
+        this.batchRepository = batchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.changePublisher = changePublisher;
+        this.file = file;
+        this.async = async;
+        this.onlyIfEmpty = onlyIfEmpty;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStarted() throws IOException {
+        if (file == null || file.isBlank()) {
+            health = Health.up().withDetail("state", "отключено").build();
+            return;
+        }
+        if (onlyIfEmpty && batchRepository.hasStock()) {
+            log.info("Склад не пуст, начальное заполнение из {} пропущено", file);
+            health = Health.up().withDetail("state", "пропущено: склад не пуст").build();
+            return;
+        }
+        if (!async) {
+            seed();
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                seed();
+            } catch (Exception e) {
+                log.error("Ошибка начального заполнения склада из {}", file, e);
+                health = Health.down(e).withDetail("file", file).build();
+            }
+        }, "sock-seeder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void seed() throws IOException {
+        long started = System.nanoTime();
+        health = Health.outOfService().withDetail("state", "загрузка").withDetail("file", file).build();
+        SockCsvParser.Result parsed = SockCsvParser.parse(Path.of(file), parallelism);
+        if (parsed.rowsRejected() > 0) {
+            throw new IllegalStateException(String.format("Файл %s не загружен: ошибки в строках %s (всего отклонено строк: %d).",
+                    file, parsed.rejectedLines().subList(0, Math.min(20, parsed.rejectedLines().size())), parsed.rowsRejected()));
+        }
+        long loadStarted = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Map<SockKey, Integer> chunk : chunks(parsed.quantities())) {
+                batchRepository.upsertQuantities(chunk);
+            }
+            changePublisher.publish(parsed.quantities());
+        });
+        long finished = System.nanoTime();
+        log.info("Склад заполнен из {}: строк {}, позиций {}; разбор {} мс, загрузка {} мс, всего {} мс",
+                file, parsed.rowsRead(), parsed.quantities().size(), (loadStarted - started) / 1_000_000,
+                (finished - loadStarted) / 1_000_000, (finished - started) / 1_000_000);
+        health = Health.up()
+                .withDetail("file", file)
+                .withDetail("rows", parsed.rowsRead())
+                .withDetail("skus", parsed.quantities().size())
+                .withDetail("elapsedMillis", (finished - started) / 1_000_000)
+                .build();
+    }
+
+    private List<Map<SockKey, Integer>> chunks(Map<SockKey, Long> quantities) {
+        List<Map<SockKey, Integer>> chunks = new ArrayList<>();
+        Map<SockKey, Integer> chunk = new HashMap<>();
+        for (Map.Entry<SockKey, Long> entry : quantities.entrySet()) {
+            if (entry.getValue() > Integer.MAX_VALUE) {
+                throw new IllegalStateException(String.format("Количество носков с цветом '%s' и содержанием хлопка %d%% превышает %d.",
+                        entry.getKey().color(), entry.getKey().cottonPart(), Integer.MAX_VALUE));
+            }
+            chunk.put(entry.getKey(), entry.getValue().intValue());
+            if (chunk.size() >= chunkSize) {
+                chunks.add(chunk);
+                chunk = new HashMap<>();
+            }
+        }
+        chunks.add(chunk);
+        return chunks;
+    }
+
+    @Override
+    public Health health() {
+        return health;
+    }
+}
@@ -1,167 +1,341 @@
 package com.example.socks.service.impl;
 
+import com.example.socks.dto.BatchUploadResponse;
 import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.MovementLineResult;
+import com.example.socks.dto.SockPage;
+import com.example.socks.dto.StockMovementRequest;
 import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.InsufficientStockException;
 import com.example.socks.exception.NotFoundException;
+import com.example.socks.model.ColorNames;
+import com.example.socks.model.Comparison;
 import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.model.SockSort;
+import com.example.socks.repository.ColorDictionary;
+import com.example.socks.repository.SockBatchRepository;
+import com.example.socks.repository.SockListingRepository;
 import com.example.socks.repository.SockRepository;
+import com.example.socks.service.DbBound;
 import com.example.socks.service.SockService;
-import jakarta.annotation.PostConstruct;
+import com.example.socks.service.WarehouseOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.*;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SockServiceImpl implements SockService {
     private final SockRepository repository;
+    private final SockBatchRepository batchRepository;
+    private final SockListingRepository listingRepository;
+    private final ColorDictionary colorDictionary;
+    private final SockCsvImporter csvImporter;
+    private final StockIndex stockIndex;
+    private final StockLedger stockLedger;
+    private final StockChangePublisher changePublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final RetryingExecutor retryingExecutor;
+    private final CountQueryCoalescer countQueryCoalescer;
+    private final ReservationServiceImpl reservations;
 
     @Override
+    @DbBound
+    @WarehouseOperation("income")
     public String income(CreateSockRequest request) {
-        request.validate();
-        Optional<Sock> existingSock = repository.findByColorAndCottonPart(request.getColor(), request.getCottonPart());
-        return existingSock.map(sock -> updateExistingSock(sock, request.getQuantity()))
-                .orElseGet(() -> createNewSock(request));
+        normalize(request);
+        if (stockLedger.isEnabled()) {
+            return applyLedgerIncome(request);
+        }
+        // Остаток и запись в истории движений — одна транзакция. Нарушение уникальности значит, что параллельный приход
+        // успел создать ту же позицию: повторная попытка увеличит её остаток.
+        return retryingExecutor.execute("income",
+                () -> transactionTemplate.execute(status -> applyIncome(request)), DataIntegrityViolationException.class);
+    }
+
+    private String applyIncome(CreateSockRequest request) {
+        String color = request.getColor();
+        int cottonPart = request.getCottonPart();
+        if (repository.increaseQuantity(color, cottonPart, request.getQuantity()) > 0) {
+            changePublisher.publish(color, cottonPart, request.getQuantity());
+            return createUpdatedResponse(color, cottonPart);
+        }
+        repository.upsertQuantity(colorDictionary.register(color), cottonPart, request.getQuantity());
+        changePublisher.publish(color, cottonPart, request.getQuantity());
+        return createAddedResponse(color, cottonPart);
+    }
+
+    private String applyLedgerIncome(CreateSockRequest request) {
+        String color = request.getColor();
+        int cottonPart = request.getCottonPart();
+        StockLedger.Change change = stockLedger.apply(new SockKey(color, cottonPart), request.getQuantity());
+        if (!change.applied()) {
+            throw new BadRequestException(String.format(
+                    "Остаток носков с цветом '%s' и содержанием хлопка %d%% превысит допустимое значение.", color, cottonPart));
+        }
+        return change.previous() == StockLedger.ABSENT ? createAddedResponse(color, cottonPart) : createUpdatedResponse(color, cottonPart);
+    }
 
+    private String createAddedResponse(String color, int cottonPart) {
+        return String.format("Добавлена новая партия носков с цветом '%s' и содержанием хлопка %d%%.", color, cottonPart);
     }
 
-    private String updateExistingSock(Sock sock, int quantity) {
-        sock.setQuantity(sock.getQuantity() + quantity);
-        repository.save(sock);
-        return String.format("Носки с цветом '%s' и содержанием хлопка %d%% были успешно обновлены.", sock.getColor(), sock.getCottonPart());
+    /**
+     * Проверяет запрос и приводит цвет к каноническому виду: дальше он используется как есть.
+     */
+    private static void normalize(CreateSockRequest request) {
+        request.validate();
+        request.setColor(ColorNames.normalize(request.getColor()));
     }
 
-    private String createNewSock(CreateSockRequest request) {
-        Sock newSock = Sock.builder()
-                .color(request.getColor())
-                .cottonPart(request.getCottonPart())
-                .quantity(request.getQuantity())
-                .build();
-        repository.save(newSock);
-        return String.format("Добавлена новая партия носков с цветом '%s' и содержанием хлопка %d%%.", request.getColor(), request.getCottonPart());
+    private String createUpdatedResponse(String color, int cottonPart) {
+        return String.format("Носки с цветом '%s' и содержанием хлопка %d%% были успешно обновлены.", color, cottonPart);
     }
 
     @Override
+    @DbBound
+    @WarehouseOperation("outcome")
     public String outcome(CreateSockRequest request) {
-        request.validate();
-        Optional<Sock> existingSock = repository.findByColorAndCottonPart(request.getColor(), request.getCottonPart());
-        Sock sock = existingSock.orElseThrow(() -> new NotFoundException(createNotFoundResponse(request)));
-        return processSockOutcome(sock, request.getQuantity());
+        normalize(request);
+        if (stockLedger.isEnabled()) {
+            return applyLedgerOutcome(request);
+        }
+        return retryingExecutor.execute("outcome", () -> transactionTemplate.execute(status -> applyOutcome(request)));
     }
 
-    private String createNotFoundResponse(CreateSockRequest request) {
-        request.validate();
-        return String.format("Носков с цветом '%s' и содержанием хлопка %d%% на складе нет.", request.getColor(), request.getCottonPart());
+    private String applyOutcome(CreateSockRequest request) {
+        if (repository.decreaseQuantity(request.getColor(), request.getCottonPart(), request.getQuantity()) > 0) {
+            changePublisher.publish(request.getColor(), request.getCottonPart(), -request.getQuantity());
+            return createShippedResponse(request);
+        }
+        Sock sock = repository.findByColorAndCottonPart(request.getColor(), request.getCottonPart())
+                .orElseThrow(() -> new NotFoundException(createNotFoundResponse(request)));
+        int released = reservations.releaseExpired(sock.getId());
+        if (released > 0 && repository.decreaseQuantity(request.getColor(), request.getCottonPart(), request.getQuantity()) > 0) {
+            changePublisher.publish(request.getColor(), request.getCottonPart(), -request.getQuantity());
+            return createShippedResponse(request);
+        }
+        createInsufficientQuantityResponse(Sock.builder().color(sock.getColor()).cottonPart(sock.getCottonPart())
+                .quantity(sock.getQuantity()).reserved(sock.getReserved() - released).build(), request.getQuantity());
+        return "";
     }
 
-    private String processSockOutcome(Sock sock, int quantity) {
-        if (sock.getQuantity() >= quantity) {
-            sock.setQuantity(sock.getQuantity() - quantity);
-            repository.save(sock);
-            return String.format("Носки с цветом '%s' и содержанием хлопка %d%% были успешно отгружены.", sock.getColor(), sock.getCottonPart());
-        } else {
-            createInsufficientQuantityResponse(sock, quantity);
-            return "";
+    private String applyLedgerOutcome(CreateSockRequest request) {
+        StockLedger.Change change = stockLedger.apply(new SockKey(request.getColor(), request.getCottonPart()), -request.getQuantity());
+        if (change.applied()) {
+            return createShippedResponse(request);
         }
+        if (change.previous() == StockLedger.ABSENT) {
+            throw new NotFoundException(createNotFoundResponse(request));
+        }
+        createInsufficientQuantityResponse(Sock.builder().color(request.getColor()).cottonPart(request.getCottonPart())
+                .quantity((int) change.previous()).build(), request.getQuantity());
+        return "";
+    }
+
+    private String createShippedResponse(CreateSockRequest request) {
+        return String.format("Носки с цветом '%s' и содержанием хлопка %d%% были успешно отгружены.", request.getColor(), request.getCottonPart());
+    }
+
+    private String createNotFoundResponse(CreateSockRequest request) {
+        return String.format("Носков с цветом '%s' и содержанием хлопка %d%% на складе нет.", request.getColor(), request.getCottonPart());
     }
 
     private void createInsufficientQuantityResponse(Sock sock, int requestedQuantity) {
         String errorMsg = String.format("Недостаточно носков с цветом '%s' и содержанием хлопка %d%%." +
                         " Запрашиваемое количество: %d, доступное количество: %d",
-                sock.getColor(), sock.getCottonPart(), requestedQuantity, sock.getQuantity());
-        throw new BadRequestException(errorMsg);
+                sock.getColor(), sock.getCottonPart(), requestedQuantity, sock.getQuantity() - sock.getReserved());
+        throw new InsufficientStockException(errorMsg);
+    }
+
+    @Override
+    @DbBound
+    @WarehouseOperation("movements")
+    public MovementBatchResponse applyMovements(List<StockMovementRequest> movements) {
+        MovementBatch batch = MovementBatch.of(movements);
+        SortedMap<SockKey, Integer> changes = batch.changes();
+        Map<SockKey, MovementLineResult> failures = new HashMap<>();
+        if (stockLedger.isEnabled()) {
+            for (SockKey key : stockLedger.applyAll(changes)) {
+                long level = stockLedger.level(key);
+                failures.put(key, MovementBatch.failure(key, changes.get(key),
+                        level == StockLedger.ABSENT ? Optional.empty() : Optional.of(level)));
+            }
+            if (!failures.isEmpty()) {
+                throw batch.rejected(failures);
+            }
+            return batch.applied();
+        }
+        // Нарушение уникальности значит, что параллельный пакет успел создать одну из новых позиций, — пакет повторяется целиком.
+        return retryingExecutor.execute("movements", () -> {
+            transactionTemplate.executeWithoutResult(status -> {
+                failures.clear();
+                for (SockKey key : retryAfterExpiredHolds(changes, batchRepository.applyMovements(changes))) {
+                    failures.put(key, MovementBatch.failure(key, changes.get(key),
+                            repository.findByColorAndCottonPart(key.color(), key.cottonPart())
+                                    .map(sock -> (long) (sock.getQuantity() - sock.getReserved()))));
+                }
+                if (!failures.isEmpty()) {
+                    throw batch.rejected(failures);
+                }
+                changePublisher.publish(changes);
+            });
+            return batch.applied();
+        }, DataIntegrityViolationException.class);
+    }
+
+    /**
+     * Повторяет отклонённые движения позиций, у которых нашлись истёкшие, но ещё не снятые резервы.
+     *
+     * @return позиции, движения которых так и не применены
+     */
+    private Set<SockKey> retryAfterExpiredHolds(SortedMap<SockKey, Integer> changes, Set<SockKey> failed) {
+        SortedMap<SockKey, Integer> retry = new TreeMap<>();
+        for (SockKey key : failed) {
+            repository.findByColorAndCottonPart(key.color(), key.cottonPart())
+                    .filter(sock -> reservations.releaseExpired(sock.getId()) > 0)
+                    .ifPresent(sock -> retry.put(key, changes.get(key)));
+        }
+        if (retry.isEmpty()) {
+            return failed;
+        }
+        Set<SockKey> remaining = new TreeSet<>(failed);
+        remaining.removeAll(retry.keySet());
+        remaining.addAll(batchRepository.applyMovements(retry));
+        return remaining;
     }
 
     @Override
-    public Integer getSockCountByFilter(String color, String comparison, Integer cottonPart) {
-        return Optional.ofNullable(repository.countSocksByFilter(color, comparison, cottonPart)).orElse(0);
+    @DbBound
+    @WarehouseOperation("count")
+    public long getSockCountByFilter(String color, String comparison, Integer cottonPart) {
+        String normalizedColor = ColorNames.normalize(color);
+        Comparison operator = cottonPart == null ? null : Comparison.fromValue(comparison)
+                .orElseThrow(() -> new BadRequestException(String.format(
+                        "Некорректный оператор сравнения '%s'. Допустимые значения: moreThan, lessThan, equal.", comparison)));
+        if (stockIndex.isEnabled()) {
+            return stockIndex.count(normalizedColor, operator, cottonPart);
+        }
+        return countQueryCoalescer.count(Arrays.asList(normalizedColor, operator, cottonPart),
+                () -> sumQuantity(normalizedColor, operator, cottonPart));
+    }
+
+    private long sumQuantity(String color, Comparison operator, Integer cottonPart) {
+        if (cottonPart == null) {
+            return color == null ? repository.sumQuantity() : repository.sumQuantityByColor(color);
+        }
+        if (color == null) {
+            return switch (operator) {
+                case MORE_THAN -> repository.sumQuantityByCottonPartGreaterThan(cottonPart);
+                case LESS_THAN -> repository.sumQuantityByCottonPartLessThan(cottonPart);
+                case EQUAL -> repository.sumQuantityByCottonPartEquals(cottonPart);
+            };
+        }
+        return switch (operator) {
+            case MORE_THAN -> repository.sumQuantityByColorAndCottonPartGreaterThan(color, cottonPart);
+            case LESS_THAN -> repository.sumQuantityByColorAndCottonPartLessThan(color, cottonPart);
+            case EQUAL -> repository.sumQuantityByColorAndCottonPartEquals(color, cottonPart);
+        };
     }
 
 
     @Override
-    public String uploadSocksBatch(MultipartFile file) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String line;
-            int lineCounter = 0;
-            while ((line = reader.readLine()) != null) {
-                if (lineCounter++ == 0) {
-                    continue;
-                }
-                processSockData(line);
-            }
+    @DbBound
+    @WarehouseOperation("import")
+    public BatchUploadResponse uploadSocksBatch(MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return csvImporter.importCsv(inputStream);
         } catch (IOException e) {
             log.error("Ошибка при обработке файла", e);
             throw new RuntimeException(e);
         }
-        return "Партии носков успешно обработаны.";
     }
 
     @Override
+    @DbBound
+    @WarehouseOperation("import")
+    public BatchUploadResponse importSocks(InputStream inputStream, LongConsumer progress, Runnable onApplied) throws IOException {
+        return csvImporter.importCsv(inputStream, progress, onApplied);
+    }
+
+    @Override
+    @DbBound
+    @WarehouseOperation("update")
     public String updateSock(Long id, CreateSockRequest request) {
-        request.validate();
-        return repository.findById(id).map(sock -> {
+        normalize(request);
+        // PUT читает остаток из базы, поэтому в режиме реестра сначала сбрасывает его изменения и закрывает его на время записи.
+        return stockLedger.exclusive(() -> update(id, request));
+    }
+
+    private String update(Long id, CreateSockRequest request) {
+        // Чтение и запись — одна транзакция; устаревшая версия строки откатывает её, и попытка повторяется.
+        return retryingExecutor.execute("update", () -> transactionTemplate.execute(status -> {
+            Sock sock = repository.findById(id)
+                    .orElseThrow(() -> new NotFoundException(String.format("Носки с id %d не найдены.", id)));
+            if (request.getQuantity() < sock.getReserved()) {
+                throw new BadRequestException(String.format(
+                        "Количество не может быть меньше зарезервированного: %d.", sock.getReserved()));
+            }
+            colorDictionary.register(request.getColor());
+            String oldColor = sock.getColor();
+            int oldCottonPart = sock.getCottonPart();
+            int oldQuantity = sock.getQuantity();
             sock.setColor(request.getColor());
             sock.setCottonPart(request.getCottonPart());
             sock.setQuantity(request.getQuantity());
             repository.save(sock);
+            changePublisher.publish(oldColor, oldCottonPart, -oldQuantity);
+            changePublisher.publish(sock.getColor(), sock.getCottonPart(), sock.getQuantity());
+            // Резервы переезжают вместе с позицией.
+            if (sock.getReserved() > 0 && (!oldColor.equals(sock.getColor()) || oldCottonPart != sock.getCottonPart())) {
+                changePublisher.publishReserved(oldColor, oldCottonPart, -sock.getReserved());
+                changePublisher.publishReserved(sock.getColor(), sock.getCottonPart(), sock.getReserved());
+            }
             return "Параметры носков успешно обновлены.";
-        }).orElseThrow(() -> new NotFoundException(String.format("Носки с id %d не найдены.", id)));
+        }));
     }
 
     @Override
-    public List<Sock> filterSocks(int minCottonPart, int maxCottonPart, String sortBy) {
-        List<Sock> socks = repository.findByCottonPartBetween(minCottonPart, maxCottonPart);
-        if ("color".equalsIgnoreCase(sortBy)) {
-            socks.sort(Comparator.comparing(Sock::getColor));
-        } else if ("cottonPart".equalsIgnoreCase(sortBy)) {
-            socks.sort(Comparator.comparingInt(Sock::getCottonPart));
+    @DbBound
+    @WarehouseOperation("filter")
+    public SockPage filterSocks(int minCottonPart, int maxCottonPart, String sortBy, String after, Integer limit) {
+        if (SockPages.isUnpaged(limit, after)) {
+            return new SockPage(listingRepository.findAll(minCottonPart, maxCottonPart, SockSort.fromValue(sortBy)), null);
         }
-        return socks;
+        int pageSize = SockPages.pageSize(limit);
+        List<Sock> socks = listingRepository.findPage(minCottonPart, maxCottonPart, SockSort.fromValue(sortBy), SockPages.after(after), pageSize);
+        return SockPages.page(socks, pageSize);
     }
 
-
-    private void processSockData(String line) {
-        try {
-            String[] parts = line.split(",");
-            if (parts.length != 3) {
-                throw new IllegalArgumentException("Неверный формат CSV: ожидаются три поля.");
-            }
-            String color = parts[0].trim();
-            int cottonPart = Integer.parseInt(parts[1].trim());
-            int quantity = Integer.parseInt(parts[2].trim());
-            Optional<Sock> existingSock = repository.findByColorAndCottonPart(color, cottonPart);
-            Sock sock = existingSock.orElseGet(() ->
-                    Sock.builder().color(color).cottonPart(cottonPart).quantity(0).build()
-            );
-            sock.setQuantity(sock.getQuantity() + quantity);
-            repository.save(sock);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Ошибка преобразования числа.", e);
-        }
-    }
-
-    @PostConstruct
-    private void init() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader("data/sk.csv"))) {
-            String line;
-            int lineCounter = 0;
-            while ((line = reader.readLine()) != null) {
-                if (lineCounter++ == 0) {
-                    continue;
-                }
-                processSockData(line);
-            }
-        } catch (IOException e) {
-            log.error("Ошибка при инициализации данных", e);
-            throw e;
+    @Override
+    @DbBound
+    @WarehouseOperation("stream")
+    @Transactional(readOnly = true)
+    public void streamSocks(int minCottonPart, int maxCottonPart, String sortBy, Consumer<Sock> consumer) {
+        try (Stream<Sock> socks = listingRepository.stream(minCottonPart, maxCottonPart, SockSort.fromValue(sortBy))) {
+            socks.forEach(consumer);
         }
     }
 }
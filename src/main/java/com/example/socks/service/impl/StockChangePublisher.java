@@ -0,0 +1,92 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.model.SockKey;
+import com.example.socks.service.StockChangeListener;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Рассылает изменения остатков слушателям после фиксации транзакции и записывает их в историю движений.
+ * Изменения резервов рассылаются так же, но в историю не попадают: товар со склада не уходит.
+ */
+@Component
+@RequiredArgsConstructor
+public class StockChangePublisher {
+    private final List<StockChangeListener> listeners;
+    private final StockHistoryServiceImpl stockHistory;
+    private final InventoryVersion inventoryVersion;
+
+    public void publish(String color, int cottonPart, long delta) {
+        publish(Map.of(new SockKey(color, cottonPart), delta));
+    }
+
+    public void publish(Map<SockKey, ? extends Number> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        stockHistory.record(deltas);
+        afterCommit(() -> notifyListeners(deltas, StockChangeListener::onStockChanged));
+    }
+
+    public void publishReserved(String color, int cottonPart, long delta) {
+        publishReserved(Map.of(new SockKey(color, cottonPart), delta));
+    }
+
+    public void publishReserved(Map<SockKey, ? extends Number> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> notifyListeners(deltas, StockChangeListener::onReservedChanged));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Сообщает остальным слушателям об изменении, которое {@code source} уже применил у себя, — сразу, вне транзакции.
+     */
+    public void publishFrom(StockChangeListener source, Map<SockKey, ? extends Number> deltas) {
+        stockHistory.record(deltas);
+        for (StockChangeListener listener : listeners) {
+            if (listener != source) {
+                deltas.forEach((key, delta) -> listener.onStockChanged(key.color(), key.cottonPart(), delta.longValue()));
+            }
+        }
+        inventoryVersion.increment();
+    }
+
+    /**
+     * Изменения, уже разосланные через {@link #publishFrom}, записаны в базу и видны запросам к ней.
+     */
+    public void publishPersisted() {
+        inventoryVersion.increment();
+    }
+
+    private void notifyListeners(Map<SockKey, ? extends Number> deltas, Notification notification) {
+        for (StockChangeListener listener : listeners) {
+            deltas.forEach((key, delta) -> notification.send(listener, key.color(), key.cottonPart(), delta.longValue()));
+        }
+        // Версия меняется последней: прочитавший её уже увидит изменение и в индексе, и в базе.
+        inventoryVersion.increment();
+    }
+
+    @FunctionalInterface
+    private interface Notification {
+        void send(StockChangeListener listener, String color, int cottonPart, long delta);
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.dto.StockAtResponse;
+import com.example.socks.dto.StockLevel;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.model.ColorNames;
+import com.example.socks.model.SockKey;
+import com.example.socks.model.StockMovement;
+import com.example.socks.repository.ColorDictionary;
+import com.example.socks.repository.StockHistoryRepository;
+import com.example.socks.repository.StockHistoryRepository.Snapshot;
+import com.example.socks.service.DbBound;
+import com.example.socks.service.StockHistoryService;
+import com.example.socks.service.WarehouseOperation;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * История остатков: каждое изменение, прошедшее через {@link StockChangePublisher}, дописывается в {@code stock_movements}.
+ * Изменение внутри транзакции записывается в той же транзакции — движение и остаток фиксируются или откатываются вместе.
+ * Изменения реестра в памяти приходят вне транзакции и пишутся пакетами раз в {@code socks.history.flush-interval}.
+ * <p>
+ * Раз в {@code socks.history.snapshot-interval} движения сворачиваются в снимок на момент, отстающий от текущего
+ * на {@code socks.history.snapshot-lag}. Сворачиваются уже зафиксированные движения, поэтому транзакция, зафиксированная
+ * позже снимка, не теряется: её движения попадут в следующий снимок, а до него читаются отдельно. Отставание лишь делает
+ * такие движения редкими. Остаток на момент T — ближайший снимок не позже T плюс движения между ними
+ * и опоздавшие движения до T.
+ */
+@Service
+@Slf4j
+public class StockHistoryServiceImpl implements StockHistoryService {
+    private static final int FLUSH_BATCH_SIZE = 5000;
+
+    private final StockHistoryRepository historyRepository;
+    private final ColorDictionary colorDictionary;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration flushInterval;
+    private final Duration snapshotInterval;
+    private final Duration snapshotLag;
+    private final Queue<StockMovement> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    public StockHistoryServiceImpl(StockHistoryRepository historyRepository,
+                                   ColorDictionary colorDictionary,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${socks.history.enabled:true}") boolean enabled,
+                                   @Value("${socks.history.flush-interval:1s}") Duration flushInterval,
+                                   @Value("${socks.history.snapshot-interval:1h}") Duration snapshotInterval,
+                                   @Value("${socks.history.snapshot-lag:1m}") Duration snapshotLag) {
+        this.historyRepository = historyRepository;
+        this.colorDictionary = colorDictionary;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotLag = snapshotLag;
+        Gauge.builder("socks.history.pending", pendingCount, AtomicLong::get)
+                .description("Движения, ожидающие записи в журнал")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushNanos = flushInterval.toNanos();
+        scheduler.scheduleWithFixedDelay(this::scheduledFlush, flushNanos, flushNanos, TimeUnit.NANOSECONDS);
+        long snapshotNanos = snapshotInterval.toNanos();
+        scheduler.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotNanos, snapshotNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Записывает изменения остатков в журнал с текущим временем.
+     */
+    public void record(Map<SockKey, ? extends Number> deltas) {
+        if (!enabled || deltas.isEmpty()) {
+            return;
+        }
+        Instant occurredAt = Instant.now();
+        List<StockMovement> movements = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> {
+            if (delta.longValue() != 0) {
+                movements.add(new StockMovement(occurredAt, key, delta.longValue()));
+            }
+        });
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            historyRepository.insertMovements(movements);
+        } else {
+            pending.addAll(movements);
+            pendingCount.addAndGet(movements.size());
+        }
+    }
+
+    /**
+     * Записывает накопленные вне транзакций движения пакетами.
+     */
+    public synchronized void flush() {
+        while (true) {
+            List<StockMovement> batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+            StockMovement movement;
+            while (batch.size() < FLUSH_BATCH_SIZE && (movement = pending.poll()) != null) {
+                batch.add(movement);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> historyRepository.insertMovements(batch));
+            } catch (RuntimeException e) {
+                pending.addAll(batch);
+                throw e;
+            }
+            pendingCount.addAndGet(-batch.size());
+        }
+    }
+
+    /**
+     * Сворачивает движения до момента {@code at} в снимок.
+     *
+     * @return момент нового снимка или пустой результат, если снимок на этот момент или позже уже есть
+     */
+    public Optional<Instant> snapshot(Instant at) {
+        flush();
+        long started = System.nanoTime();
+        Optional<Snapshot> snapshot = transactionTemplate.execute(status -> historyRepository.createSnapshot(at));
+        snapshot.ifPresent(created -> log.info("Снимок остатков на {} создан за {} мс",
+                created.takenAt(), (System.nanoTime() - started) / 1_000_000));
+        return snapshot.map(Snapshot::takenAt);
+    }
+
+    @Override
+    @DbBound
+    @WarehouseOperation("history")
+    public StockAtResponse getStockAt(Instant timestamp, String color, Integer cottonPart) {
+        if (cottonPart != null && (cottonPart < 0 || cottonPart > 100)) {
+            throw new BadRequestException("Процентное содержание хлопка должно быть от 0 до 100");
+        }
+        Snapshot snapshot = historyRepository.findLatestSnapshot(timestamp)
+                .orElseThrow(() -> new BadRequestException(String.format("История остатков ведётся с %s.",
+                        historyRepository.findFirstSnapshot().map(Snapshot::takenAt).orElseThrow())));
+        Integer colorId = null;
+        if (color != null) {
+            colorId = colorDictionary.idOf(ColorNames.normalize(color));
+        }
+        List<StockLevel> levels = colorId != null && colorId == ColorDictionary.UNKNOWN
+                ? List.of()
+                : historyRepository.findLevels(snapshot, timestamp, colorId, cottonPart);
+        return new StockAtResponse(timestamp, snapshot.takenAt(), levels);
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка записи журнала движений, повтор через {}", flushInterval, e);
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot(Instant.now().minus(snapshotLag));
+        } catch (RuntimeException e) {
+            log.error("Ошибка создания снимка остатков, повтор через {}", snapshotInterval, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.model.Comparison;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.StockChangeListener;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Агрегированные остатки в памяти: для каждого цвета и для склада в целом хранится массив префиксных сумм
+ * по значениям хлопка 0..100, поэтому любой фильтр GET /api/socks вычисляется не более чем двумя чтениями массива.
+ * Хранится доступное количество — остаток минус действующие резервы.
+ * Строится после {@link StockLedger}: тот при старте дописывает в базу изменения из журнала.
+ */
+@Component
+@DependsOn("stockLedger")
+@Slf4j
+public class StockIndex implements StockChangeListener {
+    static final int COTTON_PARTS = 101;
+
+    private final SockRepository repository;
+    private final boolean enabled;
+    private final boolean verifyOnStartup;
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, long[]> prefixByColor = new ConcurrentHashMap<>();
+    private final long[] total = new long[COTTON_PARTS + 1];
+
+    public StockIndex(SockRepository repository,
+                      @Value("${socks.stock-index.enabled:true}") boolean enabled,
+                      @Value("${socks.stock-index.verify-on-startup:false}") boolean verifyOnStartup) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.verifyOnStartup = verifyOnStartup;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            prefixByColor.clear();
+            Arrays.fill(total, 0);
+            List<Sock> socks = repository.findAll();
+            for (Sock sock : socks) {
+                add(sock.getColor(), sock.getCottonPart(), sock.getQuantity() - sock.getReserved());
+            }
+            log.info("Индекс остатков построен: {} позиций, {} цветов", socks.size(), prefixByColor.size());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void onStockChanged(String color, int cottonPart, long delta) {
+        if (!enabled || delta == 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            add(color, cottonPart, delta);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void onReservedChanged(String color, int cottonPart, long delta) {
+        onStockChanged(color, cottonPart, -delta);
+    }
+
+    private void add(String color, int cottonPart, long delta) {
+        long[] prefix = prefixByColor.computeIfAbsent(color, key -> new long[COTTON_PARTS + 1]);
+        for (int i = cottonPart + 1; i <= COTTON_PARTS; i++) {
+            prefix[i] += delta;
+            total[i] += delta;
+        }
+    }
+
+    public long count(String color, Comparison comparison, Integer cottonPart) {
+        long stamp = lock.tryOptimisticRead();
+        long result = read(color, comparison, cottonPart);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = read(color, comparison, cottonPart);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    public long quantity(String color, int cottonPart) {
+        return count(color, Comparison.EQUAL, cottonPart);
+    }
+
+    private long read(String color, Comparison comparison, Integer cottonPart) {
+        long[] prefix = color == null ? total : prefixByColor.get(color);
+        if (prefix == null) {
+            return 0;
+        }
+        if (cottonPart == null) {
+            return prefix[COTTON_PARTS];
+        }
+        return switch (comparison) {
+            case LESS_THAN -> prefix[clamp(cottonPart)];
+            case MORE_THAN -> prefix[COTTON_PARTS] - prefix[clamp(cottonPart + 1)];
+            case EQUAL -> cottonPart < 0 || cottonPart >= COTTON_PARTS ? 0 : prefix[cottonPart + 1] - prefix[cottonPart];
+        };
+    }
+
+    private static int clamp(int position) {
+        return Math.max(0, Math.min(COTTON_PARTS, position));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyOnStartup() {
+        if (verifyOnStartup) {
+            verify();
+        }
+    }
+
+    /**
+     * Сверяет индекс с базой через countSocksByFilter: итог по каждому цвету и по каждому значению хлопка.
+     *
+     * @return описание расхождений, пустой список — индекс согласован
+     */
+    public List<String> verify() {
+        List<String> mismatches = new ArrayList<>();
+        if (!enabled) {
+            return mismatches;
+        }
+        List<String> colors = new ArrayList<>(prefixByColor.keySet());
+        colors.add(null);
+        for (String color : colors) {
+            compare(mismatches, color, null, null);
+        }
+        for (int cottonPart = 0; cottonPart < COTTON_PARTS; cottonPart++) {
+            compare(mismatches, null, Comparison.EQUAL, cottonPart);
+        }
+        if (!mismatches.isEmpty()) {
+            log.warn("Индекс остатков расходится с базой: {}", mismatches);
+        }
+        return mismatches;
+    }
+
+    private void compare(List<String> mismatches, String color, Comparison comparison, Integer cottonPart) {
+        long expected = Objects.requireNonNullElse(repository.countSocksByFilter(color,
+                comparison == null ? null : comparison.getValue(), cottonPart), 0L);
+        long actual = count(color, comparison, cottonPart);
+        if (expected != actual) {
+            mismatches.add(String.format("color=%s comparison=%s cottonPart=%s: база %d, индекс %d",
+                    color, comparison == null ? null : comparison.getValue(), cottonPart, expected, actual));
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.repository.SockBatchRepository;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.StockChangeListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Остатки в памяти для пиковых нагрузок ({@code socks.ledger.enabled}). Приход, отгрузка и пакетные движения
+ * проверяются и применяются здесь под блокировкой полосы, к которой относится позиция, записываются в журнал
+ * и раз в {@code socks.ledger.flush-interval} сбрасываются в таблицу socks суммарными изменениями по позициям.
+ * Изменения, записанные в базу в обход реестра (импорт, начальное заполнение, PUT), приходят как {@link StockChangeListener}.
+ * В памяти хранится доступное количество: резервы, оставшиеся в базе, вычитаются при загрузке и возвращаются
+ * при их снятии или истечении, поэтому отгрузка из реестра не забирает зарезервированное.
+ * <p>
+ * При старте сегменты журнала, не попавшие в базу, применяются заново. Номер последнего применённого сегмента
+ * хранится в {@code ledger_checkpoint} и обновляется в одной транзакции с изменениями, поэтому повтор не удваивает их.
+ */
+@Component
+@Slf4j
+public class StockLedger implements StockChangeListener {
+    public static final long ABSENT = -1;
+
+    private final SockRepository repository;
+    private final SockBatchRepository batchRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<StockChangePublisher> changePublisher;
+    private final boolean enabled;
+    private final Path journalDirectory;
+    private final Duration flushInterval;
+    private final Stripe[] stripes;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Timer flushTimer;
+    private LedgerJournal journal;
+    private ScheduledExecutorService flusher;
+
+    public StockLedger(SockRepository repository,
+                       SockBatchRepository batchRepository,
+                       JdbcTemplate jdbcTemplate,
+                       TransactionTemplate transactionTemplate,
+                       ObjectProvider<StockChangePublisher> changePublisher,
+                       MeterRegistry meterRegistry,
+                       @Value("${socks.ledger.enabled:false}") boolean enabled,
+                       @Value("${socks.ledger.journal-dir:data/ledger}") Path journalDirectory,
+                       @Value("${socks.ledger.stripes:64}") int stripes,
+                       @Value("${socks.ledger.flush-interval:200ms}") Duration flushInterval) {
+        this.repository = repository;
+        this.batchRepository = batchRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.changePublisher = changePublisher;
+        this.enabled = enabled;
+        this.journalDirectory = journalDirectory;
+        this.flushInterval = flushInterval;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.flushTimer = Timer.builder("socks.ledger.flush")
+                .description("Сброс изменений реестра остатков в базу")
+                .register(meterRegistry);
+        Gauge.builder("socks.ledger.pending", this, StockLedger::pendingPositions)
+                .description("Позиции с изменениями, ещё не записанными в базу")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long checkpoint = checkpoint();
+        long last = checkpoint;
+        Map<SockKey, Long> replay = new HashMap<>();
+        for (long segment : LedgerJournal.segments(journalDirectory)) {
+            if (segment > checkpoint) {
+                LedgerJournal.read(journalDirectory, segment).forEach((key, delta) -> replay.merge(key, delta, Long::sum));
+            }
+            last = Math.max(last, segment);
+        }
+        if (last > checkpoint) {
+            persist(replay, last);
+            log.info("Из журнала реестра восстановлены изменения {} позиций (сегменты {}..{})", replay.size(), checkpoint + 1, last);
+        }
+        journal = new LedgerJournal(journalDirectory, last + 1);
+        deleteDurable(last);
+        load();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = flushInterval.toNanos();
+        flusher.scheduleWithFixedDelay(this::scheduledFlush, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Перечитывает остатки из базы; ещё не сброшенные изменения сохраняются.
+     */
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        lockAll();
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.levels.clear();
+            }
+            for (Sock sock : repository.findAll()) {
+                SockKey key = new SockKey(sock.getColor(), sock.getCottonPart());
+                Stripe stripe = stripe(key);
+                stripe.levels.put(key, new long[]{sock.getQuantity() - sock.getReserved() + stripe.pending.getOrDefault(key, 0L)});
+            }
+            for (Stripe stripe : stripes) {
+                stripe.pending.forEach((key, delta) -> stripe.levels.computeIfAbsent(key, k -> new long[]{delta}));
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Применяет изменение, если остаток останется в пределах 0..Integer.MAX_VALUE.
+     */
+    public Change apply(SockKey key, long delta) {
+        Stripe stripe = stripe(key);
+        long previous;
+        stripe.lock.lock();
+        try {
+            long[] level = stripe.levels.get(key);
+            previous = level == null ? ABSENT : level[0];
+            if (!fits(previous, delta)) {
+                return new Change(previous, false);
+            }
+            journal.append(Map.of(key, delta));
+            stripe.add(key, level, delta);
+        } finally {
+            stripe.lock.unlock();
+        }
+        changePublisher.getObject().publishFrom(this, Map.of(key, delta));
+        return new Change(previous, true);
+    }
+
+    /**
+     * Применяет все изменения пакета или ни одного.
+     *
+     * @return позиции, изменение которых не помещается в остаток; пусто, если пакет применён
+     */
+    public Set<SockKey> applyAll(SortedMap<SockKey, Integer> deltas) {
+        int[] order = deltas.keySet().stream().mapToInt(this::stripeIndex).distinct().sorted().toArray();
+        for (int index : order) {
+            stripes[index].lock.lock();
+        }
+        try {
+            Set<SockKey> failed = new TreeSet<>();
+            deltas.forEach((key, delta) -> {
+                long[] level = stripe(key).levels.get(key);
+                if (!fits(level == null ? ABSENT : level[0], delta)) {
+                    failed.add(key);
+                }
+            });
+            if (!failed.isEmpty()) {
+                return failed;
+            }
+            Map<SockKey, Long> journaled = new HashMap<>();
+            deltas.forEach((key, delta) -> journaled.put(key, delta.longValue()));
+            journal.append(journaled);
+            deltas.forEach((key, delta) -> {
+                Stripe stripe = stripe(key);
+                stripe.add(key, stripe.levels.get(key), delta);
+            });
+        } finally {
+            for (int i = order.length - 1; i >= 0; i--) {
+                stripes[order[i]].lock.unlock();
+            }
+        }
+        changePublisher.getObject().publishFrom(this, deltas);
+        return Set.of();
+    }
+
+    public long level(SockKey key) {
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            long[] level = stripe.levels.get(key);
+            return level == null ? ABSENT : level[0];
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Изменение, уже записанное в базу в обход реестра: меняется только остаток в памяти.
+     */
+    @Override
+    public void onStockChanged(String color, int cottonPart, long delta) {
+        if (!enabled || delta == 0) {
+            return;
+        }
+        SockKey key = new SockKey(color, cottonPart);
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            long[] level = stripe.levels.get(key);
+            if (level == null) {
+                stripe.levels.put(key, new long[]{delta});
+            } else {
+                level[0] += delta;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void onReservedChanged(String color, int cottonPart, long delta) {
+        onStockChanged(color, cottonPart, -delta);
+    }
+
+    /**
+     * Сбрасывает накопленные изменения в базу и выполняет {@code action}, пока реестр закрыт для изменений.
+     * Для операций, которые пишут в базу напрямую и читают из неё текущий остаток (PUT).
+     */
+    public <T> T exclusive(Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        flushLock.lock();
+        try {
+            flush();
+            lockAll();
+            try {
+                return action.get();
+            } finally {
+                unlockAll();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            Map<SockKey, Long> deltas = new HashMap<>();
+            long segment;
+            lockAll();
+            try {
+                for (Stripe stripe : stripes) {
+                    deltas.putAll(stripe.pending);
+                }
+                if (deltas.isEmpty()) {
+                    return;
+                }
+                segment = journal.rotate();
+                for (Stripe stripe : stripes) {
+                    stripe.pending = new HashMap<>();
+                }
+            } finally {
+                unlockAll();
+            }
+            try {
+                flushTimer.record(() -> persist(deltas, segment));
+            } catch (RuntimeException e) {
+                // Изменения возвращаются в очередь; их сегменты остаются в журнале до удачного сброса.
+                lockAll();
+                try {
+                    deltas.forEach((key, delta) -> stripe(key).pending.merge(key, delta, Long::sum));
+                } finally {
+                    unlockAll();
+                }
+                throw e;
+            }
+            changePublisher.getObject().publishPersisted();
+            deleteDurable(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка сброса реестра остатков в базу, повтор через {}", flushInterval, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        journal.close();
+    }
+
+    private void persist(Map<SockKey, Long> deltas, long segment) {
+        Map<SockKey, Integer> changes = new HashMap<>(deltas.size() * 2);
+        deltas.forEach((key, delta) -> {
+            if (delta != 0) {
+                changes.put(key, Math.toIntExact(delta));
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            batchRepository.upsertQuantities(changes);
+            jdbcTemplate.update("UPDATE ledger_checkpoint SET segment = ? WHERE id = 1", segment);
+        });
+    }
+
+    /**
+     * Удаляет сегменты журнала до {@code segment} включительно только после того, как база записала их изменения
+     * на диск: при отложенной записи H2 ({@code WRITE_DELAY} в профиле prod) зафиксированная транзакция ещё может
+     * пропасть при падении процесса, и тогда её изменения восстанавливаются из этих сегментов.
+     */
+    private void deleteDurable(long segment) throws IOException {
+        jdbcTemplate.execute("CHECKPOINT SYNC");
+        journal.deleteUpTo(segment);
+    }
+
+    private long checkpoint() {
+        Long segment = jdbcTemplate.queryForObject("SELECT segment FROM ledger_checkpoint WHERE id = 1", Long.class);
+        return segment == null ? 0 : segment;
+    }
+
+    private static boolean fits(long previous, long delta) {
+        long next = Math.max(previous, 0) + delta;
+        return next >= 0 && next <= Integer.MAX_VALUE;
+    }
+
+    private int pendingPositions() {
+        int positions = 0;
+        for (Stripe stripe : stripes) {
+            positions += stripe.pending.size();
+        }
+        return positions;
+    }
+
+    private int stripeIndex(SockKey key) {
+        return Math.floorMod(key.hashCode(), stripes.length);
+    }
+
+    private Stripe stripe(SockKey key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    /**
+     * @param previous остаток до изменения или {@link #ABSENT}, если позиции не было
+     * @param applied  применено ли изменение
+     */
+    public record Change(long previous, boolean applied) {
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<SockKey, long[]> levels = new HashMap<>();
+        private Map<SockKey, Long> pending = new HashMap<>();
+
+        private void add(SockKey key, long[] level, long delta) {
+            if (level == null) {
+                levels.put(key, new long[]{delta});
+            } else {
+                level[0] += delta;
+            }
+            pending.merge(key, delta, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.service.StockChangeListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Счётчик {@code socks.stock.units}: сколько единиц принято ({@code direction=in}) и отгружено ({@code direction=out}).
+ */
+@Component
+public class StockMovementMetrics implements StockChangeListener {
+    private final Counter unitsIn;
+    private final Counter unitsOut;
+
+    public StockMovementMetrics(MeterRegistry meterRegistry) {
+        this.unitsIn = Counter.builder("socks.stock.units")
+                .description("Единицы товара, прошедшие через склад")
+                .tag("direction", "in")
+                .register(meterRegistry);
+        this.unitsOut = Counter.builder("socks.stock.units")
+                .description("Единицы товара, прошедшие через склад")
+                .tag("direction", "out")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onStockChanged(String color, int cottonPart, long delta) {
+        if (delta > 0) {
+            unitsIn.increment(delta);
+        } else if (delta < 0) {
+            unitsOut.increment(-delta);
+        }
+    }
+}
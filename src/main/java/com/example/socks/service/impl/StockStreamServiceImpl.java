@@ -0,0 +1,306 @@
+package com.example.socks.service.impl;
+
+import com.example.socks.dto.StockLevel;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.ServiceUnavailableException;
+import com.example.socks.model.ColorNames;
+import com.example.socks.model.Comparison;
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.StockChangeListener;
+import com.example.socks.service.StockStreamService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поток изменений остатков по SSE вместо опроса. Изменённые позиции копятся между тактами ({@code socks.stream.interval});
+ * за такт по каждой позиции читается текущий остаток, событие сериализуется один раз и раздаётся подписчикам,
+ * чей фильтр оно проходит. Подписчик получает за такт одно событие {@code stock} — массив изменённых позиций.
+ * <p>
+ * Пока подписчику идёт отправка, новые изменения накапливаются в его буфере и схлопываются по позиции: клиент получает
+ * последний остаток, а не каждое изменение. Если за время отправки в буфере накопилось больше
+ * {@code socks.stream.buffer-size} позиций, подписчик слишком медленный и отключается; клиент переподключается и перечитывает остатки запросом количества.
+ */
+@Service
+@Slf4j
+public class StockStreamServiceImpl implements StockStreamService, StockChangeListener {
+    private final StockIndex stockIndex;
+    private final SockRepository repository;
+    private final ObjectMapper objectMapper;
+    private final int maxSubscribers;
+    private final int bufferSize;
+    private final Duration interval;
+    private final Duration heartbeat;
+    private final Duration timeout;
+    private final int senderThreads;
+    private final Set<SockKey> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter eventsSent;
+    private final Counter eventsConflated;
+    private final Counter subscribersDropped;
+    private ScheduledExecutorService dispatcher;
+    private ExecutorService senders;
+
+    public StockStreamServiceImpl(StockIndex stockIndex,
+                                  SockRepository repository,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${socks.stream.max-subscribers:20000}") int maxSubscribers,
+                                  @Value("${socks.stream.buffer-size:1000}") int bufferSize,
+                                  @Value("${socks.stream.interval:200ms}") Duration interval,
+                                  @Value("${socks.stream.heartbeat:15s}") Duration heartbeat,
+                                  @Value("${socks.stream.timeout:30m}") Duration timeout,
+                                  @Value("${socks.stream.sender-threads:4}") int senderThreads) {
+        this.stockIndex = stockIndex;
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.interval = interval;
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+        this.senderThreads = senderThreads;
+        this.eventsSent = Counter.builder("socks.stream.events")
+                .description("Изменения позиций, отправленные подписчикам")
+                .tag("result", "sent")
+                .register(meterRegistry);
+        this.eventsConflated = Counter.builder("socks.stream.events")
+                .description("Изменения позиций, отправленные подписчикам")
+                .tag("result", "conflated")
+                .register(meterRegistry);
+        this.subscribersDropped = Counter.builder("socks.stream.dropped")
+                .description("Подписчики, отключённые за отставание")
+                .register(meterRegistry);
+        Gauge.builder("socks.stream.subscribers", subscribers, Set::size)
+                .description("Подключённые подписчики потока изменений")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threads = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "stock-stream-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-stream-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = interval.toNanos();
+        dispatcher.scheduleWithFixedDelay(this::dispatch, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        long heartbeatNanos = heartbeat.toNanos();
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatNanos, heartbeatNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public SseEmitter subscribe(String color, String comparison, Integer cottonPart) {
+        Comparison operator = cottonPart == null ? null : Comparison.fromValue(comparison)
+                .orElseThrow(() -> new BadRequestException(String.format(
+                        "Некорректный оператор сравнения '%s'. Допустимые значения: moreThan, lessThan, equal.", comparison)));
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ServiceUnavailableException("Достигнуто максимальное число подписчиков потока изменений, повторите позже.");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, ColorNames.normalize(color), operator, cottonPart);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        try {
+            // Заголовки уходят клиенту сразу, не дожидаясь первого изменения.
+            emitter.send(SseEmitter.event().comment("подписка оформлена").reconnectTime(interval.toMillis() * 5));
+        } catch (IOException e) {
+            subscribers.remove(subscriber);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @Override
+    public void onStockChanged(String color, int cottonPart, long delta) {
+        if (!subscribers.isEmpty()) {
+            changed.add(new SockKey(color, cottonPart));
+        }
+    }
+
+    @Override
+    public void onReservedChanged(String color, int cottonPart, long delta) {
+        onStockChanged(color, cottonPart, -delta);
+    }
+
+    private void dispatch() {
+        try {
+            if (changed.isEmpty()) {
+                return;
+            }
+            List<Event> events = new ArrayList<>();
+            for (Iterator<SockKey> iterator = changed.iterator(); iterator.hasNext(); ) {
+                SockKey key = iterator.next();
+                iterator.remove();
+                StockLevel level = new StockLevel(key.color(), key.cottonPart(), quantity(key));
+                events.add(new Event(key, objectMapper.writeValueAsString(level)));
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(events);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.error("Ошибка рассылки изменений остатков", e);
+        }
+    }
+
+    private long quantity(SockKey key) {
+        if (stockIndex.isEnabled()) {
+            return stockIndex.quantity(key.color(), key.cottonPart());
+        }
+        return repository.findByColorAndCottonPart(key.color(), key.cottonPart()).map(sock -> sock.getQuantity() - sock.getReserved()).orElse(0);
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.ping();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private record Event(SockKey key, String json) {
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final String color;
+        private final Comparison comparison;
+        private final Integer cottonPart;
+        private Map<SockKey, String> pending = new LinkedHashMap<>();
+        private boolean sending;
+        private boolean pingDue;
+        private boolean dropped;
+
+        private Subscriber(SseEmitter emitter, String color, Comparison comparison, Integer cottonPart) {
+            this.emitter = emitter;
+            this.color = color;
+            this.comparison = comparison;
+            this.cottonPart = cottonPart;
+        }
+
+        private boolean matches(SockKey key) {
+            if (color != null && !color.equals(key.color())) {
+                return false;
+            }
+            if (cottonPart == null) {
+                return true;
+            }
+            return switch (comparison) {
+                case MORE_THAN -> key.cottonPart() > cottonPart;
+                case LESS_THAN -> key.cottonPart() < cottonPart;
+                case EQUAL -> key.cottonPart() == cottonPart;
+            };
+        }
+
+        private synchronized void offer(List<Event> events) {
+            if (dropped) {
+                return;
+            }
+            for (Event event : events) {
+                if (matches(event.key()) && pending.put(event.key(), event.json()) != null) {
+                    eventsConflated.increment();
+                }
+            }
+            if (sending && pending.size() > bufferSize) {
+                // Отправка идёт, но не успевает: отключаем после её завершения, чтобы не блокировать рассылку.
+                // Свободному подписчику даже большой всплеск уходит одним событием.
+                dropped = true;
+                pending.clear();
+                subscribers.remove(this);
+                subscribersDropped.increment();
+                return;
+            }
+            schedule();
+        }
+
+        private synchronized void ping() {
+            pingDue = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (!sending && (!pending.isEmpty() || pingDue)) {
+                sending = true;
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Map<SockKey, String> batch;
+                boolean ping;
+                synchronized (this) {
+                    if (dropped || (pending.isEmpty() && !pingDue)) {
+                        sending = false;
+                        if (dropped) {
+                            emitter.complete();
+                        }
+                        return;
+                    }
+                    batch = pending;
+                    ping = pingDue;
+                    pending = new LinkedHashMap<>();
+                    pingDue = false;
+                }
+                try {
+                    if (!batch.isEmpty()) {
+                        emitter.send(SseEmitter.event().name("stock").data("[" + String.join(",", batch.values()) + "]"));
+                        eventsSent.increment(batch.size());
+                    } else if (ping) {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Клиент отключился.
+                    subscribers.remove(this);
+                    synchronized (this) {
+                        dropped = true;
+                        sending = false;
+                    }
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.socks.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Хешированное колесо таймеров. Время делится на такты длиной {@code tick}, ключ попадает в ячейку
+ * {@code такт % size} своего срока; ключи со сроком дальше одного оборота лежат в той же ячейке и ждут своего такта.
+ * Постановка и отмена — O(1), продвижение просматривает только ячейки прошедших тактов, а не все ключи.
+ * Срок округляется вверх до такта: ключ никогда не срабатывает раньше срока и не позже чем через такт после него.
+ */
+public class TimerWheel<K> {
+    private final long tickMillis;
+    private final List<Set<K>> buckets;
+    private final Map<K, Long> deadlineTicks = new HashMap<>();
+    private long currentTick;
+
+    public TimerWheel(Duration tick, int size, Instant start) {
+        if (tick.toMillis() <= 0 || size <= 0) {
+            throw new IllegalArgumentException("Длина такта и число ячеек колеса должны быть положительными");
+        }
+        this.tickMillis = tick.toMillis();
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new HashSet<>());
+        }
+        this.currentTick = Math.floorDiv(start.toEpochMilli(), tickMillis);
+    }
+
+    /**
+     * Ставит ключ на срок {@code deadline}; уже стоящий ключ переносится. Прошедший срок сработает на следующем такте.
+     */
+    public synchronized void schedule(K key, Instant deadline) {
+        cancel(key);
+        long tick = Math.max(-Math.floorDiv(-deadline.toEpochMilli(), tickMillis), currentTick + 1);
+        deadlineTicks.put(key, tick);
+        bucket(tick).add(key);
+    }
+
+    public synchronized boolean cancel(K key) {
+        Long tick = deadlineTicks.remove(key);
+        if (tick == null) {
+            return false;
+        }
+        bucket(tick).remove(key);
+        return true;
+    }
+
+    /**
+     * Продвигает колесо до {@code now}.
+     *
+     * @return ключи, срок которых наступил; они снимаются с колеса
+     */
+    public synchronized List<K> advance(Instant now) {
+        long target = Math.floorDiv(now.toEpochMilli(), tickMillis);
+        List<K> expired = new ArrayList<>();
+        // За один оборот просматривается каждая ячейка, поэтому после долгой паузы обходить больше не нужно.
+        long last = Math.min(target, currentTick + buckets.size());
+        for (long tick = currentTick + 1; tick <= last; tick++) {
+            for (Iterator<K> keys = bucket(tick).iterator(); keys.hasNext(); ) {
+                K key = keys.next();
+                if (deadlineTicks.get(key) <= target) {
+                    keys.remove();
+                    deadlineTicks.remove(key);
+                    expired.add(key);
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, target);
+        return expired;
+    }
+
+    public synchronized int size() {
+        return deadlineTicks.size();
+    }
+
+    private Set<K> bucket(long tick) {
+        return buckets.get((int) Math.floorMod(tick, buckets.size()));
+    }
+}
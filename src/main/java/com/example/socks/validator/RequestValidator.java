@@ -1,5 +1,6 @@
 package com.example.socks.validator;
 
+import com.example.socks.dto.CreateReservationRequest;
 import com.example.socks.dto.CreateSockRequest;
 import com.example.socks.exception.RequestValidatorException;
 
@@ -16,5 +17,19 @@ public class RequestValidator {
             throw new RequestValidatorException("Количество носков для заказа должно быть неотрицательным");
         }
     }
-}
 
+    public void validateReservation(CreateReservationRequest request) {
+        if (request == null) {
+            throw new RequestValidatorException("Запрос не может быть null");
+        }
+        if (request.getCottonPart() < 0 || request.getCottonPart() > 100) {
+            throw new RequestValidatorException("Процентное содержание хлопка должно быть от 0 до 100");
+        }
+        if (request.getQuantity() <= 0) {
+            throw new RequestValidatorException("Количество носков для резерва должно быть положительным");
+        }
+        if (request.getTtlSeconds() != null && request.getTtlSeconds() <= 0) {
+            throw new RequestValidatorException("Время жизни резерва должно быть положительным");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package db.migration;
+
+import com.example.socks.model.ColorNames;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Переводит socks.color в словарь colors. Цвета нормализуются так же, как на входе в приложение
+ * (поэтому миграция на Java, а не на SQL), позиции, совпавшие после нормализации, сливаются в одну.
+ */
+public class V4__color_dictionary extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE colors ("
+                    + "id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "name VARCHAR(255) NOT NULL, "
+                    + "CONSTRAINT ux_colors_name UNIQUE (name))");
+            statement.execute("ALTER TABLE socks ADD COLUMN color_id INTEGER");
+        }
+
+        List<String> colors = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT DISTINCT color FROM socks")) {
+            while (rs.next()) {
+                colors.add(rs.getString(1));
+            }
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO colors (name) VALUES (?)", new String[]{"id"});
+             PreparedStatement update = connection.prepareStatement("UPDATE socks SET color_id = ? WHERE color IS NOT DISTINCT FROM ?")) {
+            for (String color : colors) {
+                String name = color == null ? "" : ColorNames.normalize(color);
+                Integer id = ids.get(name);
+                if (id == null) {
+                    insert.setString(1, name);
+                    insert.executeUpdate();
+                    try (ResultSet keys = insert.getGeneratedKeys()) {
+                        keys.next();
+                        id = keys.getInt(1);
+                    }
+                    ids.put(name, id);
+                }
+                update.setInt(1, id);
+                update.setString(2, color);
+                update.executeUpdate();
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UPDATE socks s SET quantity = (SELECT SUM(t.quantity) FROM socks t "
+                    + "WHERE t.color_id = s.color_id AND t.cotton_part = s.cotton_part) "
+                    + "WHERE s.id IN (SELECT MIN(id) FROM socks GROUP BY color_id, cotton_part HAVING COUNT(*) > 1)");
+            statement.execute("DELETE FROM socks WHERE id NOT IN (SELECT MIN(id) FROM socks GROUP BY color_id, cotton_part)");
+            statement.execute("DROP INDEX ux_socks_color_cotton_part");
+            statement.execute("DROP INDEX ix_socks_cotton_part_color");
+            statement.execute("ALTER TABLE socks DROP COLUMN color");
+            statement.execute("ALTER TABLE socks ALTER COLUMN color_id SET NOT NULL");
+            statement.execute("ALTER TABLE socks ADD CONSTRAINT fk_socks_color FOREIGN KEY (color_id) REFERENCES colors (id)");
+            statement.execute("CREATE UNIQUE INDEX ux_socks_color_cotton_part ON socks (color_id, cotton_part)");
+            statement.execute("CREATE INDEX ix_socks_cotton_part_color ON socks (cotton_part, color_id)");
+        }
+    }
+}
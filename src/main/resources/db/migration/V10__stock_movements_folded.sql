@@ -0,0 +1,12 @@
+-- Движение помечается снимком, в который свёрнуто. Свёртка берёт все зафиксированные и ещё не свёрнутые движения,
+-- поэтому транзакция, зафиксированная позже снимка своего времени, попадает в следующий снимок, а не теряется.
+ALTER TABLE stock_movements ADD COLUMN snapshot_id BIGINT;
+
+-- Снимок, в который движение свёрнуто с опозданием: его время не позже предыдущего снимка.
+ALTER TABLE stock_movements ADD COLUMN late_snapshot_id BIGINT;
+
+UPDATE stock_movements m
+SET snapshot_id = (SELECT MIN(s.id) FROM stock_snapshots s WHERE s.taken_at >= m.occurred_at);
+
+CREATE INDEX ix_stock_movements_snapshot ON stock_movements (snapshot_id, occurred_at);
+CREATE INDEX ix_stock_movements_late ON stock_movements (late_snapshot_id, occurred_at);
@@ -0,0 +1,16 @@
+-- Задания фонового импорта CSV. Уникальный SHA-256 — ключ идемпотентности: повтор загрузки после перезапуска
+-- или после того, как задание ушло из памяти, находит прошлое задание, а не импортирует файл ещё раз.
+CREATE TABLE import_jobs (
+    id            VARCHAR(36)  PRIMARY KEY,
+    sha256        CHAR(64)     NOT NULL,
+    file_name     VARCHAR(255),
+    bytes_total   BIGINT       NOT NULL,
+    status        VARCHAR(16)  NOT NULL,
+    submitted_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    finished_at   TIMESTAMP(6) WITH TIME ZONE,
+    rows_read     BIGINT,
+    rows_applied  BIGINT,
+    rows_rejected BIGINT,
+    error         VARCHAR,
+    CONSTRAINT uq_import_jobs_sha256 UNIQUE (sha256)
+);
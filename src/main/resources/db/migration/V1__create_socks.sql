@@ -0,0 +1,9 @@
+CREATE SEQUENCE socks_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE socks (
+    id          BIGINT       NOT NULL,
+    color       VARCHAR(255),
+    cotton_part INTEGER      NOT NULL,
+    quantity    INTEGER      NOT NULL,
+    CONSTRAINT pk_socks PRIMARY KEY (id)
+);
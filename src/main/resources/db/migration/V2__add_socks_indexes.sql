@@ -0,0 +1,3 @@
+CREATE UNIQUE INDEX ux_socks_color_cotton_part ON socks (color, cotton_part);
+
+CREATE INDEX ix_socks_cotton_part ON socks (cotton_part);
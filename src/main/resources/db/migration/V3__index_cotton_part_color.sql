@@ -0,0 +1,3 @@
+DROP INDEX ix_socks_cotton_part;
+
+CREATE INDEX ix_socks_cotton_part_color ON socks (cotton_part, color);
@@ -0,0 +1 @@
+ALTER TABLE socks ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,6 @@
+CREATE TABLE ledger_checkpoint (
+    id      INTEGER PRIMARY KEY,
+    segment BIGINT  NOT NULL
+);
+
+INSERT INTO ledger_checkpoint (id, segment) VALUES (1, 0);
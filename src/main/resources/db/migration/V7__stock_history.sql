@@ -0,0 +1,34 @@
+CREATE TABLE stock_movements (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    occurred_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    color_id    INTEGER NOT NULL,
+    cotton_part INTEGER NOT NULL,
+    delta       BIGINT  NOT NULL,
+    CONSTRAINT fk_stock_movements_color FOREIGN KEY (color_id) REFERENCES colors (id)
+);
+
+CREATE INDEX ix_stock_movements_occurred_at ON stock_movements (occurred_at);
+CREATE INDEX ix_stock_movements_sku ON stock_movements (color_id, cotton_part, occurred_at);
+
+CREATE TABLE stock_snapshots (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    taken_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT ux_stock_snapshots_taken_at UNIQUE (taken_at)
+);
+
+CREATE TABLE stock_snapshot_items (
+    snapshot_id BIGINT  NOT NULL,
+    color_id    INTEGER NOT NULL,
+    cotton_part INTEGER NOT NULL,
+    quantity    BIGINT  NOT NULL,
+    CONSTRAINT pk_stock_snapshot_items PRIMARY KEY (snapshot_id, color_id, cotton_part),
+    CONSTRAINT fk_stock_snapshot_items_snapshot FOREIGN KEY (snapshot_id) REFERENCES stock_snapshots (id)
+);
+
+-- История начинается с текущих остатков: они становятся первым снимком.
+INSERT INTO stock_snapshots (id, taken_at) VALUES (1, CURRENT_TIMESTAMP(6));
+
+INSERT INTO stock_snapshot_items (snapshot_id, color_id, cotton_part, quantity)
+SELECT 1, color_id, cotton_part, quantity FROM socks WHERE quantity <> 0;
+
+ALTER TABLE stock_snapshots ALTER COLUMN id RESTART WITH 2;
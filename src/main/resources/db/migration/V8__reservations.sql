@@ -0,0 +1,10 @@
+ALTER TABLE socks ADD COLUMN reserved INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE socks ADD CONSTRAINT ck_socks_reserved CHECK (reserved >= 0);
+
+CREATE TABLE reservations (
+    id         VARCHAR(36) PRIMARY KEY,
+    sock_id    BIGINT  NOT NULL,
+    quantity   INTEGER NOT NULL,
+    expires_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT fk_reservations_sock FOREIGN KEY (sock_id) REFERENCES socks (id)
+);
@@ -0,0 +1 @@
+ALTER TABLE socks ADD CONSTRAINT ck_socks_reserved_quantity CHECK (quantity >= reserved);
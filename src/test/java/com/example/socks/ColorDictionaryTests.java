@@ -0,0 +1,90 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.ColorDictionary;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.SockCsvImporter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class ColorDictionaryTests {
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockCsvImporter importer;
+
+    @Autowired
+    private SockRepository repository;
+
+    @Autowired
+    private ColorDictionary colorDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void spellingsOfOneColorShareOneSku() {
+        String decomposed = Normalizer.normalize("Словарь-Ёлочный", Normalizer.Form.NFD);
+        sockService.income(new CreateSockRequest("словарь-ёлочный", 40, 1));
+        sockService.income(new CreateSockRequest(" СЛОВАРЬ-ЁЛОЧНЫЙ ", 40, 2));
+        sockService.income(new CreateSockRequest(decomposed, 40, 3));
+        sockService.outcome(new CreateSockRequest("Словарь-ёлочный", 40, 1));
+
+        assertEquals(1, repository.countByColorAndCottonPart("словарь-ёлочный", 40));
+        assertEquals(5, repository.findByColorAndCottonPart("словарь-ёлочный", 40).map(Sock::getQuantity).orElse(0));
+        assertEquals(5, sockService.getSockCountByFilter(" СЛОВАРЬ-ЁЛОЧНЫЙ", "equal", 40));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM colors WHERE name = 'словарь-ёлочный'", Integer.class));
+    }
+
+    @Test
+    void csvSpellingsAreMergedAndStoredById() throws Exception {
+        importer.importCsv(new ByteArrayInputStream("""
+                color,cottonPart,quantity
+                Словарь-Мятный,10,4
+                словарь-мятный ,10,6
+                """.getBytes(StandardCharsets.UTF_8)));
+
+        int colorId = colorDictionary.idOf("словарь-мятный");
+        assertEquals("словарь-мятный", colorDictionary.nameOf(colorId));
+        assertEquals(10, jdbcTemplate.queryForObject(
+                "SELECT quantity FROM socks WHERE color_id = ? AND cotton_part = 10", Integer.class, colorId));
+        assertEquals(ColorDictionary.UNKNOWN, colorDictionary.idOf("словарь-несуществующий"));
+        assertEquals(0, sockService.getSockCountByFilter("словарь-несуществующий", null, null));
+    }
+
+    @Test
+    void colorIsRegisteredInCallersTransaction() {
+        transactionTemplate.executeWithoutResult(status -> {
+            int id = colorDictionary.register("словарь-откатный");
+            assertEquals(id, colorDictionary.idOf("словарь-откатный"));
+            // Запись идёт на соединении транзакции: из другого соединения цвет до фиксации не виден.
+            assertEquals(0, CompletableFuture.supplyAsync(() -> jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM colors WHERE name = 'словарь-откатный'", Integer.class)).orTimeout(10, TimeUnit.SECONDS).join());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(ColorDictionary.UNKNOWN, colorDictionary.idOf("словарь-откатный"));
+        sockService.income(new CreateSockRequest("словарь-откатный", 10, 2));
+        assertEquals(2, sockService.getSockCountByFilter("словарь-откатный", null, null));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.socks;
+
+import com.example.socks.service.impl.CountQueryCoalescer;
+import com.example.socks.service.impl.InventoryVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountQueryCoalescerTests {
+    private final InventoryVersion inventoryVersion = new InventoryVersion();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountQueryCoalescer coalescer = new CountQueryCoalescer(inventoryVersion, meterRegistry, true);
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalQueriesShareOneExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> coalescer.count(List.of("синий"), () -> {
+                executions.incrementAndGet();
+                await(release);
+                return 42;
+            })));
+        }
+        waitForCoalesced(7);
+        release.countDown();
+
+        for (Future<Long> result : results) {
+            assertEquals(42, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(1, meterRegistry.counter("socks.count.queries", "result", "executed").count());
+        assertEquals(7, meterRegistry.counter("socks.count.queries", "result", "coalesced").count());
+    }
+
+    @Test
+    void differentFiltersAndNewerVersionsQueryAgain() {
+        assertEquals(1, coalescer.count(List.of("синий"), () -> 1));
+        assertEquals(2, coalescer.count(List.of("красный"), () -> 2));
+        inventoryVersion.increment();
+        assertEquals(3, coalescer.count(List.of("синий"), () -> 3));
+        assertEquals(3, meterRegistry.counter("socks.count.queries", "result", "executed").count());
+    }
+
+    @Test
+    void failureReachesEveryWaiter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> coalescer.count(List.of("ошибка"), () -> {
+                await(release);
+                throw new IllegalStateException("база недоступна");
+            })));
+        }
+        waitForCoalesced(3);
+        release.countDown();
+
+        for (Future<Long> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        assertEquals(5, coalescer.count(List.of("ошибка"), () -> 5));
+    }
+
+    private void waitForCoalesced(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.counter("socks.count.queries", "result", "coalesced").count() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
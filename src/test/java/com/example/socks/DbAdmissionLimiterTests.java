@@ -0,0 +1,61 @@
+package com.example.socks;
+
+import com.example.socks.exception.ServiceUnavailableException;
+import com.example.socks.service.impl.DbAdmissionLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DbAdmissionLimiterTests {
+
+    @Test
+    void callsBeyondPermitsWaitAndTimeOut() throws Throwable {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DbAdmissionLimiter limiter = new DbAdmissionLimiter(registry, true, 1, Duration.ofMillis(100));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProceedingJoinPoint holding = mock(ProceedingJoinPoint.class);
+        when(holding.proceed()).then(invocation -> {
+            entered.countDown();
+            release.await();
+            return "первый";
+        });
+        ProceedingJoinPoint quick = mock(ProceedingJoinPoint.class);
+        when(quick.proceed()).thenReturn("второй");
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.admit(holding);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        assertThrows(ServiceUnavailableException.class, () -> limiter.admit(quick));
+        release.countDown();
+        assertEquals("первый", first.get(5, TimeUnit.SECONDS));
+        assertEquals("второй", limiter.admit(quick));
+        assertEquals(3, registry.get("socks.db.admission.wait").timer().count());
+        assertEquals(1.0, registry.get("socks.db.admission.available").gauge().value());
+    }
+
+    @Test
+    void disabledLimiterPassesThrough() throws Throwable {
+        DbAdmissionLimiter limiter = new DbAdmissionLimiter(new SimpleMeterRegistry(), false, 1, Duration.ZERO);
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.proceed()).thenReturn(1);
+
+        assertEquals(1, limiter.admit(joinPoint));
+        assertEquals(1, limiter.admit(joinPoint));
+    }
+}
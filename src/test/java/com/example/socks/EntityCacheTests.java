@@ -0,0 +1,81 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.SockService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class EntityCacheTests {
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockRepository repository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void repeatedLookupIsServedFromCache() {
+        sockService.income(new CreateSockRequest("кэш-синий", 40, 10));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Sock loaded = repository.findByColorAndCottonPart("кэш-синий", 40).orElseThrow();
+        long statements = statistics.getPrepareStatementCount();
+        long naturalIdHits = statistics.getNaturalIdCacheHitCount();
+
+        assertEquals(10, repository.findByColorAndCottonPart("кэш-синий", 40).orElseThrow().getQuantity());
+        assertEquals(loaded, repository.findById(loaded.getId()).orElseThrow());
+
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getNaturalIdCacheHitCount() > naturalIdHits);
+    }
+
+    @Test
+    void writesInvalidateCachedSocks() {
+        sockService.income(new CreateSockRequest("кэш-зеленый", 30, 10));
+        long id = repository.findByColorAndCottonPart("кэш-зеленый", 30).orElseThrow().getId();
+
+        // Пакетное движение пишет в обход Hibernate.
+        sockService.applyMovements(List.of(new StockMovementRequest("кэш-зеленый", 30, -4)));
+        assertEquals(6, repository.findByColorAndCottonPart("кэш-зеленый", 30).orElseThrow().getQuantity());
+
+        sockService.outcome(new CreateSockRequest("кэш-зеленый", 30, 1));
+        assertEquals(5, repository.findById(id).orElseThrow().getQuantity());
+
+        // Смена натурального ключа.
+        sockService.updateSock(id, new CreateSockRequest("кэш-желтый", 35, 8));
+        assertTrue(repository.findByColorAndCottonPart("кэш-зеленый", 30).isEmpty());
+        Sock moved = repository.findByColorAndCottonPart("кэш-желтый", 35).orElseThrow();
+        assertEquals(id, moved.getId());
+        assertEquals(8, moved.getQuantity());
+    }
+
+    @Test
+    void writeEvictsOnlyChangedSock() {
+        sockService.income(new CreateSockRequest("кэш-красный", 10, 10));
+        sockService.income(new CreateSockRequest("кэш-красный", 20, 10));
+        long other = repository.findByColorAndCottonPart("кэш-красный", 20).orElseThrow().getId();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        sockService.income(new CreateSockRequest("кэш-красный", 10, 5));
+        sockService.outcome(new CreateSockRequest("кэш-красный", 10, 3));
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals(10, repository.findById(other).orElseThrow().getQuantity());
+        assertEquals(statements, statistics.getPrepareStatementCount());
+
+        assertEquals(12, repository.findByColorAndCottonPart("кэш-красный", 10).orElseThrow().getQuantity());
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.socks;
+
+import com.example.socks.dto.ImportJobResponse;
+import com.example.socks.dto.ImportJobStatus;
+import com.example.socks.exception.NotFoundException;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.ImportJobRepository;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.ImportJobService;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.ImportJobServiceImpl;
+import com.example.socks.service.impl.OperationMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ImportJobTests {
+
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Autowired
+    private SockRepository repository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Test
+    void reuploadOfSameFileIsNoOp() throws Exception {
+        MockMultipartFile file = csv("""
+                color,cottonPart,quantity
+                задание-синий,25,100
+                задание-синий,26,50
+                """);
+
+        long importsBefore = imports();
+        ImportJobResponse submitted = importJobService.submit(file);
+        ImportJobResponse finished = await(submitted.getId());
+
+        assertEquals(ImportJobStatus.SUCCEEDED, finished.getStatus());
+        assertEquals(2, finished.getRowsProcessed());
+        assertEquals(file.getSize(), finished.getBytesProcessed());
+        assertEquals(2, finished.getResult().getRowsApplied());
+        assertEquals(importsBefore + 1, imports());
+
+        ImportJobResponse again = importJobService.submit(file);
+        assertTrue(again.isDuplicate());
+        assertEquals(submitted.getId(), again.getId());
+        assertEquals(100, quantityOf("задание-синий", 25));
+    }
+
+    @Test
+    void failedJobReportsErrorAndCanBeResubmitted() throws Exception {
+        MockMultipartFile file = csv("""
+                color,cottonPart,quantity
+                задание-красный,30,10
+                задание-красный,abc,10
+                """);
+
+        ImportJobResponse failed = await(importJobService.submit(file).getId());
+        assertEquals(ImportJobStatus.FAILED, failed.getStatus());
+        assertTrue(failed.getError().contains("3"));
+        assertTrue(repository.findByColorAndCottonPart("задание-красный", 30).isEmpty());
+
+        ImportJobResponse retried = importJobService.submit(file);
+        assertFalse(retried.isDuplicate());
+        assertNotEquals(failed.getId(), retried.getId());
+        await(retried.getId());
+    }
+
+    @Test
+    void reuploadAfterRestartIsNoOp() throws Exception {
+        MockMultipartFile file = csv("""
+                color,cottonPart,quantity
+                задание-зелёный,40,70
+                """);
+        ImportJobResponse finished = await(importJobService, importJobService.submit(file).getId());
+        assertEquals(ImportJobStatus.SUCCEEDED, finished.getStatus());
+
+        ImportJobServiceImpl restarted = restartedService();
+        try {
+            ImportJobResponse again = restarted.submit(file);
+            assertTrue(again.isDuplicate());
+            assertEquals(finished.getId(), again.getId());
+            assertEquals(ImportJobStatus.SUCCEEDED, again.getStatus());
+            assertEquals(1, again.getResult().getRowsApplied());
+            assertEquals(ImportJobStatus.SUCCEEDED, restarted.getJob(finished.getId()).getStatus());
+            assertEquals(70, quantityOf("задание-зелёный", 40));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void jobInterruptedByShutdownCanBeResubmitted() throws Exception {
+        MockMultipartFile file = csv("""
+                color,cottonPart,quantity
+                задание-жёлтый,45,30
+                """);
+        String interrupted = UUID.randomUUID().toString();
+        assertTrue(importJobRepository.claim(interrupted, sha256(file), "supplier.csv", file.getSize(), Instant.now()));
+
+        ImportJobServiceImpl restarted = restartedService();
+        try {
+            restarted.failUnfinished();
+            assertEquals(ImportJobStatus.FAILED, restarted.getJob(interrupted).getStatus());
+
+            ImportJobResponse retried = restarted.submit(file);
+            assertFalse(retried.isDuplicate());
+            assertEquals(ImportJobStatus.SUCCEEDED, await(restarted, retried.getId()).getStatus());
+            assertEquals(30, quantityOf("задание-жёлтый", 45));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void unknownJobIsNotFound() {
+        assertThrows(NotFoundException.class, () -> importJobService.getJob("нет-такого"));
+    }
+
+    private long imports() {
+        Timer timer = meterRegistry.find(OperationMetrics.TIMER).tags("operation", "import", "outcome", "ok").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    /**
+     * Сервис без заданий в памяти — как после перезапуска приложения.
+     */
+    private ImportJobServiceImpl restartedService() {
+        return new ImportJobServiceImpl(sockService, importJobRepository, new SimpleMeterRegistry(), 1, 4,
+                Path.of(System.getProperty("java.io.tmpdir"), "socks-import"), Duration.ofHours(24));
+    }
+
+    private ImportJobResponse await(String id) throws InterruptedException {
+        return await(importJobService, id);
+    }
+
+    private static ImportJobResponse await(ImportJobService service, String id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            ImportJobResponse job = service.getJob(id);
+            if (job.getStatus() == ImportJobStatus.SUCCEEDED || job.getStatus() == ImportJobStatus.FAILED) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        return fail("Задание " + id + " не завершилось");
+    }
+
+    private int quantityOf(String color, int cottonPart) {
+        return repository.findByColorAndCottonPart(color, cottonPart).map(Sock::getQuantity).orElse(0);
+    }
+
+    private static String sha256(MockMultipartFile file) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(file.getBytes()));
+    }
+
+    private static MockMultipartFile csv(String content) {
+        return new MockMultipartFile("file", "supplier.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
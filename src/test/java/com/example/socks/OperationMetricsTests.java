@@ -0,0 +1,50 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.exception.InsufficientStockException;
+import com.example.socks.exception.NotFoundException;
+import com.example.socks.exception.RequestValidatorException;
+import com.example.socks.service.WarehouseOperation;
+import com.example.socks.service.impl.OperationMetrics;
+import com.example.socks.service.impl.SockServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OperationMetricsTests {
+
+    @Test
+    void operationsAreTimedAndTaggedByOutcome() throws Throwable {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OperationMetrics metrics = new OperationMetrics(registry);
+        WarehouseOperation outcome = SockServiceImpl.class.getMethod("outcome", CreateSockRequest.class)
+                .getAnnotation(WarehouseOperation.class);
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.proceed())
+                .thenReturn("ok")
+                .thenThrow(new NotFoundException("нет"))
+                .thenThrow(new InsufficientStockException("мало"))
+                .thenThrow(new RequestValidatorException("ошибка"))
+                .thenReturn("ok");
+
+        metrics.record(joinPoint, outcome);
+        assertThrows(NotFoundException.class, () -> metrics.record(joinPoint, outcome));
+        assertThrows(InsufficientStockException.class, () -> metrics.record(joinPoint, outcome));
+        assertThrows(RequestValidatorException.class, () -> metrics.record(joinPoint, outcome));
+        metrics.record(joinPoint, outcome);
+
+        assertEquals(2, count(registry, "ok"));
+        assertEquals(1, count(registry, "not-found"));
+        assertEquals(1, count(registry, "insufficient"));
+        assertEquals(1, count(registry, "validation-error"));
+    }
+
+    private static long count(SimpleMeterRegistry registry, String outcome) {
+        return registry.get(OperationMetrics.TIMER).tags("operation", "outcome", "outcome", outcome).timer().count();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.LedgerJournal;
+import com.example.socks.service.impl.StockLedger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Профиль prod: склад в файле переживает перезапуск, начальное заполнение выполняется только в пустой склад.
+ */
+class PersistentStoreTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stockSurvivesRestartWithoutReseeding() throws Exception {
+        Path seed = dir.resolve("seed.csv");
+        Files.writeString(seed, "color,cottonPart,quantity\nфайл-синий,40,100\n");
+
+        try (ConfigurableApplicationContext context = start(seed)) {
+            SockService sockService = context.getBean(SockService.class);
+            assertEquals(100, sockService.getSockCountByFilter("файл-синий", "equal", 40));
+            sockService.outcome(new CreateSockRequest("файл-синий", 40, 30));
+        }
+        try (ConfigurableApplicationContext context = start(seed)) {
+            assertEquals(70, context.getBean(SockService.class).getSockCountByFilter("файл-синий", "equal", 40));
+        }
+    }
+
+    @Test
+    void ledgerChangesSurviveRestartWithDelayedWrites() throws Exception {
+        Path seed = dir.resolve("seed.csv");
+        Files.writeString(seed, "color,cottonPart,quantity\nфайл-реестр,40,10\n");
+        String[] ledger = {"--socks.ledger.enabled=true", "--socks.ledger.flush-interval=1h",
+                "--socks.ledger.journal-dir=" + dir.resolve("ledger")};
+
+        try (ConfigurableApplicationContext context = start(seed, ledger)) {
+            context.getBean(SockService.class).income(new CreateSockRequest("файл-реестр", 40, 5));
+            context.getBean(StockLedger.class).flush();
+            assertEquals(List.of(), LedgerJournal.segments(dir.resolve("ledger")).stream()
+                    .filter(segment -> segment < 2).toList());
+        }
+        try (ConfigurableApplicationContext context = start(seed, ledger)) {
+            assertEquals(15, context.getBean(SockService.class).getSockCountByFilter("файл-реестр", "equal", 40));
+        }
+    }
+
+    private ConfigurableApplicationContext start(Path seed, String... args) {
+        List<String> arguments = new ArrayList<>(List.of("--socks.data-dir=" + dir.resolve("db"), "--socks.seed.file=" + seed));
+        arguments.addAll(List.of(args));
+        return new SpringApplicationBuilder(SocksApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("prod")
+                .run(arguments.toArray(String[]::new));
+    }
+}
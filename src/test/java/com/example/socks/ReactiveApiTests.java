@@ -0,0 +1,143 @@
+package com.example.socks;
+
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.MovementStatus;
+import com.example.socks.model.Sock;
+import com.example.socks.reactive.ReactiveSocksApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Реактивный вариант API на Netty и R2DBC: те же адреса и ответы, что у основного приложения.
+ */
+@SpringBootTest(classes = ReactiveSocksApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive", "socks.reactive.database=reactive-tests"})
+@ActiveProfiles("reactive")
+class ReactiveApiTests {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Test
+    void incomeOutcomeAndCount() {
+        post("/income", "реакт-синий", 40, 10).expectStatus().isOk()
+                .expectBody(String.class).value(body -> assertTrue(body.startsWith("Добавлена новая партия")));
+        post("/income", " Реакт-Синий ", 40, 5).expectStatus().isOk();
+        post("/outcome", "реакт-синий", 40, 3).expectStatus().isOk();
+
+        assertEquals(12, count("color=реакт-синий&comparison=equal&cottonPart=40"));
+        post("/outcome", "реакт-синий", 40, 100).expectStatus().isBadRequest();
+        post("/outcome", "реакт-нет", 40, 1).expectStatus().isNotFound();
+        client.get().uri("/api/socks?comparison=about&cottonPart=1").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    void movementBatchIsAllOrNothing() {
+        post("/income", "реакт-красный", 20, 5).expectStatus().isOk();
+
+        MovementBatchResponse rejected = client.post().uri("/api/socks/movements")
+                .bodyValue(List.of(Map.of("color", "реакт-красный", "cottonPart", 20, "quantity", 3),
+                        Map.of("color", "реакт-красный", "cottonPart", 21, "quantity", -1)))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(MovementBatchResponse.class).returnResult().getResponseBody();
+        assertFalse(rejected.isApplied());
+        assertEquals(MovementStatus.REJECTED, rejected.getLines().get(0).getStatus());
+        assertEquals(MovementStatus.NOT_FOUND, rejected.getLines().get(1).getStatus());
+        assertEquals(5, count("color=реакт-красный"));
+
+        client.post().uri("/api/socks/movements")
+                .bodyValue(List.of(Map.of("color", "реакт-красный", "cottonPart", 20, "quantity", -2)))
+                .exchange()
+                .expectStatus().isOk();
+        assertEquals(3, count("color=реакт-красный"));
+    }
+
+    @Test
+    void filterPagesAndStreams() {
+        for (int cottonPart = 60; cottonPart < 65; cottonPart++) {
+            post("/income", "реакт-фильтр", cottonPart, 1).expectStatus().isOk();
+        }
+        String cursor = client.get().uri("/api/socks/filter?minCottonPart=60&maxCottonPart=64&limit=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("X-Next-Cursor")
+                .returnResult(Sock.class).getResponseHeaders().getFirst("X-Next-Cursor");
+        client.get().uri("/api/socks/filter?minCottonPart=60&maxCottonPart=64&limit=3&after=" + cursor)
+                .exchange()
+                .expectHeader().doesNotExist("X-Next-Cursor")
+                .expectBodyList(Sock.class).hasSize(2);
+
+        List<Sock> streamed = client.get().uri("/api/socks/filter/stream?minCottonPart=60&maxCottonPart=64&sortBy=cottonPart")
+                .accept(MediaType.parseMediaType("application/x-ndjson"))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Sock.class).getResponseBody().collectList().block();
+        assertEquals(List.of(60, 61, 62, 63, 64), streamed.stream().map(Sock::getCottonPart).toList());
+    }
+
+    @Test
+    void csvUploadAndUpdate() {
+        BatchUploadResponse response = upload("color,cottonPart,quantity\nреакт-файл,10,4\nРеакт-Файл ,10,6\nреакт-файл,11,1")
+                .expectStatus().isOk()
+                .expectBody(BatchUploadResponse.class).returnResult().getResponseBody();
+        assertEquals(3, response.getRowsRead());
+        assertEquals(11, count("color=реакт-файл"));
+        upload("color,cottonPart,quantity\nреакт-файл,10,4\nреакт-файл,abc,1\n").expectStatus().isBadRequest();
+        assertEquals(11, count("color=реакт-файл"));
+
+        Sock sock = client.get().uri("/api/socks/filter?minCottonPart=11&maxCottonPart=11")
+                .exchange()
+                .returnResult(Sock.class).getResponseBody()
+                .filter(found -> found.getColor().equals("реакт-файл")).blockFirst();
+        client.put().uri("/api/socks/" + sock.getId())
+                .bodyValue(Map.of("color", "реакт-файл-2", "cottonPart", 12, "quantity", 7))
+                .exchange()
+                .expectStatus().isOk();
+        assertEquals(7, count("color=реакт-файл-2&comparison=equal&cottonPart=12"));
+        client.put().uri("/api/socks/999999")
+                .bodyValue(Map.of("color", "реакт-файл", "cottonPart", 12, "quantity", 7))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    private WebTestClient.ResponseSpec post(String path, String color, int cottonPart, int quantity) {
+        return client.post().uri("/api/socks" + path)
+                .bodyValue(Map.of("color", color, "cottonPart", cottonPart, "quantity", quantity))
+                .exchange();
+    }
+
+    private long count(String query) {
+        return client.get().uri("/api/socks?" + query).exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class).returnResult().getResponseBody();
+    }
+
+    private WebTestClient.ResponseSpec upload(String csv) {
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("file", new ByteArrayResource(csv.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return "socks.csv";
+            }
+        });
+        return client.post().uri("/api/socks/batch")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .exchange();
+    }
+}
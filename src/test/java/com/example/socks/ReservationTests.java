@@ -0,0 +1,198 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateReservationRequest;
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.ReservationResponse;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.InsufficientStockException;
+import com.example.socks.exception.MovementRejectedException;
+import com.example.socks.exception.NotFoundException;
+import com.example.socks.exception.RequestValidatorException;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.ReservationRepository;
+import com.example.socks.repository.ReservationRepository.Hold;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.ReservationService;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.InventoryVersion;
+import com.example.socks.service.impl.StockChangePublisher;
+import com.example.socks.service.impl.StockIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ReservationTests {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockRepository repository;
+
+    @Autowired
+    private StockIndex stockIndex;
+
+    @Autowired
+    private InventoryVersion inventoryVersion;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private StockChangePublisher changePublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void reservedStockIsShippedOnlyByConfirmation() {
+        sockService.income(new CreateSockRequest("резерв-синий", 40, 10));
+        ReservationResponse reservation = reservationService.reserve(new CreateReservationRequest(" Резерв-Синий", 40, 7, null));
+        assertEquals("резерв-синий", reservation.getColor());
+
+        assertThrows(InsufficientStockException.class, () -> sockService.outcome(new CreateSockRequest("резерв-синий", 40, 5)));
+        assertThrows(MovementRejectedException.class, () -> sockService.applyMovements(List.of(new StockMovementRequest("резерв-синий", 40, -4))));
+        sockService.outcome(new CreateSockRequest("резерв-синий", 40, 3));
+        assertEquals(7, reservationService.getReservation(reservation.getId()).getQuantity());
+
+        reservationService.confirm(reservation.getId());
+        Sock sock = repository.findByColorAndCottonPart("резерв-синий", 40).orElseThrow();
+        assertEquals(0, sock.getQuantity());
+        assertEquals(0, sock.getReserved());
+        assertEquals(0, stockIndex.quantity("резерв-синий", 40));
+        assertThrows(NotFoundException.class, () -> reservationService.confirm(reservation.getId()));
+        assertThrows(NotFoundException.class, () -> reservationService.release(reservation.getId()));
+    }
+
+    @Test
+    void releasedAndExpiredHoldsReturnToAvailableStock() throws InterruptedException {
+        sockService.income(new CreateSockRequest("резерв-красный", 20, 5));
+        String released = reservationService.reserve(new CreateReservationRequest("резерв-красный", 20, 5, null)).getId();
+        assertThrows(InsufficientStockException.class, () -> reservationService.reserve(new CreateReservationRequest("резерв-красный", 20, 1, null)));
+        reservationService.release(released);
+
+        String expiring = reservationService.reserve(new CreateReservationRequest("резерв-красный", 20, 5, 1L)).getId();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (repository.findByColorAndCottonPart("резерв-красный", 20).orElseThrow().getReserved() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, repository.findByColorAndCottonPart("резерв-красный", 20).orElseThrow().getReserved());
+        assertThrows(NotFoundException.class, () -> reservationService.confirm(expiring));
+        sockService.outcome(new CreateSockRequest("резерв-красный", 20, 5));
+    }
+
+    @Test
+    void expiredHoldIsNeitherFoundNorHeldBeforeSweep() {
+        String color = "резерв-просроченный";
+        sockService.income(new CreateSockRequest(color, 70, 5));
+        // Срок резерва прошёл, а фоновый поток о нём не знает: на колесо он не поставлен.
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.reserve(color, 70, 5);
+            long sockId = repository.findByColorAndCottonPart(color, 70).orElseThrow().getId();
+            reservationRepository.insert(new Hold("просроченный-1", sockId, 3, Instant.now().minusSeconds(1)));
+            reservationRepository.insert(new Hold("просроченный-2", sockId, 2, Instant.now().minusSeconds(1)));
+            changePublisher.publishReserved(color, 70, 5);
+        });
+
+        assertThrows(NotFoundException.class, () -> reservationService.getReservation("просроченный-1"));
+        assertThrows(NotFoundException.class, () -> reservationService.release("просроченный-1"));
+        sockService.outcome(new CreateSockRequest(color, 70, 1));
+        assertThrows(NotFoundException.class, () -> reservationService.getReservation("просроченный-2"));
+        reservationService.reserve(new CreateReservationRequest(color, 70, 4, null));
+
+        Sock sock = repository.findByColorAndCottonPart(color, 70).orElseThrow();
+        assertEquals(4, sock.getQuantity());
+        assertEquals(4, sock.getReserved());
+        assertEquals(0, sockService.getSockCountByFilter(color, null, null));
+        assertEquals(List.of(), stockIndex.verify());
+    }
+
+    @Test
+    void countShowsAvailableStockAndChangesVersion() throws InterruptedException {
+        sockService.income(new CreateSockRequest("резерв-учет", 30, 10));
+        long version = inventoryVersion.current();
+        String released = reservationService.reserve(new CreateReservationRequest("резерв-учет", 30, 4, null)).getId();
+        assertEquals(6, sockService.getSockCountByFilter("резерв-учет", null, null));
+        assertEquals(6L, repository.countSocksByFilter("резерв-учет", null, null));
+        assertTrue(inventoryVersion.current() > version);
+
+        version = inventoryVersion.current();
+        reservationService.release(released);
+        assertEquals(10, sockService.getSockCountByFilter("резерв-учет", "equal", 30));
+        assertTrue(inventoryVersion.current() > version);
+
+        version = inventoryVersion.current();
+        reservationService.reserve(new CreateReservationRequest("резерв-учет", 30, 2, 1L));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sockService.getSockCountByFilter("резерв-учет", null, null) < 10 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(10, sockService.getSockCountByFilter("резерв-учет", null, null));
+        assertTrue(inventoryVersion.current() > version + 1);
+
+        reservationService.confirm(reservationService.reserve(new CreateReservationRequest("резерв-учет", 30, 3, null)).getId());
+        assertEquals(7, sockService.getSockCountByFilter("резерв-учет", null, null));
+        assertEquals(7, repository.findByColorAndCottonPart("резерв-учет", 30).orElseThrow().getQuantity());
+        assertEquals(List.of(), stockIndex.verify());
+    }
+
+    @Test
+    void invalidReservationsAreRejected() {
+        sockService.income(new CreateSockRequest("резерв-зеленый", 60, 3));
+        assertThrows(NotFoundException.class, () -> reservationService.reserve(new CreateReservationRequest("резерв-нет", 60, 1, null)));
+        assertThrows(RequestValidatorException.class, () -> reservationService.reserve(new CreateReservationRequest("резерв-зеленый", 60, 0, null)));
+        assertThrows(BadRequestException.class, () -> reservationService.reserve(new CreateReservationRequest("резерв-зеленый", 60, 1, 86_400L)));
+        assertThrows(NotFoundException.class, () -> reservationService.getReservation("нет-такого"));
+
+        reservationService.reserve(new CreateReservationRequest("резерв-зеленый", 60, 2, null));
+        Long id = repository.findByColorAndCottonPart("резерв-зеленый", 60).orElseThrow().getId();
+        assertThrows(BadRequestException.class, () -> sockService.updateSock(id, new CreateSockRequest("резерв-зеленый", 60, 1)));
+        sockService.updateSock(id, new CreateSockRequest("резерв-зеленый", 61, 2));
+        assertEquals(2, repository.findByColorAndCottonPart("резерв-зеленый", 61).orElseThrow().getReserved());
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        sockService.income(new CreateSockRequest("резерв-гонка", 50, 50));
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 160; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        reservationService.reserve(new CreateReservationRequest("резерв-гонка", 50, 1, null));
+                        return true;
+                    } catch (InsufficientStockException e) {
+                        return false;
+                    }
+                }));
+            }
+            int reserved = 0;
+            for (Future<Boolean> future : futures) {
+                if (future.get(60, TimeUnit.SECONDS)) {
+                    reserved++;
+                }
+            }
+            assertEquals(50, reserved);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(50, repository.findByColorAndCottonPart("резерв-гонка", 50).orElseThrow().getReserved());
+    }
+}
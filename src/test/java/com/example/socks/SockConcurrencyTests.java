@@ -0,0 +1,167 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.ConflictException;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.StockIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class SockConcurrencyTests {
+    private static final int THREADS = 64;
+    private static final int OPERATIONS_PER_THREAD = 50;
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockRepository repository;
+
+    @Autowired
+    private StockIndex stockIndex;
+
+    @Test
+    void concurrentIncomeAndOutcomeDoNotLoseUnits() throws Exception {
+        String color = "concurrency-mixed";
+        int initial = THREADS * OPERATIONS_PER_THREAD;
+        sockService.income(new CreateSockRequest(color, 42, initial));
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                sockService.income(new CreateSockRequest(color, 42, 3));
+                sockService.outcome(new CreateSockRequest(color, 42, 2));
+            }
+        });
+
+        assertEquals(initial + THREADS * OPERATIONS_PER_THREAD, quantityOf(color, 42));
+        assertEquals(quantityOf(color, 42), stockIndex.quantity(color, 42));
+        assertEquals(List.of(), stockIndex.verify());
+    }
+
+    @Test
+    void concurrentFirstIncomeCreatesSingleSock() throws Exception {
+        String color = "concurrency-new";
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                sockService.income(new CreateSockRequest(color, 7, 1));
+            }
+        });
+
+        assertEquals(1, repository.countByColorAndCottonPart(color, 7));
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, quantityOf(color, 7));
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, stockIndex.quantity(color, 7));
+    }
+
+    @Test
+    void concurrentOutcomeNeverOversells() throws Exception {
+        String color = "concurrency-outcome";
+        int initial = THREADS * OPERATIONS_PER_THREAD / 2;
+        sockService.income(new CreateSockRequest(color, 13, initial));
+        AtomicInteger shipped = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                try {
+                    sockService.outcome(new CreateSockRequest(color, 13, 1));
+                    shipped.incrementAndGet();
+                } catch (BadRequestException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(initial, shipped.get());
+        assertEquals(THREADS * OPERATIONS_PER_THREAD - initial, rejected.get());
+        assertEquals(0, quantityOf(color, 13));
+        assertEquals(0, stockIndex.quantity(color, 13));
+    }
+
+    @Test
+    void concurrentUpdatesAndIncomesKeepIndexConsistent() throws Exception {
+        String color = "concurrency-update";
+        sockService.income(new CreateSockRequest(color, 64, 100));
+        long id = repository.findByColorAndCottonPart(color, 64).orElseThrow().getId();
+        AtomicInteger incomes = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD / 5; i++) {
+                if (thread % 2 == 0) {
+                    sockService.income(new CreateSockRequest(color, 64, 1));
+                    incomes.incrementAndGet();
+                } else {
+                    try {
+                        sockService.updateSock(id, new CreateSockRequest(color, 64, 100));
+                    } catch (ConflictException e) {
+                        // Попытки исчерпаны — запрос честно отклонён, а не применён поверх чужих изменений.
+                    }
+                }
+            }
+        });
+
+        Sock sock = repository.findById(id).orElseThrow();
+        assertTrue(sock.getVersion() >= incomes.get() + 1);
+        assertEquals(sock.getQuantity(), stockIndex.quantity(color, 64));
+        assertEquals(List.of(), stockIndex.verify());
+    }
+
+    @Test
+    void staleUpdateIsRejectedAfterIncome() {
+        String color = "concurrency-stale";
+        sockService.income(new CreateSockRequest(color, 5, 10));
+        Sock stale = repository.findByColorAndCottonPart(color, 5).orElseThrow();
+
+        sockService.income(new CreateSockRequest(color, 5, 1));
+        stale.setQuantity(50);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> repository.save(stale));
+        assertEquals(11, quantityOf(color, 5));
+    }
+
+    private int quantityOf(String color, int cottonPart) {
+        return repository.findByColorAndCottonPart(color, cottonPart).map(Sock::getQuantity).orElse(0);
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
@@ -1,9 +1,32 @@
 package com.example.socks;
 
 import com.example.socks.controller.SockController;
+import com.example.socks.controller.WireFormats;
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.dto.CreateReservationRequest;
 import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.ImportJobResponse;
+import com.example.socks.dto.ImportJobStatus;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.MovementLineResult;
+import com.example.socks.dto.MovementStatus;
+import com.example.socks.dto.ReservationResponse;
+import com.example.socks.dto.SockPage;
+import com.example.socks.dto.StockAtResponse;
+import com.example.socks.dto.StockLevel;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.model.Sock;
+import com.example.socks.service.ImportJobService;
+import com.example.socks.service.ReservationService;
 import com.example.socks.service.SockService;
+import com.example.socks.service.StockHistoryService;
+import com.example.socks.service.StockStreamService;
+import com.example.socks.service.impl.InventoryVersion;
+import com.example.socks.service.impl.QueryResultCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -14,10 +37,20 @@ import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
 
@@ -29,12 +62,26 @@ class SockControllerTests {
 
     private SockService serviceMock;
 
+    private ImportJobService importJobServiceMock;
+
+    private ReservationService reservationServiceMock;
+
+    private StockHistoryService stockHistoryServiceMock;
+
+    private InventoryVersion inventoryVersion;
+
     private MockMvc mockMvc;
 
     @BeforeEach
     void setup() {
         serviceMock = Mockito.mock(SockService.class);
-        mockMvc = standaloneSetup(new SockController(serviceMock)).build();
+        importJobServiceMock = Mockito.mock(ImportJobService.class);
+        reservationServiceMock = Mockito.mock(ReservationService.class);
+        stockHistoryServiceMock = Mockito.mock(StockHistoryService.class);
+        inventoryVersion = new InventoryVersion();
+        mockMvc = standaloneSetup(new SockController(serviceMock, importJobServiceMock, reservationServiceMock, stockHistoryServiceMock, Mockito.mock(StockStreamService.class),
+                inventoryVersion, new QueryResultCache(new SimpleMeterRegistry(), true, 16, DataSize.ofKilobytes(256)), new WireFormats(new ObjectMapper()),
+                new ObjectMapper())).build();
     }
 
     @DisplayName("Test successful income operation")
@@ -96,10 +143,10 @@ class SockControllerTests {
     @Test
     void getSockCountTest() throws Exception {
         String color = "синий";
-        String comparison = "greater";
+        String comparison = "moreThan";
         int cottonPart = 25;
 
-        Mockito.when(serviceMock.getSockCountByFilter(color, comparison, cottonPart)).thenReturn(10);
+        Mockito.when(serviceMock.getSockCountByFilter(color, comparison, cottonPart)).thenReturn(10L);
 
         MvcResult result = mockMvc.perform(get(API_URL)
                         .param("color", color)
@@ -108,18 +155,50 @@ class SockControllerTests {
                 .andExpect(status().isOk())
                 .andReturn();
 
-        int actualCount = Integer.parseInt(result.getResponse().getContentAsString());
+        long actualCount = Long.parseLong(result.getResponse().getContentAsString());
         log.info("Sock count HTTP response status: {}", result.getResponse().getStatus());
         assertEquals(10, actualCount);
         Mockito.verify(serviceMock).getSockCountByFilter(color, comparison, cottonPart);
     }
 
+    @DisplayName("Test unchanged count is served by ETag and result cache")
+    @Test
+    void getSockCountConditionalTest() throws Exception {
+        Mockito.when(serviceMock.getSockCountByFilter("синий", null, null)).thenReturn(10L, 15L);
+
+        MvcResult first = mockMvc.perform(get(API_URL).param("color", "синий"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get(API_URL).param("color", "синий").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        MvcResult cached = mockMvc.perform(get(API_URL).param("color", "синий"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andReturn();
+        assertEquals("10", cached.getResponse().getContentAsString());
+        Mockito.verify(serviceMock, Mockito.times(1)).getSockCountByFilter("синий", null, null);
+
+        inventoryVersion.increment();
+        MvcResult changed = mockMvc.perform(get(API_URL).param("color", "синий").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertEquals("15", changed.getResponse().getContentAsString());
+        assertNotEquals(etag, changed.getResponse().getHeader("ETag"));
+    }
+
     @DisplayName("Test upload socks batch")
     @Test
     void uploadSocksBatchTest() throws Exception {
         MockMultipartFile file = new MockMultipartFile("file", "socks.csv", MediaType.TEXT_PLAIN_VALUE, "color,cottonPart,quantity\nсиний,25,100".getBytes());
 
-        Mockito.when(serviceMock.uploadSocksBatch(file)).thenReturn("The batch of socks has been successfully loaded");
+        BatchUploadResponse response = BatchUploadResponse.builder()
+                .rowsRead(1)
+                .rowsApplied(1)
+                .rejectedLines(List.of())
+                .build();
+        Mockito.when(serviceMock.uploadSocksBatch(file)).thenReturn(response);
 
         MvcResult result = mockMvc.perform(multipart(API_URL + "/batch") // изменено с post на multipart
                         .file(file))
@@ -128,10 +207,38 @@ class SockControllerTests {
 
         String actualResponse = result.getResponse().getContentAsString();
         log.info("Upload batch HTTP response status: {}", result.getResponse().getStatus());
-        assertEquals("The batch of socks has been successfully loaded", actualResponse);
+        assertEquals(response, new ObjectMapper().readValue(actualResponse, BatchUploadResponse.class));
         Mockito.verify(serviceMock).uploadSocksBatch(file);
     }
 
+    @DisplayName("Test async upload returns job location")
+    @Test
+    void submitImportJobTest() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "socks.csv", MediaType.TEXT_PLAIN_VALUE, "color,cottonPart,quantity\nсиний,25,100".getBytes());
+        ImportJobResponse job = ImportJobResponse.builder().id("job-1").status(ImportJobStatus.QUEUED).build();
+        Mockito.when(importJobServiceMock.submit(file)).thenReturn(job);
+
+        mockMvc.perform(multipart(API_URL + "/batch").file(file).param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", API_URL + "/batch/job-1"));
+        Mockito.verify(serviceMock, Mockito.never()).uploadSocksBatch(Mockito.any());
+    }
+
+    @DisplayName("Test reservation returns its location")
+    @Test
+    void reserveTest() throws Exception {
+        ReservationResponse reservation = new ReservationResponse("r-1", "синий", 40, 3, Instant.parse("2024-05-01T09:05:00Z"));
+        Mockito.when(reservationServiceMock.reserve(Mockito.any(CreateReservationRequest.class))).thenReturn(reservation);
+
+        mockMvc.perform(post(API_URL + "/reservations")
+                        .content("{\"color\":\"синий\",\"cottonPart\":40,\"quantity\":3,\"ttlSeconds\":300}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", API_URL + "/reservations/r-1"))
+                .andExpect(jsonPath("$.quantity").value(3));
+        Mockito.verify(reservationServiceMock).reserve(new CreateReservationRequest("синий", 40, 3, 300L));
+    }
+
     @DisplayName("Test update sock")
     @Test
     void updateSockTest() throws Exception {
@@ -156,5 +263,130 @@ class SockControllerTests {
         Mockito.verify(serviceMock).updateSock(Mockito.eq(sockId), Mockito.any(CreateSockRequest.class));
     }
 
-}
+    @DisplayName("Test apply movements batch")
+    @Test
+    void applyMovementsTest() throws Exception {
+        List<StockMovementRequest> movements = List.of(
+                new StockMovementRequest("синий", 80, 5),
+                new StockMovementRequest("синий", 80, -2));
+        MovementBatchResponse response = new MovementBatchResponse(true, 1, List.of(
+                new MovementLineResult(1, MovementStatus.APPLIED, null),
+                new MovementLineResult(2, MovementStatus.APPLIED, null)));
+        Mockito.when(serviceMock.applyMovements(movements)).thenReturn(response);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        MvcResult result = mockMvc.perform(post(API_URL + "/movements")
+                        .content(objectMapper.writeValueAsString(movements))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertEquals(response, objectMapper.readValue(result.getResponse().getContentAsString(), MovementBatchResponse.class));
+        Mockito.verify(serviceMock).applyMovements(movements);
+    }
+
+    @DisplayName("Test filter socks page with next cursor")
+    @Test
+    void filterSocksPageTest() throws Exception {
+        List<Sock> socks = List.of(
+                Sock.builder().id(1L).color("зеленый").cottonPart(40).quantity(5).build(),
+                Sock.builder().id(2L).color("синий").cottonPart(40).quantity(7).build());
+        Mockito.when(serviceMock.filterSocks(30, 50, "color", null, 2)).thenReturn(new SockPage(socks, "next"));
+
+        MvcResult result = mockMvc.perform(get(API_URL + "/filter")
+                        .param("minCottonPart", "30")
+                        .param("maxCottonPart", "50")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next"))
+                .andReturn();
+
+        Sock[] actual = new ObjectMapper().readValue(result.getResponse().getContentAsByteArray(), Sock[].class);
+        assertEquals(socks, List.of(actual));
+    }
+
+    @DisplayName("Test filter socks and movements in binary formats")
+    @Test
+    void binaryFormatsTest() throws Exception {
+        List<Sock> socks = List.of(Sock.builder().id(1L).color("зеленый").cottonPart(40).quantity(5).build());
+        Mockito.when(serviceMock.filterSocks(30, 50, "color", null, null)).thenReturn(new SockPage(socks, null));
+
+        MvcResult json = mockMvc.perform(get(API_URL + "/filter")
+                        .param("minCottonPart", "30")
+                        .param("maxCottonPart", "50"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult smile = mockMvc.perform(get(API_URL + "/filter")
+                        .param("minCottonPart", "30")
+                        .param("maxCottonPart", "50")
+                        .accept(WireFormats.SMILE))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", WireFormats.SMILE_VALUE))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn();
+
+        assertEquals(socks, List.of(new SmileMapper().readValue(smile.getResponse().getContentAsByteArray(), Sock[].class)));
+        assertNotEquals(json.getResponse().getHeader("ETag"), smile.getResponse().getHeader("ETag"));
+        mockMvc.perform(get(API_URL + "/filter")
+                        .param("minCottonPart", "30")
+                        .param("maxCottonPart", "50")
+                        .accept(MediaType.TEXT_HTML))
+                .andExpect(status().isNotAcceptable());
+
+        List<StockMovementRequest> movements = List.of(new StockMovementRequest("синий", 80, 5));
+        MovementBatchResponse response = new MovementBatchResponse(true, 1, List.of(new MovementLineResult(1, MovementStatus.APPLIED, null)));
+        Mockito.when(serviceMock.applyMovements(movements)).thenReturn(response);
+        CBORMapper cborMapper = new CBORMapper();
+
+        MvcResult cbor = mockMvc.perform(post(API_URL + "/movements")
+                        .content(cborMapper.writeValueAsBytes(movements))
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertEquals(response, cborMapper.readValue(cbor.getResponse().getContentAsByteArray(), MovementBatchResponse.class));
+    }
+
+    @DisplayName("Test stream filtered socks as NDJSON")
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamSocksTest() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Sock> consumer = invocation.getArgument(3);
+            consumer.accept(Sock.builder().id(1L).color("синий").cottonPart(40).quantity(5).build());
+            consumer.accept(Sock.builder().id(2L).color("синий").cottonPart(45).quantity(7).build());
+            return null;
+        }).when(serviceMock).streamSocks(Mockito.eq(30), Mockito.eq(50), Mockito.eq("color"), Mockito.any(Consumer.class));
+
+        MvcResult asyncResult = mockMvc.perform(get(API_URL + "/filter/stream")
+                        .param("minCottonPart", "30")
+                        .param("maxCottonPart", "50"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(45, new ObjectMapper().readValue(lines[1], Sock.class).getCottonPart());
+    }
+
+    @DisplayName("Test stock levels at a point in time")
+    @Test
+    void getStockAtTest() throws Exception {
+        Instant timestamp = Instant.parse("2024-05-01T09:00:00Z");
+        Mockito.when(stockHistoryServiceMock.getStockAt(timestamp, "синий", null)).thenReturn(
+                new StockAtResponse(timestamp, Instant.parse("2024-05-01T08:00:00Z"), List.of(new StockLevel("синий", 40, 12))));
 
+        mockMvc.perform(get(API_URL + "/at")
+                        .param("timestamp", "2024-05-01T12:00:00+03:00")
+                        .param("color", "синий"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.levels[0].quantity").value(12));
+
+        mockMvc.perform(get(API_URL + "/at").param("timestamp", "вчера"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.socks;
+
+import com.example.socks.dto.BatchUploadResponse;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.impl.SockCsvImporter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SockCsvImporterTests {
+
+    @Autowired
+    private SockCsvImporter importer;
+
+    @Autowired
+    private SockRepository repository;
+
+    @Test
+    void importMergesDuplicateRows() throws Exception {
+        BatchUploadResponse response = importer.importCsv(csv("""
+                color,cottonPart,quantity
+                импорт-синий,25,100
+                импорт-синий,25,50
+                импорт-зеленый,50,200
+                """));
+
+        assertEquals(3, response.getRowsRead());
+        assertEquals(3, response.getRowsApplied());
+        assertEquals(0, response.getRowsRejected());
+        assertEquals(150, quantityOf("импорт-синий", 25));
+        assertEquals(200, quantityOf("импорт-зеленый", 50));
+    }
+
+    @Test
+    void importWithBadRowsIsRolledBack() {
+        BadRequestException exception = assertThrows(BadRequestException.class, () -> importer.importCsv(csv("""
+                color,cottonPart,quantity
+                импорт-красный,30,10
+                импорт-красный,abc,10
+                импорт-красный,130,10
+                импорт-красный,30
+                """)));
+
+        assertTrue(exception.getMessage().contains("3, 4, 5"));
+        assertTrue(repository.findByColorAndCottonPart("импорт-красный", 30).isEmpty());
+    }
+
+    @Test
+    void importFlushesInChunks() throws Exception {
+        StringBuilder content = new StringBuilder("color,cottonPart,quantity\n");
+        for (int i = 0; i < 12_000; i++) {
+            content.append("импорт-чанк-").append(i % 7).append(',').append(i % 101).append(",1\n");
+        }
+
+        BatchUploadResponse response = importer.importCsv(csv(content.toString()));
+
+        assertEquals(12_000, response.getRowsApplied());
+        long total = repository.findAll().stream()
+                .filter(sock -> sock.getColor().startsWith("импорт-чанк-"))
+                .mapToLong(Sock::getQuantity)
+                .sum();
+        assertEquals(12_000, total);
+        assertEquals(List.of(), response.getRejectedLines());
+    }
+
+    @Test
+    void importHandlesCrlfAndLinesSplitAcrossReads() throws Exception {
+        byte[] content = "color,cottonPart,quantity\r\nимпорт-бордовый,15,7\r\n\r\n импорт-бордовый , 15 , 3 \r\nимпорт-бордовый,16,1"
+                .getBytes(StandardCharsets.UTF_8);
+        InputStream oneByteAtATime = new ByteArrayInputStream(content) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        BatchUploadResponse response = importer.importCsv(oneByteAtATime);
+
+        assertEquals(3, response.getRowsApplied());
+        assertEquals(10, quantityOf("импорт-бордовый", 15));
+        assertEquals(1, quantityOf("импорт-бордовый", 16));
+    }
+
+    private int quantityOf(String color, int cottonPart) {
+        return repository.findByColorAndCottonPart(color, cottonPart).map(Sock::getQuantity).orElse(0);
+    }
+
+    private static ByteArrayInputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
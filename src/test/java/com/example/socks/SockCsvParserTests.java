@@ -0,0 +1,84 @@
+package com.example.socks;
+
+import com.example.socks.model.SockKey;
+import com.example.socks.service.impl.SockCsvParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SockCsvParserTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parallelParseMatchesSequentialSums() throws Exception {
+        Random random = new Random(42);
+        StringBuilder content = new StringBuilder("color,cottonPart,quantity\r\n");
+        Map<SockKey, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            String color = (i % 3 == 0 ? "сорт-" : "grade-") + random.nextInt(40);
+            int cottonPart = random.nextInt(101);
+            int quantity = random.nextInt(1000);
+            content.append(i % 5 == 0 ? " " + color + " , " + cottonPart + " ,+" + quantity : color + "," + cottonPart + "," + quantity)
+                    .append(i % 2 == 0 ? "\r\n" : "\n");
+            if (i % 1000 == 0) {
+                content.append("\n");
+            }
+            expected.merge(new SockKey(color, cottonPart), (long) quantity, Long::sum);
+        }
+        Path file = write(content.toString());
+
+        SockCsvParser.Result result = SockCsvParser.parse(file, 4, 1024);
+
+        assertEquals(20_000, result.rowsRead());
+        assertEquals(0, result.rowsRejected());
+        assertEquals(expected, result.quantities());
+    }
+
+    @Test
+    void rejectedLinesAreNumberedAcrossSegments() throws Exception {
+        Path file = write("""
+                color,cottonPart,quantity
+                красный,10,5
+                красный,abc,5
+
+                красный,101,5
+                красный,10
+                красный,10,-1
+                ,10,1
+                красный,10,5,5
+                красный,10,2147483648
+                красный,10,5""");
+
+        SockCsvParser.Result result = SockCsvParser.parse(file, 3, 16);
+
+        assertEquals(9, result.rowsRead());
+        assertEquals(7, result.rowsRejected());
+        assertEquals(List.of(3L, 5L, 6L, 7L, 8L, 9L, 10L), result.rejectedLines());
+        assertEquals(Map.of(new SockKey("красный", 10), 10L), result.quantities());
+    }
+
+    @Test
+    void headerOnlyFileHasNoRows() throws Exception {
+        SockCsvParser.Result result = SockCsvParser.parse(write("color,cottonPart,quantity"), 2);
+
+        assertEquals(0, result.rowsRead());
+        assertEquals(Map.of(), result.quantities());
+    }
+
+    private Path write(String content) throws Exception {
+        Path file = directory.resolve("socks.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
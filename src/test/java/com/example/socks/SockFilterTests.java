@@ -0,0 +1,105 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.SockPage;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.ColorDictionary;
+import com.example.socks.service.SockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class SockFilterTests {
+    private static final int MIN = 20;
+    private static final int MAX = 30;
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private ColorDictionary colorDictionary;
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < 25; i++) {
+            for (int cottonPart = MIN; cottonPart <= MAX; cottonPart++) {
+                sockService.income(new CreateSockRequest("фильтр-" + i, cottonPart, 1));
+            }
+        }
+    }
+
+    @Test
+    void keysetPagesFollowSqlOrder() {
+        Comparator<Sock> byColorId = Comparator.comparingInt(sock -> colorDictionary.idOf(sock.getColor()));
+        assertPagesMatch("color", Comparator.comparing(Sock::getColor).thenComparingInt(Sock::getCottonPart));
+        assertPagesMatch("cottonPart", Comparator.comparingInt(Sock::getCottonPart).thenComparing(byColorId));
+    }
+
+    @Test
+    void colorOrderIsAlphabeticalNotByRegistration() {
+        List<String> registered = List.of("фильтр-яблочный", "фильтр-алый", "фильтр-мятный");
+        for (String color : registered) {
+            sockService.income(new CreateSockRequest(color, MIN, 1));
+        }
+        List<String> expected = List.of("фильтр-алый", "фильтр-мятный", "фильтр-яблочный");
+
+        List<String> unpaged = sockService.filterSocks(MIN, MIN, "color", null, null).getItems().stream()
+                .map(Sock::getColor).filter(registered::contains).toList();
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            SockPage page = sockService.filterSocks(MIN, MIN, "color", cursor, 2);
+            page.getItems().stream().map(Sock::getColor).filter(registered::contains).forEach(paged::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(expected, unpaged);
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void requestWithoutLimitReturnsAllRows() {
+        List<StockMovementRequest> movements = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            for (int cottonPart = MIN; cottonPart <= MAX; cottonPart++) {
+                movements.add(new StockMovementRequest("фильтр-все-" + i, cottonPart, 1));
+            }
+        }
+        sockService.applyMovements(movements);
+
+        List<Sock> streamed = new ArrayList<>();
+        sockService.streamSocks(MIN, MAX, "color", streamed::add);
+        SockPage page = sockService.filterSocks(MIN, MAX, "color", null, null);
+        assertTrue(streamed.size() > 1000);
+        assertEquals(streamed, page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    private void assertPagesMatch(String sortBy, Comparator<Sock> order) {
+        List<Sock> streamed = new ArrayList<>();
+        sockService.streamSocks(MIN, MAX, sortBy, streamed::add);
+
+        List<Sock> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            SockPage page = sockService.filterSocks(MIN, MAX, sortBy, cursor, 37);
+            paged.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        List<Sock> expected = new ArrayList<>(streamed);
+        expected.sort(order);
+        assertEquals(expected, streamed);
+        assertEquals(expected, paged);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.socks;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Планы запросов на заполненной таблице. По умолчанию 10 тысяч строк; на миллионе строк — профиль {@code large-tests}.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SockIndexTests {
+    private static final int ROWS = Integer.getInteger("socks.index-test.rows", 10_000);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO colors (name) SELECT CONCAT('plan-', X) FROM SYSTEM_RANGE(0, ?)", ROWS / 101);
+        jdbcTemplate.update("INSERT INTO socks (id, color_id, cotton_part, quantity) "
+                + "SELECT NEXT VALUE FOR socks_seq, c.id, MOD(X, 101), 1 "
+                + "FROM SYSTEM_RANGE(1, ?) JOIN colors c ON c.name = CONCAT('plan-', X / 101)", ROWS);
+        jdbcTemplate.execute("ANALYZE TABLE socks");
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM socks WHERE color_id IN (SELECT id FROM colors WHERE name LIKE 'plan-%')");
+        jdbcTemplate.update("DELETE FROM colors WHERE name LIKE 'plan-%'");
+    }
+
+    @Test
+    void skuLookupUsesUniqueIndex() {
+        assertPlanUses("ux_socks_color_cotton_part",
+                "SELECT * FROM socks WHERE color_id = 42 AND cotton_part = 42");
+        assertPlanUses("ux_socks_color_cotton_part",
+                "SELECT COUNT(*) FROM socks WHERE color_id = 42 AND cotton_part = 42");
+    }
+
+    @Test
+    void cottonRangeUsesSecondaryIndex() {
+        assertPlanUses("ix_socks_cotton_part_color",
+                "SELECT * FROM socks WHERE cotton_part BETWEEN 10 AND 12");
+    }
+
+    @Test
+    void duplicateSkuIsRejected() {
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO socks (id, color_id, cotton_part, quantity) "
+                        + "SELECT NEXT VALUE FOR socks_seq, id, 1, 1 FROM colors WHERE name = 'plan-1'"));
+    }
+
+    private void assertPlanUses(String index, String sql) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+        assertTrue(plan != null && plan.toLowerCase().contains(index), plan);
+    }
+}
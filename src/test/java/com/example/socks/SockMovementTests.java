@@ -0,0 +1,123 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.MovementBatchResponse;
+import com.example.socks.dto.MovementLineResult;
+import com.example.socks.dto.MovementStatus;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.exception.MovementRejectedException;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.StockIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SockMovementTests {
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockRepository repository;
+
+    @Autowired
+    private StockIndex stockIndex;
+
+    @Test
+    void movementsAreAggregatedAndApplied() {
+        sockService.income(new CreateSockRequest("движение-синий", 80, 10));
+
+        MovementBatchResponse response = sockService.applyMovements(List.of(
+                new StockMovementRequest("движение-синий", 80, -4),
+                new StockMovementRequest("движение-красный", 20, 7),
+                new StockMovementRequest("движение-синий", 80, -6),
+                new StockMovementRequest("движение-красный", 20, 3)));
+
+        assertTrue(response.isApplied());
+        assertEquals(2, response.getSkus());
+        assertTrue(response.getLines().stream().allMatch(line -> line.getStatus() == MovementStatus.APPLIED));
+        assertEquals(0, quantityOf("движение-синий", 80));
+        assertEquals(10, quantityOf("движение-красный", 20));
+        assertEquals(10, stockIndex.quantity("движение-красный", 20));
+    }
+
+    @Test
+    void failedLineRollsBackWholeBatch() {
+        sockService.income(new CreateSockRequest("движение-зеленый", 50, 5));
+
+        MovementRejectedException exception = assertThrows(MovementRejectedException.class, () -> sockService.applyMovements(List.of(
+                new StockMovementRequest("движение-зеленый", 50, 100),
+                new StockMovementRequest("движение-желтый", 50, -1),
+                new StockMovementRequest("движение-белый", 50, 1),
+                new StockMovementRequest("движение-зеленый", 30, -6))));
+
+        List<MovementStatus> statuses = exception.getResponse().getLines().stream().map(MovementLineResult::getStatus).toList();
+        assertEquals(List.of(MovementStatus.REJECTED, MovementStatus.NOT_FOUND, MovementStatus.REJECTED, MovementStatus.NOT_FOUND), statuses);
+        assertFalse(exception.getResponse().isApplied());
+        assertEquals(5, quantityOf("движение-зеленый", 50));
+        assertTrue(repository.findByColorAndCottonPart("движение-белый", 50).isEmpty());
+        assertEquals(5, stockIndex.quantity("движение-зеленый", 50));
+    }
+
+    @Test
+    void insufficientAndInvalidLinesAreReported() {
+        sockService.income(new CreateSockRequest("движение-черный", 10, 5));
+
+        MovementRejectedException insufficient = assertThrows(MovementRejectedException.class, () -> sockService.applyMovements(List.of(
+                new StockMovementRequest("движение-черный", 10, -3),
+                new StockMovementRequest("движение-черный", 10, -3))));
+        assertEquals(MovementStatus.INSUFFICIENT, insufficient.getResponse().getLines().get(1).getStatus());
+
+        MovementRejectedException invalid = assertThrows(MovementRejectedException.class, () -> sockService.applyMovements(List.of(
+                new StockMovementRequest("движение-черный", 10, -1),
+                new StockMovementRequest("движение-черный", 101, 1))));
+        assertEquals(MovementStatus.REJECTED, invalid.getResponse().getLines().get(0).getStatus());
+        assertEquals(MovementStatus.INVALID, invalid.getResponse().getLines().get(1).getStatus());
+        assertEquals(5, quantityOf("движение-черный", 10));
+    }
+
+    @Test
+    void concurrentBatchesInOppositeOrderDoNotDeadlock() throws Exception {
+        List<StockMovementRequest> forward = new ArrayList<>();
+        for (int cottonPart = 0; cottonPart < 20; cottonPart++) {
+            forward.add(new StockMovementRequest("движение-встречное", cottonPart, 1));
+        }
+        List<StockMovementRequest> backward = new ArrayList<>(forward);
+        Collections.reverse(backward);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 160; i++) {
+                List<StockMovementRequest> batch = i % 2 == 0 ? forward : backward;
+                futures.add(executor.submit(() -> sockService.applyMovements(batch)));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int cottonPart = 0; cottonPart < 20; cottonPart++) {
+            assertEquals(160, quantityOf("движение-встречное", cottonPart));
+        }
+    }
+
+    private int quantityOf(String color, int cottonPart) {
+        return repository.findByColorAndCottonPart(color, cottonPart).map(Sock::getQuantity).orElse(0);
+    }
+}
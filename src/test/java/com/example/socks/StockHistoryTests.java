@@ -0,0 +1,114 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.StockAtResponse;
+import com.example.socks.dto.StockLevel;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.InsufficientStockException;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.StockHistoryServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class StockHistoryTests {
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private StockHistoryServiceImpl stockHistory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void levelsAreReconstructedAtAnyMoment() throws Exception {
+        String color = "история-синий";
+        Instant beforeIncome = tick();
+        sockService.income(new CreateSockRequest(color, 40, 100));
+        Instant afterIncome = tick();
+        sockService.outcome(new CreateSockRequest(color, 40, 30));
+        assertThrows(InsufficientStockException.class, () -> sockService.outcome(new CreateSockRequest(color, 40, 1000)));
+        sockService.applyMovements(List.of(
+                new StockMovementRequest(color, 41, 5),
+                new StockMovementRequest(color, 40, -10)));
+        Instant afterMovements = tick();
+
+        assertEquals(List.of(), levels(beforeIncome, color));
+        assertEquals(List.of(new StockLevel(color, 40, 100)), levels(afterIncome, color));
+        assertEquals(List.of(new StockLevel(color, 40, 60), new StockLevel(color, 41, 5)), levels(afterMovements, color));
+    }
+
+    @Test
+    void replayStartsFromNearestSnapshot() throws Exception {
+        String color = "история-зеленый";
+        sockService.income(new CreateSockRequest(color, 50, 20));
+        Instant snapshotAt = tick();
+        assertEquals(snapshotAt, stockHistory.snapshot(snapshotAt).orElseThrow());
+        assertTrue(stockHistory.snapshot(snapshotAt).isEmpty());
+        sockService.outcome(new CreateSockRequest(color, 50, 5));
+        Instant afterOutcome = tick();
+
+        StockAtResponse response = stockHistory.getStockAt(afterOutcome, color, 50);
+        assertEquals(snapshotAt, response.getSnapshotTakenAt());
+        assertEquals(List.of(new StockLevel(color, 50, 15)), response.getLevels());
+        assertEquals(List.of(new StockLevel(color, 50, 20)), levels(snapshotAt, color));
+    }
+
+    @Test
+    void transactionCommittedAfterSnapshotIsNotLost() throws Exception {
+        String color = "история-красный";
+        sockService.income(new CreateSockRequest(color, 60, 10));
+        TransactionStatus transaction = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+        sockService.income(new CreateSockRequest(color, 60, 5));
+        Instant afterLateIncome = tick();
+        // Снимок на момент после движения создаётся, пока транзакция с ним ещё не зафиксирована.
+        Instant snapshotAt = CompletableFuture.supplyAsync(() -> stockHistory.snapshot(afterLateIncome).orElseThrow())
+                .get(10, TimeUnit.SECONDS);
+        transactionManager.commit(transaction);
+        Instant afterCommit = tick();
+
+        assertEquals(snapshotAt, stockHistory.getStockAt(afterCommit, color, 60).getSnapshotTakenAt());
+        assertEquals(List.of(new StockLevel(color, 60, 15)), levels(afterCommit, color));
+        assertEquals(List.of(new StockLevel(color, 60, 15)), levels(afterLateIncome, color));
+
+        Instant nextSnapshotAt = tick();
+        stockHistory.snapshot(nextSnapshotAt).orElseThrow();
+        assertEquals(List.of(new StockLevel(color, 60, 15)), levels(nextSnapshotAt, color));
+        assertEquals(List.of(new StockLevel(color, 60, 15)), levels(afterLateIncome, color));
+    }
+
+    @Test
+    void momentBeforeHistoryIsRejected() {
+        assertThrows(BadRequestException.class, () -> stockHistory.getStockAt(Instant.parse("2000-01-01T00:00:00Z"), null, null));
+        assertEquals(List.of(), levels(Instant.now(), "история-нет-такого"));
+    }
+
+    private List<StockLevel> levels(Instant timestamp, String color) {
+        return stockHistory.getStockAt(timestamp, color, null).getLevels();
+    }
+
+    /**
+     * Момент, строго разделяющий операции до и после вызова.
+     */
+    private static Instant tick() throws InterruptedException {
+        Thread.sleep(2);
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        Thread.sleep(2);
+        return now;
+    }
+}
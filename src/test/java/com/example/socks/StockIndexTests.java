@@ -0,0 +1,74 @@
+package com.example.socks;
+
+import com.example.socks.model.Comparison;
+import com.example.socks.model.Sock;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.impl.StockIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StockIndexTests {
+    private final List<Sock> socks = new ArrayList<>();
+    private StockIndex stockIndex;
+
+    @BeforeEach
+    void setup() {
+        Random random = new Random(42);
+        for (String color : List.of("синий", "красный", "зеленый")) {
+            for (int cottonPart = 0; cottonPart <= 100; cottonPart += 1 + random.nextInt(7)) {
+                socks.add(Sock.builder().color(color).cottonPart(cottonPart).quantity(random.nextInt(500)).build());
+            }
+        }
+        SockRepository repository = mock(SockRepository.class);
+        when(repository.findAll()).thenReturn(socks);
+        stockIndex = new StockIndex(repository, true, false);
+        stockIndex.rebuild();
+    }
+
+    @Test
+    void countMatchesBruteForceForEveryFilter() {
+        List<String> colors = new ArrayList<>(List.of("синий", "красный", "зеленый", "желтый"));
+        colors.add(null);
+        for (String color : colors) {
+            assertEquals(expected(color, null, null), stockIndex.count(color, null, null));
+            for (Comparison comparison : Comparison.values()) {
+                for (int cottonPart = -2; cottonPart <= 102; cottonPart++) {
+                    assertEquals(expected(color, comparison, cottonPart), stockIndex.count(color, comparison, cottonPart),
+                            color + " " + comparison + " " + cottonPart);
+                }
+            }
+        }
+    }
+
+    @Test
+    void changesAreAppliedIncrementally() {
+        long before = stockIndex.count("синий", Comparison.MORE_THAN, 50);
+        stockIndex.onStockChanged("синий", 60, 25);
+        stockIndex.onStockChanged("синий", 40, 10);
+        stockIndex.onStockChanged("белый", 60, 5);
+
+        assertEquals(before + 25, stockIndex.count("синий", Comparison.MORE_THAN, 50));
+        assertEquals(5, stockIndex.quantity("белый", 60));
+        assertEquals(expected(null, null, null) + 40, stockIndex.count(null, null, null));
+    }
+
+    private long expected(String color, Comparison comparison, Integer cottonPart) {
+        return socks.stream()
+                .filter(sock -> color == null || sock.getColor().equals(color))
+                .filter(sock -> cottonPart == null || switch (comparison) {
+                    case MORE_THAN -> sock.getCottonPart() > cottonPart;
+                    case LESS_THAN -> sock.getCottonPart() < cottonPart;
+                    case EQUAL -> sock.getCottonPart() == cottonPart;
+                })
+                .mapToLong(Sock::getQuantity)
+                .sum();
+    }
+}
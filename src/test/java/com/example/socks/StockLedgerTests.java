@@ -0,0 +1,193 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.exception.InsufficientStockException;
+import com.example.socks.exception.MovementRejectedException;
+import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.repository.SockBatchRepository;
+import com.example.socks.repository.SockRepository;
+import com.example.socks.service.ReservationService;
+import com.example.socks.service.SockService;
+import com.example.socks.service.impl.LedgerJournal;
+import com.example.socks.service.impl.StockChangePublisher;
+import com.example.socks.service.impl.StockIndex;
+import com.example.socks.service.impl.StockLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledger",
+        "socks.seed.file=",
+        "socks.ledger.enabled=true",
+        "socks.ledger.flush-interval=1h"})
+class StockLedgerTests {
+    @TempDir
+    static Path journalDirectory;
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private StockIndex stockIndex;
+
+    @Autowired
+    private SockRepository repository;
+
+    @Autowired
+    private SockBatchRepository batchRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectProvider<StockChangePublisher> changePublisher;
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) {
+        registry.add("socks.ledger.journal-dir", () -> journalDirectory.toString());
+    }
+
+    @Test
+    void changesAreCheckedInMemoryAndWrittenBehind() throws Exception {
+        String color = "реестр-синий";
+        sockService.income(new CreateSockRequest(color, 10, 100));
+        sockService.outcome(new CreateSockRequest(color, 10, 30));
+        assertThrows(InsufficientStockException.class, () -> sockService.outcome(new CreateSockRequest(color, 10, 71)));
+
+        assertEquals(0, quantityOf(color, 10));
+        assertEquals(70, stockIndex.quantity(color, 10));
+        assertEquals(70, stockLedger.level(new SockKey(color, 10)));
+
+        stockLedger.flush();
+
+        assertEquals(70, quantityOf(color, 10));
+        assertEquals(1, LedgerJournal.segments(journalDirectory).size());
+        assertEquals(List.of(), stockIndex.verify());
+    }
+
+    @Test
+    void movementsAreAllOrNothing() {
+        String color = "реестр-зеленый";
+        sockService.income(new CreateSockRequest(color, 20, 5));
+
+        assertThrows(MovementRejectedException.class, () -> sockService.applyMovements(List.of(
+                new StockMovementRequest(color, 21, 10),
+                new StockMovementRequest(color, 20, -6))));
+        assertEquals(5, stockLedger.level(new SockKey(color, 20)));
+        assertEquals(StockLedger.ABSENT, stockLedger.level(new SockKey(color, 21)));
+
+        sockService.applyMovements(List.of(
+                new StockMovementRequest(color, 21, 10),
+                new StockMovementRequest(color, 20, -5)));
+        stockLedger.flush();
+        assertEquals(0, quantityOf(color, 20));
+        assertEquals(10, quantityOf(color, 21));
+    }
+
+    @Test
+    void updateSeesUnflushedChanges() {
+        String color = "реестр-желтый";
+        sockService.income(new CreateSockRequest(color, 30, 5));
+        stockLedger.flush();
+        sockService.income(new CreateSockRequest(color, 30, 7));
+        long id = repository.findByColorAndCottonPart(color, 30).orElseThrow().getId();
+
+        sockService.updateSock(id, new CreateSockRequest(color, 31, 3));
+        sockService.outcome(new CreateSockRequest(color, 31, 1));
+        stockLedger.flush();
+
+        assertEquals(0, quantityOf(color, 30));
+        assertEquals(2, quantityOf(color, 31));
+        assertEquals(2, stockLedger.level(new SockKey(color, 31)));
+        assertEquals(List.of(), stockIndex.verify());
+    }
+
+    @Test
+    void holdsLeftInDatabaseAreNotShipped() {
+        String color = "реестр-резерв";
+        sockService.income(new CreateSockRequest(color, 50, 10));
+        stockLedger.flush();
+        long id = repository.findByColorAndCottonPart(color, 50).orElseThrow().getId();
+        jdbcTemplate.update("UPDATE socks SET reserved = 4 WHERE id = ?", id);
+        jdbcTemplate.update("INSERT INTO reservations (id, sock_id, quantity, expires_at) VALUES ('реестр-резерв', ?, 4, ?)",
+                id, OffsetDateTime.now(ZoneOffset.UTC).plusHours(1));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update("UPDATE socks SET reserved = 11 WHERE id = ?", id));
+
+        // Как после перезапуска: реестр и индекс перечитывают базу с резервом.
+        stockLedger.load();
+        stockIndex.rebuild();
+        assertEquals(6, stockLedger.level(new SockKey(color, 50)));
+        assertThrows(InsufficientStockException.class, () -> sockService.outcome(new CreateSockRequest(color, 50, 7)));
+        sockService.outcome(new CreateSockRequest(color, 50, 6));
+
+        reservationService.release("реестр-резерв");
+        assertEquals(4, stockLedger.level(new SockKey(color, 50)));
+        stockLedger.flush();
+        assertEquals(4, quantityOf(color, 50));
+        assertEquals(List.of(), stockIndex.verify());
+    }
+
+    @Test
+    void journalIsReplayedOnceAfterCrash(@TempDir Path crashed) throws Exception {
+        String color = "реестр-красный";
+        sockService.income(new CreateSockRequest(color, 40, 10));
+        stockLedger.flush();
+        long checkpoint = jdbcTemplate.queryForObject("SELECT segment FROM ledger_checkpoint WHERE id = 1", Long.class);
+        try (LedgerJournal journal = new LedgerJournal(crashed, checkpoint + 1)) {
+            journal.append(Map.of(new SockKey(color, 40), 5L));
+            journal.append(Map.of(new SockKey(color, 40), -3L, new SockKey(color, 41), 4L));
+        }
+
+        restart(crashed);
+        assertEquals(12, quantityOf(color, 40));
+        assertEquals(4, quantityOf(color, 41));
+        assertFalse(LedgerJournal.segments(crashed).contains(checkpoint + 1));
+
+        // Сегмент, уже применённый до падения, но не удалённый, повторно не применяется.
+        try (LedgerJournal journal = new LedgerJournal(crashed, checkpoint + 1)) {
+            journal.append(Map.of(new SockKey(color, 40), 5L));
+        }
+        restart(crashed);
+        assertEquals(12, quantityOf(color, 40));
+    }
+
+    private void restart(Path journal) throws Exception {
+        StockLedger restarted = new StockLedger(repository, batchRepository, jdbcTemplate, transactionTemplate, changePublisher,
+                new SimpleMeterRegistry(), true, journal, 4, Duration.ofHours(1));
+        restarted.start();
+        restarted.stop();
+    }
+
+    private int quantityOf(String color, int cottonPart) {
+        return repository.findByColorAndCottonPart(color, cottonPart).map(Sock::getQuantity).orElse(0);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.socks;
+
+import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.StockMovementRequest;
+import com.example.socks.service.SockService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stream",
+        "socks.seed.file=",
+        "socks.stream.interval=50ms"})
+class StockStreamTests {
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private SockService sockService;
+
+    @Test
+    void subscriberReceivesConflatedChangesMatchingFilter() throws Exception {
+        String color = "поток-синий";
+        HttpResponse<InputStream> response = http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                        + "/api/socks/stream?color=" + URLEncoder.encode(color, StandardCharsets.UTF_8) + "&comparison=moreThan&cottonPart=50"))
+                .header("Accept", "text/event-stream").build(), HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+
+        sockService.income(new CreateSockRequest(color, 40, 7));
+        sockService.income(new CreateSockRequest("поток-красный", 60, 7));
+        sockService.income(new CreateSockRequest(color, 60, 10));
+        sockService.income(new CreateSockRequest(color, 60, 5));
+
+        List<String> data = new ArrayList<>();
+        try (InputStream body = response.body();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            String line;
+            while (System.nanoTime() < deadline && (line = reader.readLine()) != null) {
+                if (line.startsWith("data:")) {
+                    data.add(line.substring("data:".length()));
+                    if (line.contains("\"quantity\":15")) {
+                        break;
+                    }
+                }
+            }
+        }
+        assertTrue(data.get(data.size() - 1).contains("{\"color\":\"поток-синий\",\"cottonPart\":60,\"quantity\":15}"), data.toString());
+        assertTrue(data.stream().noneMatch(event -> event.contains("поток-красный") || event.contains("\"cottonPart\":40")), data.toString());
+    }
+
+    @Test
+    void idleSubscriberSurvivesBurstLargerThanBuffer() throws Exception {
+        HttpResponse<InputStream> response = http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/socks/stream"))
+                .header("Accept", "text/event-stream").build(), HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+
+        List<StockMovementRequest> burst = new ArrayList<>();
+        for (int color = 0; color < 12; color++) {
+            for (int cottonPart = 0; cottonPart <= 100; cottonPart++) {
+                burst.add(new StockMovementRequest("поток-всплеск-" + color, cottonPart, 1));
+            }
+        }
+        sockService.applyMovements(burst);
+        Thread.sleep(500);
+        sockService.income(new CreateSockRequest("поток-после-всплеска", 10, 3));
+
+        // Отключённый, но не закрытый поток молчит, поэтому чтение ограничено по времени целиком.
+        List<String> data = assertTimeoutPreemptively(Duration.ofSeconds(15), () -> {
+            List<String> received = new ArrayList<>();
+            try (InputStream body = response.body();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("data:")) {
+                        received.add(line);
+                        if (line.contains("поток-после-всплеска")) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return received;
+        });
+        assertTrue(data.stream().anyMatch(event -> event.contains("поток-всплеск-11")));
+        assertTrue(data.get(data.size() - 1).contains("поток-после-всплеска"));
+    }
+
+    @Test
+    void unknownComparisonIsRejected() throws Exception {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                + "/api/socks/stream?comparison=between&cottonPart=50")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.socks;
+
+import com.example.socks.service.impl.TimerWheel;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTests {
+    private static final Instant START = Instant.ofEpochSecond(1_000_000);
+
+    private final TimerWheel<String> wheel = new TimerWheel<>(Duration.ofSeconds(1), 8, START);
+
+    @Test
+    void keysExpireNotBeforeTheirDeadline() {
+        wheel.schedule("a", START.plusMillis(1500));
+        wheel.schedule("b", START.plusSeconds(3));
+
+        assertEquals(List.of(), wheel.advance(START.plusMillis(1999)));
+        assertEquals(List.of("a"), wheel.advance(START.plusSeconds(2)));
+        assertEquals(List.of("b"), wheel.advance(START.plusSeconds(3)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void keysBeyondOneTurnWaitForTheirRound() {
+        wheel.schedule("near", START.plusSeconds(2));
+        wheel.schedule("far", START.plusSeconds(2 + 8 * 3));
+
+        assertEquals(List.of("near"), wheel.advance(START.plusSeconds(10)));
+        assertEquals(List.of(), wheel.advance(START.plusSeconds(25)));
+        assertEquals(List.of("far"), wheel.advance(START.plusSeconds(26)));
+    }
+
+    @Test
+    void cancelledAndRescheduledKeysAreTracked() {
+        wheel.schedule("cancelled", START.plusSeconds(1));
+        wheel.schedule("moved", START.plusSeconds(1));
+        assertTrue(wheel.cancel("cancelled"));
+        assertFalse(wheel.cancel("cancelled"));
+        wheel.schedule("moved", START.plusSeconds(5));
+
+        assertEquals(List.of(), wheel.advance(START.plusSeconds(4)));
+        assertEquals(List.of("moved"), wheel.advance(START.plusSeconds(5)));
+    }
+
+    @Test
+    void everythingDueIsReturnedAfterALongPause() {
+        for (int i = 0; i < 100; i++) {
+            wheel.schedule("k" + i, START.plusSeconds(1 + i));
+        }
+        wheel.schedule("past", START.minusSeconds(60));
+
+        assertEquals(101, wheel.advance(START.plusSeconds(1000)).size());
+        assertEquals(0, wheel.size());
+    }
+}
@@ -1,18 +1,43 @@
 package com.example.socks;
 
+import com.example.socks.dto.BatchUploadResponse;
 import com.example.socks.dto.CreateSockRequest;
+import com.example.socks.dto.SockPage;
 import com.example.socks.exception.BadRequestException;
+import com.example.socks.exception.ConflictException;
 import com.example.socks.exception.NotFoundException;
 import com.example.socks.exception.RequestValidatorException;
 import com.example.socks.model.Sock;
+import com.example.socks.model.SockKey;
+import com.example.socks.model.SockSort;
+import com.example.socks.repository.ColorDictionary;
+import com.example.socks.repository.SockBatchRepository;
+import com.example.socks.repository.SockListingRepository;
 import com.example.socks.repository.SockRepository;
+import com.example.socks.service.impl.CountQueryCoalescer;
+import com.example.socks.service.impl.InventoryVersion;
+import com.example.socks.service.impl.ReservationServiceImpl;
+import com.example.socks.service.impl.RetryingExecutor;
+import com.example.socks.service.impl.SockCsvImporter;
 import com.example.socks.service.impl.SockServiceImpl;
+import com.example.socks.service.impl.StockChangePublisher;
+import com.example.socks.service.impl.StockHistoryServiceImpl;
+import com.example.socks.service.impl.StockIndex;
+import com.example.socks.service.impl.StockLedger;
 import com.example.socks.validator.RequestValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -21,12 +46,26 @@ import static org.mockito.Mockito.when;
 
 public class UnitServiceTests {
     private SockRepository repository;
+    private SockListingRepository listingRepository;
+    private ColorDictionary colorDictionary;
+    private SockCsvImporter csvImporter;
     private SockServiceImpl sockService;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setup() {
         repository = mock(SockRepository.class);
-        sockService = new SockServiceImpl(repository);
+        meterRegistry = new SimpleMeterRegistry();
+        listingRepository = mock(SockListingRepository.class);
+        colorDictionary = mock(ColorDictionary.class);
+        csvImporter = mock(SockCsvImporter.class);
+        StockIndex stockIndex = new StockIndex(repository, false, false);
+        StockLedger stockLedger = new StockLedger(repository, null, null, null, null, meterRegistry, false, Path.of("."), 1, Duration.ZERO);
+        sockService = new SockServiceImpl(repository, mock(SockBatchRepository.class), listingRepository, colorDictionary, csvImporter, stockIndex, stockLedger, new StockChangePublisher(List.of(stockIndex), mock(StockHistoryServiceImpl.class), new InventoryVersion()),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new RetryingExecutor(meterRegistry, 3, Duration.ZERO, Duration.ZERO),
+                new CountQueryCoalescer(new InventoryVersion(), meterRegistry, true),
+                mock(ReservationServiceImpl.class));
     }
 
     @Test
@@ -37,14 +76,13 @@ public class UnitServiceTests {
                 .cottonPart(25)
                 .quantity(100)
                 .build();
-        Sock existingSock = Sock.builder().color("синий").cottonPart(25).quantity(50).build();
 
-        when(repository.findByColorAndCottonPart("синий", 25)).thenReturn(Optional.of(existingSock));
+        when(repository.increaseQuantity("синий", 25, 100)).thenReturn(1);
 
         String result = sockService.income(request);
         assertEquals("Носки с цветом 'синий' и содержанием хлопка 25% были успешно обновлены.", result);
-        assertEquals(150, existingSock.getQuantity());
-        Mockito.verify(repository).save(existingSock);
+        Mockito.verify(repository).increaseQuantity("синий", 25, 100);
+        Mockito.verify(repository, Mockito.never()).upsertQuantity(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt());
     }
 
     @Test
@@ -55,10 +93,43 @@ public class UnitServiceTests {
                 .quantity(200)
                 .build();
 
-        when(repository.findByColorAndCottonPart("зеленый", 50)).thenReturn(Optional.empty());
+        when(repository.increaseQuantity("зеленый", 50, 200)).thenReturn(0);
+        when(colorDictionary.register("зеленый")).thenReturn(7);
+        when(repository.upsertQuantity(7, 50, 200)).thenReturn(1);
         String result = sockService.income(request);
         assertEquals("Добавлена новая партия носков с цветом 'зеленый' и содержанием хлопка 50%.", result);
-        Mockito.verify(repository).save(any(Sock.class));
+        Mockito.verify(repository).upsertQuantity(7, 50, 200);
+    }
+
+    @Test
+    void testIncome_NormalizesColor() {
+        CreateSockRequest request = CreateSockRequest.builder()
+                .color("  Синий ")
+                .cottonPart(25)
+                .quantity(100)
+                .build();
+
+        when(repository.increaseQuantity("синий", 25, 100)).thenReturn(1);
+
+        String result = sockService.income(request);
+        assertEquals("Носки с цветом 'синий' и содержанием хлопка 25% были успешно обновлены.", result);
+        Mockito.verify(repository).increaseQuantity("синий", 25, 100);
+    }
+
+    @Test
+    void testIncome_ConcurrentInsert() {
+        CreateSockRequest request = CreateSockRequest.builder()
+                .color("зеленый")
+                .cottonPart(50)
+                .quantity(200)
+                .build();
+
+        when(repository.increaseQuantity("зеленый", 50, 200)).thenReturn(0, 1);
+        when(colorDictionary.register("зеленый")).thenReturn(7);
+        when(repository.upsertQuantity(7, 50, 200)).thenThrow(new DataIntegrityViolationException("duplicate"));
+        String result = sockService.income(request);
+        assertEquals("Носки с цветом 'зеленый' и содержанием хлопка 50% были успешно обновлены.", result);
+        Mockito.verify(repository, Mockito.times(2)).increaseQuantity("зеленый", 50, 200);
     }
 
     @Test
@@ -68,13 +139,12 @@ public class UnitServiceTests {
                 .cottonPart(30)
                 .quantity(50)
                 .build();
-        Sock existingSock = Sock.builder().color("красный").cottonPart(30).quantity(100).build();
 
-        when(repository.findByColorAndCottonPart("красный", 30)).thenReturn(Optional.of(existingSock));
+        when(repository.decreaseQuantity("красный", 30, 50)).thenReturn(1);
 
         String result = sockService.outcome(request);
         assertEquals("Носки с цветом 'красный' и содержанием хлопка 30% были успешно отгружены.", result);
-
+        Mockito.verify(repository, Mockito.never()).findByColorAndCottonPart(any(), Mockito.anyInt());
     }
 
     @Test
@@ -85,8 +155,9 @@ public class UnitServiceTests {
                 .cottonPart(30)
                 .quantity(150)
                 .build();
-        Sock existingSock = Sock.builder().color("красный").cottonPart(30).quantity(100).build();
+        Sock existingSock = Sock.builder().id(1L).color("красный").cottonPart(30).quantity(100).build();
 
+        when(repository.decreaseQuantity("красный", 30, 150)).thenReturn(0);
         when(repository.findByColorAndCottonPart("красный", 30)).thenReturn(Optional.of(existingSock));
         Assertions.assertThrows(BadRequestException.class,
                 () -> sockService.outcome(request),
@@ -101,6 +172,7 @@ public class UnitServiceTests {
                 .cottonPart(20)
                 .quantity(10)
                 .build();
+        when(repository.decreaseQuantity("желтый", 20, 10)).thenReturn(0);
         when(repository.findByColorAndCottonPart("желтый", 20)).thenReturn(Optional.empty());
         Assertions.assertThrows(NotFoundException.class,
                 () -> sockService.outcome(request),
@@ -110,19 +182,36 @@ public class UnitServiceTests {
 
     @Test
     void testGetSockCountByFilter() {
-        when(repository.countSocksByFilter("синий", "greater", 10)).thenReturn(15);
-        Integer count = sockService.getSockCountByFilter("синий", "greater", 10);
+        when(repository.sumQuantityByColorAndCottonPartGreaterThan("синий", 10)).thenReturn(15L);
+        long count = sockService.getSockCountByFilter("синий", "moreThan", 10);
         assertEquals(15, count);
-        Mockito.verify(repository).countSocksByFilter("синий", "greater", 10);
+        Mockito.verify(repository).sumQuantityByColorAndCottonPartGreaterThan("синий", 10);
+        Mockito.verify(repository, Mockito.never()).countSocksByFilter(any(), any(), any());
+    }
+
+    @Test
+    void testGetSockCountByFilter_Dispatch() {
+        when(repository.sumQuantity()).thenReturn(100L);
+        when(repository.sumQuantityByColor("синий")).thenReturn(40L);
+        when(repository.sumQuantityByCottonPartLessThan(30)).thenReturn(25L);
+        when(repository.sumQuantityByColorAndCottonPartEquals("синий", 30)).thenReturn(5L);
+
+        assertEquals(100, sockService.getSockCountByFilter(null, null, null));
+        assertEquals(40, sockService.getSockCountByFilter("синий", "equal", null));
+        assertEquals(25, sockService.getSockCountByFilter(null, "lessThan", 30));
+        assertEquals(5, sockService.getSockCountByFilter("синий", "equal", 30));
+        assertThrows(BadRequestException.class, () -> sockService.getSockCountByFilter("синий", "greater", 30));
     }
 
     @Test
     void testUploadSocksBatch_Success() throws Exception {
         String content = "синий,25,100\nзеленый,50,200";
         MockMultipartFile file = new MockMultipartFile("file", "socks.csv", "text/csv", content.getBytes());
-        String result = sockService.uploadSocksBatch(file);
-        assertEquals("Партии носков успешно обработаны.", result);
-        Mockito.verify(repository, Mockito.times(1)).save(any(Sock.class));
+        BatchUploadResponse expected = BatchUploadResponse.builder().rowsRead(1).rowsApplied(1).build();
+        when(csvImporter.importCsv(any())).thenReturn(expected);
+        BatchUploadResponse result = sockService.uploadSocksBatch(file);
+        assertEquals(expected, result);
+        Mockito.verify(csvImporter).importCsv(any());
     }
 
     @Test
@@ -142,6 +231,35 @@ public class UnitServiceTests {
         Mockito.verify(repository).save(existingSock);
     }
 
+    @Test
+    void testUpdateSock_RetriesOnVersionConflict() {
+        Long sockId = 3L;
+        CreateSockRequest request = CreateSockRequest.builder().color("синий").cottonPart(30).quantity(75).build();
+        when(repository.findById(sockId))
+                .thenReturn(Optional.of(Sock.builder().id(sockId).color("синий").cottonPart(30).quantity(100).version(1).build()))
+                .thenReturn(Optional.of(Sock.builder().id(sockId).color("синий").cottonPart(30).quantity(110).version(2).build()));
+        when(repository.save(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Sock.class, sockId))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertEquals("Параметры носков успешно обновлены.", sockService.updateSock(sockId, request));
+        Mockito.verify(repository, Mockito.times(2)).findById(sockId);
+        assertEquals(1, meterRegistry.counter("socks.write.conflicts", "operation", "update").count());
+    }
+
+    @Test
+    void testUpdateSock_ConflictAfterMaxAttempts() {
+        Long sockId = 4L;
+        CreateSockRequest request = CreateSockRequest.builder().color("синий").cottonPart(30).quantity(75).build();
+        when(repository.findById(sockId))
+                .thenAnswer(invocation -> Optional.of(Sock.builder().id(sockId).color("синий").cottonPart(30).quantity(100).build()));
+        when(repository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(Sock.class, sockId));
+
+        assertThrows(ConflictException.class, () -> sockService.updateSock(sockId, request));
+        Mockito.verify(repository, Mockito.times(3)).findById(sockId);
+        assertEquals(1, meterRegistry.counter("socks.write.retries.exhausted", "operation", "update").count());
+    }
+
     @Test
     void testUpdateSock_SockNotFound() {
 
@@ -154,6 +272,26 @@ public class UnitServiceTests {
 
     }
 
+    @Test
+    void testFilterSocks_KeysetPagination() {
+        List<Sock> firstPage = List.of(
+                Sock.builder().color("зеленый").cottonPart(40).quantity(5).build(),
+                Sock.builder().color("синий:темный").cottonPart(35).quantity(7).build());
+        when(listingRepository.findPage(30, 50, SockSort.COLOR, null, 2)).thenReturn(firstPage);
+
+        SockPage page = sockService.filterSocks(30, 50, "color", null, 2);
+        assertEquals(firstPage, page.getItems());
+        assertNotNull(page.getNextCursor());
+
+        when(listingRepository.findPage(30, 50, SockSort.COLOR, new SockKey("синий:темный", 35), 2)).thenReturn(List.of());
+        SockPage lastPage = sockService.filterSocks(30, 50, "color", page.getNextCursor(), 2);
+        assertTrue(lastPage.getItems().isEmpty());
+        assertNull(lastPage.getNextCursor());
+
+        assertThrows(BadRequestException.class, () -> sockService.filterSocks(30, 50, "color", "не курсор", 2));
+        assertThrows(BadRequestException.class, () -> sockService.filterSocks(30, 50, "color", null, 0));
+    }
+
     @Test
     void testValidationScenarios() {
         final RequestValidator validator = new RequestValidator();